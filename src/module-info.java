@@ -8,6 +8,10 @@ module ru.ifmo.rain.shaposhnikov.implementor {
     requires info.kgeorgiy.java.advanced.implementor;
 
     requires java.compiler;
+    requires static jdk.compiler;
+    requires jdk.management;
+    requires java.net.http;
+    requires jdk.httpserver;
 
     exports ru.ifmo.rain.shaposhnikov.implementor;
 }
\ No newline at end of file
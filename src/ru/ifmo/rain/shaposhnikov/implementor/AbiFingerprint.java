@@ -0,0 +1,94 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/**
+ * Fingerprint of everything the implementation of a token depends on.
+ * These are the name and the package of the token, whether it is an interface,
+ * the constructor called by the implementation and the methods the implementation overrides:
+ * their modifiers, names, parameter, return and exception types.
+ * Method bodies, private and static members, as well as methods that are not overridden
+ * do not affect the implementation and are not part of the fingerprint,
+ * so changing them in a supertype does not make the implementation stale.
+ * <p>
+ * Fingerprints are computed from the {@link ClassStub stubs} of the classes and are memoized per class.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class AbiFingerprint {
+    /**
+     * Fingerprints by classes, {@code null} for the classes that cannot be implemented.
+     */
+    private static final ClassValue<String> FINGERPRINTS = new ClassValue<>() {
+        @Override
+        protected String computeValue(final Class<?> type) {
+            try {
+                return compute(type);
+            } catch (final ImplerException e) {
+                return null;
+            }
+        }
+    };
+
+    /**
+     * Utility class.
+     */
+    private AbiFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of the <var>token</var>.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return hexadecimal SHA-256 digest of the description of the token,
+     * or {@code null} if the <var>token</var> cannot be implemented
+     */
+    static String of(final Class<?> token) {
+        return FINGERPRINTS.get(token);
+    }
+
+    /**
+     * Computes the fingerprint of the <var>token</var>.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return hexadecimal SHA-256 digest of the description of the token
+     * @throws ImplerException if the <var>token</var> cannot be implemented
+     */
+    private static String compute(final Class<?> token) throws ImplerException {
+        Implementor.checkToken(token);
+        final ClassStub stub = ClassStub.of(token);
+        final StringBuilder sb = new StringBuilder();
+        sb.append(stub.isInterface ? "interface " : "class ").append(stub.name).append('\n');
+        sb.append(stub.packageName).append('\n').append(stub.simpleName).append('\n');
+        if (!stub.isInterface) {
+            appendMethod(sb.append("<init>"), stub.constructor);
+        }
+        for (final ClassStub.MethodStub method : stub.methods) {
+            appendMethod(sb.append(method.returnType.name).append(' ').append(method.name), method);
+        }
+        return HexFormat.of().formatHex(LocalJarCache.sha256(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Appends the parameter and exception types and the modifiers of the implementation.
+     *
+     * @param sb     where to append
+     * @param method method or constructor that is being implemented
+     */
+    private static void appendMethod(final StringBuilder sb, final ClassStub.MethodStub method) {
+        sb.append('(');
+        for (final ClassStub.TypeName parameterType : method.parameterTypes) {
+            sb.append(parameterType.name).append(',');
+        }
+        sb.append(")");
+        for (final ClassStub.TypeName exceptionType : method.exceptionTypes) {
+            sb.append(exceptionType.name).append(',');
+        }
+        sb.append(' ').append(method.modifiers
+                & ~Modifier.ABSTRACT & ~Modifier.NATIVE & ~Modifier.TRANSIENT).append('\n');
+    }
+}
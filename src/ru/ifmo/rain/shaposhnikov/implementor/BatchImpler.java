@@ -0,0 +1,51 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.Impler;
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import info.kgeorgiy.java.advanced.implementor.JarImpler;
+
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Produces implementations for many type tokens at once.
+ * Unlike {@link Impler} and {@link JarImpler}, a failure to implement one token
+ * does not stop the others: every token gets either a result or a failure in the returned {@link BatchResult}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public interface BatchImpler {
+    /**
+     * Produces code implementing every class or interface specified by provided <var>tokens</var>.
+     * Each implementation is placed in the same location as {@link Impler#implement(Class, Path)} would place it.
+     *
+     * @param tokens type tokens to create implementations for
+     * @param root   root directory
+     * @return paths of the generated <var>.java</var> files and failures, by token
+     * @throws ImplerException if <var>tokens</var>, any of its elements or <var>root</var> is {@code null}
+     */
+    BatchResult implementAll(Collection<Class<?>> tokens, Path root) throws ImplerException;
+
+    /**
+     * Produces <var>.jar</var> files implementing every class or interface specified by provided <var>tokens</var>.
+     * The <var>.jar</var> file for a token is placed in the subdirectory of <var>root</var> matching its package
+     * and is named as the implementation class with <var>.jar</var> extension.
+     *
+     * @param tokens type tokens to create implementations for
+     * @param root   root directory
+     * @return paths of the generated <var>.jar</var> files and failures, by token
+     * @throws ImplerException if <var>tokens</var>, any of its elements or <var>root</var> is {@code null}
+     */
+    BatchResult implementJarAll(Collection<Class<?>> tokens, Path root) throws ImplerException;
+
+    /**
+     * Produces a single <var>.jar</var> file containing implementations
+     * of every class or interface specified by provided <var>tokens</var>.
+     *
+     * @param tokens  type tokens to create implementations for
+     * @param jarFile target <var>.jar</var> file
+     * @return the target <var>.jar</var> file for every token put into it, and failures, by token
+     * @throws ImplerException if <var>tokens</var>, any of its elements or <var>jarFile</var> is {@code null}
+     */
+    BatchResult implementCombinedJar(Collection<Class<?>> tokens, Path jarFile) throws ImplerException;
+}
@@ -0,0 +1,78 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link BatchImpler} call.
+ * Holds a generated file for every successfully implemented token and an exception for every failed one.
+ * Both maps keep the order in which the tokens were passed to the batch.
+ *
+ * @author Boris Shaposhnikov
+ */
+public final class BatchResult {
+    /**
+     * Generated files by successfully implemented tokens.
+     */
+    private final Map<Class<?>, Path> implemented;
+
+    /**
+     * Causes of failure by failed tokens.
+     */
+    private final Map<Class<?>, ImplerException> failed;
+
+    /**
+     * Constructs a result ordering the collected outcomes as <var>tokens</var>.
+     *
+     * @param tokens      tokens of the batch in the original order
+     * @param implemented generated files by successfully implemented tokens
+     * @param failed      causes of failure by failed tokens
+     */
+    BatchResult(final List<Class<?>> tokens,
+                final Map<Class<?>, Path> implemented,
+                final Map<Class<?>, ImplerException> failed) {
+        final Map<Class<?>, Path> orderedImplemented = new LinkedHashMap<>();
+        final Map<Class<?>, ImplerException> orderedFailed = new LinkedHashMap<>();
+        for (final Class<?> token : tokens) {
+            if (implemented.containsKey(token)) {
+                orderedImplemented.put(token, implemented.get(token));
+            } else if (failed.containsKey(token)) {
+                orderedFailed.put(token, failed.get(token));
+            }
+        }
+        this.implemented = Collections.unmodifiableMap(orderedImplemented);
+        this.failed = Collections.unmodifiableMap(orderedFailed);
+    }
+
+    /**
+     * Returns generated files of the successfully implemented tokens.
+     *
+     * @return unmodifiable map from a token to its generated file
+     */
+    public Map<Class<?>, Path> getImplemented() {
+        return implemented;
+    }
+
+    /**
+     * Returns exceptions of the tokens that could not be implemented.
+     *
+     * @return unmodifiable map from a token to the cause of its failure
+     */
+    public Map<Class<?>, ImplerException> getFailed() {
+        return failed;
+    }
+
+    /**
+     * Checks whether every token of the batch was implemented.
+     *
+     * @return {@code true} if there are no failed tokens, {@code false} otherwise
+     */
+    public boolean isSuccessful() {
+        return failed.isEmpty();
+    }
+}
@@ -0,0 +1,159 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Cost model ordering the tokens of a batch before they are processed in parallel.
+ * The cost of a token is estimated from the number of methods declared in it and its ancestors,
+ * which resolution has to reflect on and emission has to write, and the number of its ancestors.
+ * <p>
+ * Tokens are ordered so that every ancestor in the batch comes before its descendants,
+ * and the method tables of {@link MethodResolver} and stubs of {@link ClassStub} the descendants are built from
+ * are likely cached by the time they are resolved. Among the tokens whose ancestors are ordered,
+ * the one with the most expensive chain of descendants comes first, so a huge token does not start
+ * last and stretch the batch while the other workers are idle.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class BatchScheduler {
+    /**
+     * Utility class.
+     */
+    private BatchScheduler() {
+    }
+
+    /**
+     * Orders the tokens of a batch, longest jobs and ancestors first.
+     *
+     * @param tokens distinct tokens of the batch
+     * @return the same tokens in the order they should be started in
+     */
+    static List<Class<?>> schedule(final List<Class<?>> tokens) {
+        final Set<Class<?>> batch = new HashSet<>(tokens);
+        final Map<Class<?>, List<Class<?>>> descendants = new HashMap<>();
+        final Map<Class<?>, Integer> pendingAncestors = new HashMap<>();
+        final Map<Class<?>, Long> costs = new HashMap<>();
+        for (final Class<?> token : tokens) {
+            final Set<Class<?>> ancestors = getAncestors(token);
+            costs.put(token, estimateCost(token, ancestors));
+            int pending = 0;
+            for (final Class<?> ancestor : ancestors) {
+                if (batch.contains(ancestor)) {
+                    descendants.computeIfAbsent(ancestor, type -> new ArrayList<>()).add(token);
+                    pending++;
+                }
+            }
+            pendingAncestors.put(token, pending);
+        }
+
+        final Map<Class<?>, Long> priorities = new HashMap<>();
+        for (final Class<?> token : tokens) {
+            getPriority(token, costs, descendants, priorities);
+        }
+        final Map<Class<?>, Integer> positions = new HashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            positions.put(tokens.get(i), i);
+        }
+        final PriorityQueue<Class<?>> ready = new PriorityQueue<>(
+                Comparator.<Class<?>>comparingLong(priorities::get).reversed().thenComparing(positions::get));
+        for (final Class<?> token : tokens) {
+            if (pendingAncestors.get(token) == 0) {
+                ready.add(token);
+            }
+        }
+        final List<Class<?>> order = new ArrayList<>(tokens.size());
+        while (!ready.isEmpty()) {
+            final Class<?> token = ready.poll();
+            order.add(token);
+            for (final Class<?> descendant : descendants.getOrDefault(token, List.of())) {
+                if (pendingAncestors.merge(descendant, -1, Integer::sum) == 0) {
+                    ready.add(descendant);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Returns the superclasses and all the superinterfaces of the <var>token</var>, nearest first.
+     *
+     * @param token the token
+     * @return the ancestors of the token
+     */
+    private static Set<Class<?>> getAncestors(final Class<?> token) {
+        final Set<Class<?>> ancestors = new LinkedHashSet<>();
+        final Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(token);
+        while (!queue.isEmpty()) {
+            final Class<?> type = queue.poll();
+            final Class<?> superclass = type.getSuperclass();
+            if (superclass != null && ancestors.add(superclass)) {
+                queue.add(superclass);
+            }
+            for (final Class<?> superinterface : type.getInterfaces()) {
+                if (ancestors.add(superinterface)) {
+                    queue.add(superinterface);
+                }
+            }
+        }
+        return ancestors;
+    }
+
+    /**
+     * Estimates the cost of implementing the <var>token</var>: the number of methods declared in it
+     * and its ancestors plus the number of the ancestors.
+     * The declared methods are cached by the runtime, so resolution does not reflect on them again.
+     *
+     * @param token     the token
+     * @param ancestors the ancestors of the token
+     * @return the estimated cost
+     */
+    private static long estimateCost(final Class<?> token, final Set<Class<?>> ancestors) {
+        long cost = ancestors.size() + 1;
+        try {
+            cost += token.getDeclaredMethods().length;
+            for (final Class<?> ancestor : ancestors) {
+                cost += ancestor.getDeclaredMethods().length;
+            }
+        } catch (final LinkageError | SecurityException ignored) {
+            // The token fails when it is processed.
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the cost of the most expensive chain of tokens starting with the <var>token</var>
+     * and going through its descendants in the batch, computing it if necessary.
+     *
+     * @param token       the token
+     * @param costs       estimated costs of the tokens
+     * @param descendants descendants in the batch by tokens
+     * @param priorities  computed chain costs
+     * @return the chain cost of the token
+     */
+    private static long getPriority(final Class<?> token, final Map<Class<?>, Long> costs,
+                                    final Map<Class<?>, List<Class<?>>> descendants,
+                                    final Map<Class<?>, Long> priorities) {
+        final Long known = priorities.get(token);
+        if (known != null) {
+            return known;
+        }
+        long longest = 0;
+        for (final Class<?> descendant : descendants.getOrDefault(token, List.of())) {
+            longest = Math.max(longest, getPriority(descendant, costs, descendants, priorities));
+        }
+        final long priority = costs.get(token) + longest;
+        priorities.put(token, priority);
+        return priority;
+    }
+}
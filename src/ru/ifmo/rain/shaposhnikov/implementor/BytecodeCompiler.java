@@ -0,0 +1,414 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * {@link ClassCompiler} writing the class file of the implementation class directly, without the java compiler.
+ * The class file has the same shape as the compiled source generated by {@link Implementor}:
+ * a constructor passing its arguments to the constructor of the parent class
+ * and methods returning default values.
+ * <p>
+ * Method bodies contain no branches, so the class files need no {@code StackMapTable} frames.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class BytecodeCompiler implements ClassCompiler {
+    /**
+     * Major version of the written class files, Java 11.
+     */
+    private static final int MAJOR_VERSION = 55;
+
+    /**
+     * Access flag telling to treat superclass methods specially when invoked by {@code invokespecial}.
+     */
+    private static final int ACC_SUPER = 0x0020;
+
+    /**
+     * Modifiers of methods and constructors kept by the implementation.
+     * The implementation is neither abstract nor native, and arguments are not variable.
+     */
+    private static final int METHOD_MODIFIERS = Modifier.methodModifiers() & ~Modifier.ABSTRACT & ~Modifier.NATIVE;
+
+    /**
+     * Constant pool of a class file being written.
+     * Equal constants are stored once.
+     */
+    private static class ConstantPool {
+        /**
+         * Tag of a {@code CONSTANT_Utf8} entry.
+         */
+        private static final int UTF8 = 1;
+        /**
+         * Tag of a {@code CONSTANT_Class} entry.
+         */
+        private static final int CLASS = 7;
+        /**
+         * Tag of a {@code CONSTANT_Methodref} entry.
+         */
+        private static final int METHOD_REF = 10;
+        /**
+         * Tag of a {@code CONSTANT_NameAndType} entry.
+         */
+        private static final int NAME_AND_TYPE = 12;
+
+        /**
+         * Written entries.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        /**
+         * Stream writing the entries.
+         */
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        /**
+         * Indexes of the written entries by their keys.
+         */
+        private final Map<String, Integer> indexes = new HashMap<>();
+        /**
+         * Index of the next entry.
+         */
+        private int next = 1;
+
+        /**
+         * Returns the index of the entry with the given key, or {@code 0} if there is no such entry yet.
+         * Allocates the index for a new entry, so the entry must be written right after that.
+         *
+         * @param key key of the entry
+         * @return the index of the existing entry or {@code 0}
+         */
+        private int lookup(final String key) {
+            final Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            indexes.put(key, next++);
+            return 0;
+        }
+
+        /**
+         * Adds a {@code CONSTANT_Utf8} entry.
+         *
+         * @param value string value
+         * @return index of the entry
+         * @throws IOException if the string is too long
+         */
+        int utf8(final String value) throws IOException {
+            final int index = lookup(UTF8 + value);
+            if (index != 0) {
+                return index;
+            }
+            out.writeByte(UTF8);
+            out.writeUTF(value);
+            return next - 1;
+        }
+
+        /**
+         * Adds a {@code CONSTANT_Class} entry.
+         *
+         * @param internalName internal name of the class
+         * @return index of the entry
+         * @throws IOException if the name is too long
+         */
+        int classRef(final String internalName) throws IOException {
+            final int name = utf8(internalName);
+            final int index = lookup(CLASS + internalName);
+            if (index != 0) {
+                return index;
+            }
+            out.writeByte(CLASS);
+            out.writeShort(name);
+            return next - 1;
+        }
+
+        /**
+         * Adds a {@code CONSTANT_Methodref} entry.
+         *
+         * @param owner      internal name of the class declaring the method
+         * @param name       name of the method
+         * @param descriptor descriptor of the method
+         * @return index of the entry
+         * @throws IOException if some of the names is too long
+         */
+        int methodRef(final String owner, final String name, final String descriptor) throws IOException {
+            final int ownerIndex = classRef(owner);
+            final int nameIndex = utf8(name);
+            final int descriptorIndex = utf8(descriptor);
+            final int nameAndType = lookup(NAME_AND_TYPE + name + ' ' + descriptor);
+            final int nameAndTypeIndex;
+            if (nameAndType == 0) {
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+                nameAndTypeIndex = next - 1;
+            } else {
+                nameAndTypeIndex = nameAndType;
+            }
+            final int index = lookup(METHOD_REF + owner + '.' + name + descriptor);
+            if (index != 0) {
+                return index;
+            }
+            out.writeByte(METHOD_REF);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndTypeIndex);
+            return next - 1;
+        }
+
+        /**
+         * Writes the constant pool to a class file.
+         *
+         * @param classFile stream writing the class file
+         * @throws IOException if an error occurred trying to write
+         */
+        void writeTo(final DataOutputStream classFile) throws IOException {
+            classFile.writeShort(next);
+            bytes.writeTo(classFile);
+        }
+    }
+
+    /**
+     * Returns the internal name of a class: its binary name with dots replaced by slashes.
+     *
+     * @param token the {@link Class} object
+     * @return the internal name
+     */
+    private static String getInternalName(final Class<?> token) {
+        return token.getName().replace('.', '/');
+    }
+
+    /**
+     * Returns the method descriptor of an executable.
+     *
+     * @param executable method or constructor
+     * @param returnType return type to put into the descriptor
+     * @return the method descriptor
+     */
+    private static String getDescriptor(final Executable executable, final Class<?> returnType) {
+        final StringBuilder sb = new StringBuilder("(");
+        for (final Class<?> parameter : executable.getParameterTypes()) {
+            sb.append(parameter.descriptorString());
+        }
+        return sb.append(')').append(returnType.descriptorString()).toString();
+    }
+
+    /**
+     * Returns the number of local variable slots taken by a value of the given type.
+     *
+     * @param type the type of the value
+     * @return {@code 2} for {@code long} and {@code double}, {@code 1} otherwise
+     */
+    private static int getSize(final Class<?> type) {
+        return type == long.class || type == double.class ? 2 : 1;
+    }
+
+    /**
+     * Returns the opcode loading a local variable of the given type.
+     *
+     * @param type the type of the variable
+     * @return {@code iload}, {@code lload}, {@code fload}, {@code dload} or {@code aload} opcode
+     */
+    private static int getLoadOpcode(final Class<?> type) {
+        if (type == long.class) {
+            return 0x16;
+        } else if (type == float.class) {
+            return 0x17;
+        } else if (type == double.class) {
+            return 0x18;
+        } else if (type.isPrimitive()) {
+            return 0x15;
+        } else {
+            return 0x19;
+        }
+    }
+
+    /**
+     * Returns the code returning the default value of the given type,
+     * the same value as the generated source returns.
+     *
+     * @param type the return type
+     * @return the bytecode of the method body
+     */
+    private static byte[] getDefaultReturn(final Class<?> type) {
+        if (type == void.class) {
+            return new byte[]{(byte) 0xb1};
+        } else if (type == long.class) {
+            return new byte[]{0x09, (byte) 0xad};
+        } else if (type == float.class) {
+            return new byte[]{0x0b, (byte) 0xae};
+        } else if (type == double.class) {
+            return new byte[]{0x0e, (byte) 0xaf};
+        } else if (type.isPrimitive()) {
+            return new byte[]{0x03, (byte) 0xac};
+        } else {
+            return new byte[]{0x01, (byte) 0xb0};
+        }
+    }
+
+    /**
+     * Writes a {@code method_info} structure.
+     *
+     * @param out        stream writing the class file body
+     * @param pool       constant pool of the class file
+     * @param executable method or constructor being implemented
+     * @param name       name of the method
+     * @param descriptor descriptor of the method
+     * @param maxStack   maximal depth of the operand stack
+     * @param code       bytecode of the method body
+     * @throws IOException if an error occurred trying to write
+     */
+    private static void writeMethod(final DataOutputStream out, final ConstantPool pool,
+                                    final Executable executable, final String name, final String descriptor,
+                                    final int maxStack, final byte[] code) throws IOException {
+        int maxLocals = 1;
+        for (final Class<?> parameter : executable.getParameterTypes()) {
+            maxLocals += getSize(parameter);
+        }
+        final Class<?>[] exceptions = executable.getExceptionTypes();
+
+        out.writeShort(executable.getModifiers() & METHOD_MODIFIERS);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(descriptor));
+        out.writeShort(exceptions.length == 0 ? 1 : 2);
+
+        out.writeShort(pool.utf8("Code"));
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+
+        if (exceptions.length != 0) {
+            out.writeShort(pool.utf8("Exceptions"));
+            out.writeInt(2 + 2 * exceptions.length);
+            out.writeShort(exceptions.length);
+            for (final Class<?> exception : exceptions) {
+                out.writeShort(pool.classRef(getInternalName(exception)));
+            }
+        }
+    }
+
+    /**
+     * Writes the constructor of the implementation class.
+     * The constructor passes its arguments to the <var>superConstructor</var>.
+     *
+     * @param out              stream writing the class file body
+     * @param pool             constant pool of the class file
+     * @param superClass       internal name of the parent class
+     * @param superConstructor constructor of the parent class to call
+     * @throws IOException if an error occurred trying to write
+     */
+    private static void writeConstructor(final DataOutputStream out, final ConstantPool pool,
+                                         final String superClass, final Executable superConstructor)
+            throws IOException {
+        final String descriptor = getDescriptor(superConstructor, void.class);
+        final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        code.write(0x2a);
+        int slot = 1;
+        for (final Class<?> parameter : superConstructor.getParameterTypes()) {
+            code.write(getLoadOpcode(parameter));
+            code.write(slot);
+            slot += getSize(parameter);
+        }
+        final int superInit = pool.methodRef(superClass, "<init>", descriptor);
+        code.write(0xb7);
+        code.write(superInit >> 8);
+        code.write(superInit);
+        code.write(0xb1);
+        writeMethod(out, pool, superConstructor, "<init>", descriptor, slot, code.toByteArray());
+    }
+
+    /**
+     * Returns the contents of the class file of the implementation class.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return contents of the class file
+     * @throws ImplerException if there are no appropriate constructors in a class given
+     */
+    static byte[] generate(final Class<?> token) throws ImplerException {
+        final Executable superConstructor;
+        final String superClass;
+        if (token.isInterface()) {
+            try {
+                superConstructor = Object.class.getConstructor();
+            } catch (final NoSuchMethodException e) {
+                throw new AssertionError("Object has a public constructor", e);
+            }
+            superClass = "java/lang/Object";
+        } else {
+            superConstructor = Implementor.getSuperConstructor(token);
+            superClass = getInternalName(token);
+        }
+        final List<Method> methods = Implementor.getImplementedMethods(token);
+
+        try {
+            final ConstantPool pool = new ConstantPool();
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(body);
+
+            out.writeShort(Modifier.PUBLIC | ACC_SUPER);
+            out.writeShort(pool.classRef(getImplName(token).replace('.', '/')));
+            out.writeShort(pool.classRef(superClass));
+            if (token.isInterface()) {
+                out.writeShort(1);
+                out.writeShort(pool.classRef(getInternalName(token)));
+            } else {
+                out.writeShort(0);
+            }
+            out.writeShort(0);
+
+            out.writeShort(1 + methods.size());
+            writeConstructor(out, pool, superClass, superConstructor);
+            for (final Method method : methods) {
+                final Class<?> returnType = method.getReturnType();
+                writeMethod(out, pool, method, method.getName(), getDescriptor(method, returnType),
+                        returnType == void.class ? 0 : getSize(returnType), getDefaultReturn(returnType));
+            }
+
+            out.writeShort(1);
+            out.writeShort(pool.utf8("SourceFile"));
+            out.writeInt(2);
+            out.writeShort(pool.utf8(getImplSimpleName(token) + ".java"));
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.size() + 1024);
+            final DataOutputStream classFile = new DataOutputStream(bytes);
+            classFile.writeInt(0xCAFEBABE);
+            classFile.writeShort(0);
+            classFile.writeShort(MAJOR_VERSION);
+            pool.writeTo(classFile);
+            body.writeTo(classFile);
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new ImplerException("Error during writing a class file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The <var>source</var> is ignored: the class file is written from the <var>token</var> alone.
+     */
+    @Override
+    public byte[] compile(final Class<?> token, final String source) throws ImplerException {
+        return generate(token);
+    }
+
+    /**
+     * Returns {@code false}: the class file is written from the <var>token</var> alone.
+     *
+     * @return {@code false}
+     */
+    @Override
+    public boolean requiresSource() {
+        return false;
+    }
+}
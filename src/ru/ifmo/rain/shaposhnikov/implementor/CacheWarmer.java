@@ -0,0 +1,348 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.module.ModuleReader;
+import java.lang.module.ResolvedModule;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Warms {@link LocalJarCache} caches up with the implementations of whole modules and packages.
+ * <p>
+ * The export command finds the public classes and interfaces of the given modules or packages of the boot layer
+ * or packages of the class path,
+ * implements every one that can be implemented with an {@link Implementor}, and packs the <var>.jar</var> files
+ * into a single archive together with their {@link CachingJarImplementor cache keys}.
+ * The <var>.jar</var> files are produced in memory, in batches compiled together.
+ * The import command puts every entry of an archive into a cache directory, reading the archive sequentially,
+ * so a fresh node starts with a hot cache for the {@link CachingJarImplementor} of the same platform version.
+ * Note that the implementations of classes in the packages of the platform modules cannot be compiled,
+ * so the platform modules themselves yield nothing.
+ * <p>
+ * The archive is a stream of entries: a UTF-8 key and the length and the contents of a <var>.jar</var> file,
+ * terminated by an empty key, after a header of the {@link #MAGIC magic number} and the {@link #FORMAT format}.
+ * <p>
+ * The resolutions command writes a {@link ResolutionArchive} of the classes and interfaces of the given
+ * modules or packages. Unlike their implementations, the resolutions of the platform classes are archived too.
+ * <p>
+ * Usage: {@code CacheWarmer -export archive name [name...]}, {@code CacheWarmer -import archive directory}
+ * or {@code CacheWarmer -resolutions archive name [name...]}, where names are module or package names.
+ *
+ * @author Boris Shaposhnikov
+ */
+public final class CacheWarmer {
+    /**
+     * Magic number of the archive.
+     */
+    private static final int MAGIC = 0x4A435741;
+
+    /**
+     * Version of the archive format.
+     */
+    private static final int FORMAT = 1;
+
+    /**
+     * Number of tokens compiled together.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Size of the buffers of the archive streams.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Utility class.
+     */
+    private CacheWarmer() {
+    }
+
+    /**
+     * Finds the public classes and interfaces of a module or a package of the boot layer,
+     * or of a package on the class path.
+     * Only the packages of the modules exported to every module are considered.
+     *
+     * @param name name of the module or the package
+     * @return the classes and interfaces, in the order of their names
+     * @throws ImplerException if there is no such module or package, or it cannot be read
+     */
+    static List<Class<?>> findClasses(final String name) throws ImplerException {
+        final Optional<Module> named = ModuleLayer.boot().findModule(name);
+        final Module module = named.orElseGet(() -> ModuleLayer.boot().modules().stream()
+                .filter(m -> m.getPackages().contains(name))
+                .findFirst()
+                .orElse(null));
+        final List<String> classNames;
+        final ClassLoader loader;
+        if (module != null) {
+            classNames = listModule(module, named.isPresent() ? module.getPackages() : Set.of(name));
+            loader = module.getClassLoader();
+        } else {
+            classNames = listClassPath(name);
+            loader = ClassLoader.getSystemClassLoader();
+        }
+        if (classNames.isEmpty()) {
+            throw new ImplerException("Unknown module or package " + name);
+        }
+        final List<Class<?>> classes = new ArrayList<>();
+        for (final String className : classNames) {
+            try {
+                final Class<?> token = Class.forName(className, false, loader);
+                if (isAccessible(token)) {
+                    classes.add(token);
+                }
+            } catch (final ClassNotFoundException | LinkageError ignored) {
+                // Classes that cannot be loaded cannot be implemented either.
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Lists the names of the classes of the exported <var>packages</var> of the <var>module</var>.
+     *
+     * @param module   the module
+     * @param packages packages of the module to list
+     * @return binary names of the classes, sorted
+     * @throws ImplerException if the module cannot be read
+     */
+    private static List<String> listModule(final Module module, final Set<String> packages) throws ImplerException {
+        final ResolvedModule resolved = module.getLayer().configuration().findModule(module.getName()).orElseThrow();
+        try (final ModuleReader reader = resolved.reference().open()) {
+            return reader.list()
+                    .filter(resource -> resource.endsWith(".class") && !resource.endsWith("module-info.class"))
+                    .map(resource -> resource.substring(0, resource.length() - ".class".length()).replace('/', '.'))
+                    .filter(className -> {
+                        final int dot = className.lastIndexOf('.');
+                        final String packageName = dot < 0 ? "" : className.substring(0, dot);
+                        return packages.contains(packageName) && module.isExported(packageName);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (final IOException | UncheckedIOException e) {
+            throw new ImplerException("Error during reading a module: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lists the names of the classes of the package in the directories and <var>.jar</var> files of the class path.
+     *
+     * @param packageName name of the package
+     * @return binary names of the classes, sorted
+     * @throws ImplerException if a class path entry cannot be read
+     */
+    private static List<String> listClassPath(final String packageName) throws ImplerException {
+        final String directory = packageName.replace('.', '/') + '/';
+        final Set<String> classNames = new TreeSet<>();
+        for (final String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            final Path path = Paths.get(entry);
+            try {
+                if (Files.isDirectory(path)) {
+                    final Path packagePath = path.resolve(directory);
+                    if (Files.isDirectory(packagePath)) {
+                        try (final Stream<Path> files = Files.list(packagePath)) {
+                            files.map(file -> directory + file.getFileName()).forEach(classNames::add);
+                        }
+                    }
+                } else if (Files.isRegularFile(path)) {
+                    try (final JarFile jar = new JarFile(path.toFile())) {
+                        jar.stream().map(JarEntry::getName).forEach(classNames::add);
+                    }
+                }
+            } catch (final IOException | UncheckedIOException e) {
+                throw new ImplerException("Error during reading a class path entry: " + e.getMessage(), e);
+            }
+        }
+        return classNames.stream()
+                .filter(resource -> resource.startsWith(directory) && resource.endsWith(".class")
+                        && resource.indexOf('/', directory.length()) < 0)
+                .map(resource -> resource.substring(0, resource.length() - ".class".length()).replace('/', '.'))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tells whether the class and all the classes enclosing it are public.
+     *
+     * @param token the class
+     * @return {@code true} if the class is accessible from other packages, {@code false} otherwise
+     */
+    private static boolean isAccessible(final Class<?> token) {
+        for (Class<?> type = token; type != null; type = type.getDeclaringClass()) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+        }
+        return !token.isAnonymousClass() && !token.isLocalClass();
+    }
+
+    /**
+     * Implements the classes and interfaces of the modules and packages and packs them into the archive.
+     * Classes and interfaces that cannot be implemented are skipped.
+     * The archive is written to a temporary file first and then moved.
+     *
+     * @param archive where to write the archive
+     * @param names   names of the modules or packages
+     * @return number of the packed <var>.jar</var> files
+     * @throws ImplerException if a module or package cannot be found or the archive cannot be written
+     */
+    public static int exportArchive(final Path archive, final List<String> names) throws ImplerException {
+        final Set<Class<?>> found = new LinkedHashSet<>();
+        for (final String name : names) {
+            found.addAll(findClasses(name));
+        }
+        final Implementor implementor = new Implementor();
+        final List<Class<?>> tokens = new ArrayList<>();
+        for (final Class<?> token : found) {
+            if (CachingJarImplementor.getKey(implementor, token) != null) {
+                tokens.add(token);
+            }
+        }
+        Util.createDirectories(archive);
+        int count = 0;
+        try {
+            final Path temp = Files.createTempFile(Util.getParent(archive), "archive", ".tmp");
+            try {
+                try (final DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT);
+                    for (int from = 0; from < tokens.size(); from += BATCH_SIZE) {
+                        final List<Class<?>> batch = tokens.subList(from, Math.min(tokens.size(), from + BATCH_SIZE));
+                        final Map<Class<?>, byte[]> jars =
+                                implementor.implementJarBytesAll(batch, new ConcurrentHashMap<>());
+                        for (final Class<?> token : batch) {
+                            final byte[] bytes = jars.get(token);
+                            if (bytes != null) {
+                                out.writeUTF(CachingJarImplementor.getKey(implementor, token));
+                                out.writeInt(bytes.length);
+                                out.write(bytes);
+                                count++;
+                            }
+                        }
+                    }
+                    out.writeUTF("");
+                }
+                Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            throw new ImplerException("Error during writing an archive: " + e.getMessage(), e);
+        }
+        return count;
+    }
+
+    /**
+     * Puts every entry of the archive into the cache.
+     *
+     * @param archive the archive
+     * @param cache   the cache
+     * @return number of the imported <var>.jar</var> files
+     * @throws ImplerException if the archive cannot be read or is invalid, or the cache cannot store an entry
+     */
+    public static int importArchive(final Path archive, final LocalJarCache cache) throws ImplerException {
+        int count = 0;
+        try (final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(archive), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new ImplerException("Unsupported archive " + archive);
+            }
+            for (String key = in.readUTF(); !key.isEmpty(); key = in.readUTF()) {
+                final int length = in.readInt();
+                if (length <= 0) {
+                    throw new ImplerException("Invalid archive entry length " + length);
+                }
+                final byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                cache.put(key, bytes);
+                count++;
+            }
+        } catch (final IOException e) {
+            throw new ImplerException("Error during reading an archive: " + e.getMessage(), e);
+        }
+        return count;
+    }
+
+    /**
+     * Resolves the classes and interfaces of the modules and packages and writes their resolution archive.
+     *
+     * @param archive where to write the archive
+     * @param names   names of the modules or packages
+     * @return number of the archived classes and interfaces
+     * @throws ImplerException if a module or package cannot be found or the archive cannot be written
+     * @see ResolutionArchive
+     */
+    public static int writeResolutions(final Path archive, final List<String> names) throws ImplerException {
+        final Set<Class<?>> found = new LinkedHashSet<>();
+        for (final String name : names) {
+            found.addAll(findClasses(name));
+        }
+        return ResolutionArchive.write(archive, found);
+    }
+
+    /**
+     * Exports or imports an archive, or writes a resolution archive.
+     *
+     * @param args command line arguments {@code -export archive name [name...]}, {@code -import archive directory}
+     *             or {@code -resolutions archive name [name...]}
+     * @see #exportArchive(Path, List)
+     * @see #importArchive(Path, LocalJarCache)
+     * @see #writeResolutions(Path, List)
+     */
+    public static void main(final String[] args) {
+        if (args == null || args.length < 3 || Arrays.asList(args).contains(null)
+                || !(args[0].equals("-export") || args[0].equals("-resolutions")
+                || args[0].equals("-import") && args.length == 3)) {
+            System.err.println("Expected -export archive name [name...], -import archive directory"
+                    + " or -resolutions archive name [name...]");
+            return;
+        }
+        try {
+            final Path archive = Paths.get(args[1]);
+            if (args[0].equals("-export")) {
+                final int count = exportArchive(archive, Arrays.asList(args).subList(2, args.length));
+                System.out.println("Exported " + count + " jar files to " + archive);
+            } else if (args[0].equals("-resolutions")) {
+                final int count = writeResolutions(archive, Arrays.asList(args).subList(2, args.length));
+                System.out.println("Resolved " + count + " classes to " + archive);
+            } else {
+                try (final LocalJarCache cache = new LocalJarCache(Paths.get(args[2]))) {
+                    final int count = importArchive(archive, cache);
+                    System.out.println("Imported " + count + " jar files from " + archive);
+                }
+            }
+        } catch (final ImplerException e) {
+            System.err.println(e.getMessage());
+        } catch (final InvalidPathException e) {
+            System.err.println("Invalid path: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import info.kgeorgiy.java.advanced.implementor.JarImpler;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * {@link JarImpler} taking <var>.jar</var> files from a {@link JarCache}.
+ * A <var>.jar</var> file is produced by the underlying implementor on a cache miss only, and is put into the cache then.
+ * <p>
+ * The key of a token is the digest of the {@link #GENERATOR_VERSION generator version},
+ * the class of the underlying implementor, the {@link ClassCompiler#getIdentity() identity} of its compiler
+ * if it is an {@link Implementor}, the version of the platform compiling the classes
+ * and the {@link AbiFingerprint ABI fingerprint} of the token.
+ * So the <var>.jar</var> file is produced again only if the signatures the implementation depends on change,
+ * and not when method bodies or members that are not overridden change.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class CachingJarImplementor implements JarImpler {
+    /**
+     * Version of the generated code, to be changed whenever the code generated for the same token changes.
+     */
+    public static final String GENERATOR_VERSION = "1";
+
+    /**
+     * Implementor producing <var>.jar</var> files on cache misses.
+     */
+    private final JarImpler implementor;
+
+    /**
+     * Cache of the <var>.jar</var> files.
+     */
+    private final JarCache cache;
+
+    /**
+     * Constructs an implementor taking <var>.jar</var> files from the <var>cache</var>
+     * and producing them with a new {@link Implementor} on cache misses.
+     *
+     * @param cache cache of the <var>.jar</var> files
+     */
+    public CachingJarImplementor(final JarCache cache) {
+        this(new Implementor(), cache);
+    }
+
+    /**
+     * Constructs an implementor taking <var>.jar</var> files from the <var>cache</var>
+     * and producing them with the <var>implementor</var> on cache misses.
+     *
+     * @param implementor implementor producing <var>.jar</var> files on cache misses
+     * @param cache       cache of the <var>.jar</var> files
+     */
+    public CachingJarImplementor(final JarImpler implementor, final JarCache cache) {
+        this.implementor = Objects.requireNonNull(implementor, "Expected non null implementor");
+        this.cache = Objects.requireNonNull(cache, "Expected non null cache");
+    }
+
+    @Override
+    public void implement(final Class<?> token, final Path root) throws ImplerException {
+        implementor.implement(token, root);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The <var>.jar</var> file is taken from the cache if there is one for the <var>token</var>.
+     * Otherwise, it is produced holding the {@link JarCache#lease(String) lease} of the key,
+     * unless another producer of the same key put it into the cache meanwhile.
+     * Failures to store the produced <var>.jar</var> file are reported but do not fail the call.
+     */
+    @Override
+    public void implementJar(final Class<?> token, final Path jarFile) throws ImplerException {
+        nullAssertion(token, jarFile);
+        final String key = getKey(token);
+        if (key == null) {
+            implementor.implementJar(token, jarFile);
+            return;
+        }
+        if (cache.get(key, jarFile)) {
+            return;
+        }
+        final JarCache.Lease lease = cache.lease(key);
+        try {
+            if (cache.get(key, jarFile)) {
+                return;
+            }
+            implementor.implementJar(token, jarFile);
+            try {
+                cache.put(key, jarFile);
+            } catch (final ImplerException e) {
+                System.err.println("Error during caching a jar file: " + e.getMessage());
+            }
+        } finally {
+            lease.close();
+        }
+    }
+
+    /**
+     * Fetches the cached <var>.jar</var> files of the <var>tokens</var> in advance,
+     * so that implementing the batch token by token does not wait for a slow cache on every token.
+     *
+     * @param tokens tokens that are going to be implemented
+     * @throws ImplerException if <var>tokens</var> or any of its elements is {@code null},
+     *                         or the <var>.jar</var> files cannot be fetched at all
+     * @see JarCache#prefetch(Collection)
+     */
+    public void prefetch(final Collection<Class<?>> tokens) throws ImplerException {
+        nullAssertion(tokens);
+        nullAssertion(tokens.toArray());
+        final List<String> keys = new ArrayList<>();
+        for (final Class<?> token : tokens) {
+            final String key = getKey(token);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        cache.prefetch(keys);
+    }
+
+    /**
+     * Returns the cache key of the <var>token</var>.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return hexadecimal digest of the key, or {@code null} if the <var>token</var> cannot be implemented
+     * @see AbiFingerprint
+     */
+    String getKey(final Class<?> token) {
+        return getKey(implementor, token);
+    }
+
+    /**
+     * Returns the cache key of the <var>.jar</var> file produced for the <var>token</var> by the <var>implementor</var>.
+     *
+     * @param implementor implementor producing the <var>.jar</var> file
+     * @param token       the {@link Class} object of a parent class or an interface that is being implemented
+     * @return hexadecimal digest of the key, or {@code null} if the <var>token</var> cannot be implemented
+     * @see AbiFingerprint
+     */
+    static String getKey(final JarImpler implementor, final Class<?> token) {
+        final String fingerprint = AbiFingerprint.of(token);
+        if (fingerprint == null) {
+            return null;
+        }
+        final String compiler = implementor instanceof Implementor
+                ? ((Implementor) implementor).getCompiler().getIdentity() : "";
+        final String key = String.join("\n", GENERATOR_VERSION, implementor.getClass().getName(), compiler,
+                Integer.toString(Runtime.version().feature()), fingerprint);
+        return HexFormat.of().formatHex(LocalJarCache.sha256(key.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles generated implementation classes.
+ * Used by {@link Implementor#implementJar(Class, java.nio.file.Path)} to turn the generated source
+ * into the contents of the <var>.class</var> file that is put into the <var>.jar</var>.
+ *
+ * @author Boris Shaposhnikov
+ * @see TempDirectoryCompiler
+ * @see InMemoryCompiler
+ * @see BytecodeCompiler
+ * @see ProcessCompiler
+ */
+public interface ClassCompiler {
+    /**
+     * Compiles the implementation of the <var>token</var>.
+     *
+     * @param token  the {@link Class} object of a parent class or an interface that is being implemented
+     * @param source source code of the implementation class, ignored if it is not {@link #requiresSource() required}
+     * @return contents of the <var>.class</var> file of the implementation class
+     * @throws ImplerException if the java compiler wasn't found or an error occurred trying to compile classes
+     */
+    byte[] compile(Class<?> token, String source) throws ImplerException;
+
+    /**
+     * Tells whether the compiler needs the generated source.
+     * Compilers producing the class file from the <var>token</var> alone get no source,
+     * so it is not generated for them.
+     *
+     * @return {@code true} if {@link #compile(Class, String)} needs the source, {@code false} otherwise
+     */
+    default boolean requiresSource() {
+        return true;
+    }
+
+    /**
+     * Returns the identity of the class files the compiler produces.
+     * Compilers with equal identities produce the same class files from the same sources,
+     * so the identity is a part of the keys of the cached <var>.jar</var> files, see {@link CachingJarImplementor}.
+     * By default, the name of the class of the compiler.
+     *
+     * @return the identity
+     */
+    default String getIdentity() {
+        return getClass().getName();
+    }
+
+    /**
+     * Compiles the implementations of several tokens.
+     * A token failing to compile is put into <var>failed</var> and does not prevent the others from being compiled.
+     * By default, tokens are compiled one by one with {@link #compile(Class, String)}.
+     *
+     * @param sources source code of the implementation classes by tokens
+     * @param failed  where to put the causes of failure of the tokens that cannot be compiled
+     * @return contents of the <var>.class</var> files of the successfully compiled tokens
+     */
+    default Map<Class<?>, byte[]> compileAll(final Map<Class<?>, String> sources,
+                                             final Map<Class<?>, ImplerException> failed) {
+        final Map<Class<?>, byte[]> classes = new LinkedHashMap<>();
+        for (final Map.Entry<Class<?>, String> entry : sources.entrySet()) {
+            try {
+                classes.put(entry.getKey(), compile(entry.getKey(), entry.getValue()));
+            } catch (final ImplerException e) {
+                failed.put(entry.getKey(), e);
+            }
+        }
+        return classes;
+    }
+}
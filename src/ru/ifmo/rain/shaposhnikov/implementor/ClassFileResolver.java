@@ -0,0 +1,1179 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * Resolution of {@link ClassStub stubs} from <var>.class</var> files, without loading the classes into the JVM.
+ * The <var>.class</var> files of a class and its supertypes are parsed, and the stub is built exactly as
+ * {@link ClassStub#reflect(Class)} builds it from the loaded class:
+ * the public methods are merged as {@link Class#getMethods()} merges them,
+ * the method tables are built as in {@link MethodResolver}, and the constructor is chosen
+ * as by {@link Implementor#getSuperConstructor(Class)}. Canonical and simple names of nested classes
+ * are taken from the <var>InnerClasses</var> attributes.
+ * <p>
+ * Classes are looked up as the class loader given by {@link Util#getClassLoader(List)} for the same class path
+ * would load them: in the modules of the runtime image first, then in the entries of the class path.
+ * Parsed <var>.class</var> files are kept in the resolver, so the types shared by hierarchies are parsed once.
+ * Only the parts needed for resolution are kept, not the contents of the files.
+ * <p>
+ * A resolver is not thread-safe. It keeps the <var>.jar</var> files of the class path open until it is closed.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class ClassFileResolver implements Closeable {
+    /**
+     * Magic number of a <var>.class</var> file.
+     */
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * Modifiers of a method reported by reflection, the {@code JVM_RECOGNIZED_METHOD_MODIFIERS} of the JVM:
+     * the access flags of a method including the bridge, varargs and synthetic ones.
+     */
+    private static final int METHOD_MODIFIERS = 0x1DFF;
+
+    /**
+     * Major version of the <var>.class</var> files of Java 17, from which the strict flag is ignored.
+     */
+    private static final int JAVA_17_VERSION = 61;
+
+    /**
+     * Constant pool tags.
+     */
+    private static final int UTF8 = 1, INTEGER = 3, FLOAT = 4, LONG = 5, DOUBLE = 6, CLASS = 7, STRING = 8,
+            FIELD_REF = 9, METHOD_REF = 10, INTERFACE_METHOD_REF = 11, NAME_AND_TYPE = 12, METHOD_HANDLE = 15,
+            METHOD_TYPE = 16, DYNAMIC = 17, INVOKE_DYNAMIC = 18, MODULE = 19, PACKAGE = 20;
+
+    /**
+     * Names of the primitive types by their descriptors.
+     */
+    private static final Map<Character, String> PRIMITIVES = Map.of(
+            'Z', "boolean", 'B', "byte", 'C', "char", 'S', "short",
+            'I', "int", 'J', "long", 'F', "float", 'D', "double", 'V', "void");
+
+    /**
+     * Entries of the class path, looked up after the runtime image.
+     */
+    private final List<Path> classPath;
+
+    /**
+     * Whether the modules of the runtime image defined to the application class loader are visible,
+     * as they are to the system class loader but not to an isolated one.
+     */
+    private final boolean applicationModules;
+
+    /**
+     * The runtime image.
+     */
+    private final FileSystem runtimeImage;
+
+    /**
+     * Visible modules of the runtime image containing the directories of the packages, by the packages.
+     */
+    private final Map<String, List<String>> packageModules = new HashMap<>();
+
+    /**
+     * Opened <var>.jar</var> files of the class path.
+     */
+    private final Map<Path, JarFile> jars = new HashMap<>();
+
+    /**
+     * Parsed <var>.class</var> files by the binary names of the classes, empty for the missing ones.
+     */
+    private final Map<String, Optional<ClassFile>> classFiles = new HashMap<>();
+
+    /**
+     * Canonical names by the binary names, {@code null} values for the local and anonymous classes.
+     */
+    private final Map<String, String> canonicalNames = new HashMap<>();
+
+    /**
+     * Public methods by the binary names of the classes, in the order of {@link Class#getMethods()}.
+     */
+    private final Map<String, List<Member>> publicMethods = new HashMap<>();
+
+    /**
+     * Method tables by the binary names of the classes.
+     */
+    private final Map<String, MethodTable> methodTables = new HashMap<>();
+
+    /**
+     * Binary names of all the supertypes of the classes, the classes themselves included.
+     */
+    private final Map<String, Set<String>> supertypes = new HashMap<>();
+
+    /**
+     * Creates a resolver of the classes of the <var>classPath</var>.
+     * An empty class path stands for the class path of the running application, as in {@link Util#getClassLoader(List)}.
+     *
+     * @param classPath entries of the class path
+     */
+    ClassFileResolver(final List<Path> classPath) {
+        this.applicationModules = classPath.isEmpty();
+        this.classPath = classPath.isEmpty()
+                ? Util.parseClassPath(System.getProperty("java.class.path", ""))
+                : List.copyOf(classPath);
+        this.runtimeImage = FileSystems.getFileSystem(URI.create("jrt:/"));
+    }
+
+    /**
+     * Parsed <var>.class</var> file, only the parts needed for resolution.
+     */
+    private static final class ClassFile {
+        /**
+         * Binary name of the class.
+         */
+        final String name;
+
+        /**
+         * Modifiers of the class, as {@link Class#getModifiers()} returns them.
+         */
+        final int modifiers;
+
+        /**
+         * Whether the class is an interface.
+         */
+        final boolean isInterface;
+
+        /**
+         * Binary name of the superclass, {@code null} for {@link Object} and interfaces.
+         */
+        final String superclass;
+
+        /**
+         * Binary names of the direct superinterfaces, in declaration order.
+         */
+        final List<String> interfaces;
+
+        /**
+         * Methods and constructors declared in the class.
+         */
+        final List<MethodInfo> methods;
+
+        /**
+         * Entries of the <var>InnerClasses</var> attribute by the binary names of the nested classes.
+         */
+        final Map<String, InnerClass> innerClasses;
+
+        /**
+         * Constructs a parsed <var>.class</var> file.
+         *
+         * @param name         binary name of the class
+         * @param modifiers    modifiers of the class
+         * @param isInterface  whether the class is an interface
+         * @param superclass   binary name of the superclass
+         * @param interfaces   binary names of the direct superinterfaces
+         * @param methods      declared methods and constructors
+         * @param innerClasses entries of the <var>InnerClasses</var> attribute
+         */
+        ClassFile(final String name, final int modifiers, final boolean isInterface, final String superclass,
+                  final List<String> interfaces, final List<MethodInfo> methods,
+                  final Map<String, InnerClass> innerClasses) {
+            this.name = name;
+            this.modifiers = modifiers;
+            this.isInterface = isInterface;
+            this.superclass = superclass;
+            this.interfaces = interfaces;
+            this.methods = methods;
+            this.innerClasses = innerClasses;
+        }
+    }
+
+    /**
+     * Method or constructor declared in a <var>.class</var> file.
+     */
+    private static final class MethodInfo {
+        /**
+         * Modifiers, as {@link java.lang.reflect.Executable#getModifiers()} returns them.
+         */
+        final int modifiers;
+
+        /**
+         * Name, <var>&lt;init&gt;</var> for a constructor.
+         */
+        final String name;
+
+        /**
+         * Descriptor.
+         */
+        final String descriptor;
+
+        /**
+         * Binary names of the exception types of the <var>Exceptions</var> attribute.
+         */
+        final List<String> exceptions;
+
+        /**
+         * Constructs a method.
+         *
+         * @param modifiers  modifiers of the method
+         * @param name       name of the method
+         * @param descriptor descriptor of the method
+         * @param exceptions binary names of the exception types
+         */
+        MethodInfo(final int modifiers, final String name, final String descriptor, final List<String> exceptions) {
+            this.modifiers = modifiers;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.exceptions = exceptions;
+        }
+
+        /**
+         * Returns the part of the descriptor naming the parameter types.
+         *
+         * @return the descriptor up to the closing parenthesis inclusive
+         */
+        String getParameters() {
+            return descriptor.substring(0, descriptor.indexOf(')') + 1);
+        }
+
+        /**
+         * Returns the part of the descriptor naming the return type.
+         *
+         * @return the descriptor after the closing parenthesis
+         */
+        String getReturnType() {
+            return descriptor.substring(descriptor.indexOf(')') + 1);
+        }
+    }
+
+    /**
+     * Entry of an <var>InnerClasses</var> attribute.
+     */
+    private static final class InnerClass {
+        /**
+         * Binary name of the declaring class, {@code null} for a local or an anonymous class.
+         */
+        final String outer;
+
+        /**
+         * Simple name, {@code null} for an anonymous class.
+         */
+        final String simpleName;
+
+        /**
+         * Modifiers of the nested class.
+         */
+        final int modifiers;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param outer      binary name of the declaring class
+         * @param simpleName simple name of the class
+         * @param modifiers  modifiers of the class
+         */
+        InnerClass(final String outer, final String simpleName, final int modifiers) {
+            this.outer = outer;
+            this.simpleName = simpleName;
+            this.modifiers = modifiers;
+        }
+    }
+
+    /**
+     * Method together with the class declaring it.
+     */
+    private static final class Member {
+        /**
+         * The declaring class.
+         */
+        final ClassFile owner;
+
+        /**
+         * The method.
+         */
+        final MethodInfo method;
+
+        /**
+         * Constructs a member.
+         *
+         * @param owner  the declaring class
+         * @param method the method
+         */
+        Member(final ClassFile owner, final MethodInfo method) {
+            this.owner = owner;
+            this.method = method;
+        }
+
+        /**
+         * Returns the signature methods are matched by in {@link MethodResolver}:
+         * the name, the parameter types and the return type.
+         *
+         * @return the name followed by the descriptor
+         */
+        String getSignature() {
+            return method.name + method.descriptor;
+        }
+    }
+
+    /**
+     * Abstract and final methods declared in a class and its superclasses, as in {@link MethodResolver}.
+     */
+    private static final class MethodTable {
+        /**
+         * Abstract methods by signatures, methods of subclasses first.
+         */
+        final Map<String, Member> abstractMethods;
+
+        /**
+         * Signatures of the final methods.
+         */
+        final Set<String> finalMethods;
+
+        /**
+         * Constructs a table.
+         *
+         * @param abstractMethods abstract methods by signatures
+         * @param finalMethods    signatures of the final methods
+         */
+        MethodTable(final Map<String, Member> abstractMethods, final Set<String> finalMethods) {
+            this.abstractMethods = abstractMethods;
+            this.finalMethods = finalMethods;
+        }
+    }
+
+    /**
+     * Resolves the stub of the class of the given name.
+     *
+     * @param className binary name of a parent class or an interface that is being implemented
+     * @return the stub
+     * @throws ImplerException if the class or one of its supertypes cannot be found or read,
+     * if the class cannot be implemented, or if there are no appropriate constructors in it
+     */
+    ClassStub resolve(final String className) throws ImplerException {
+        final ClassFile token = get(className);
+        if (!isSupported(token)) {
+            throw new ImplerException("Unsupported class token given");
+        }
+        final ClassStub.MethodStub constructor = token.isInterface ? null : getSuperConstructor(token);
+        final List<ClassStub.MethodStub> methods = new ArrayList<>();
+        for (final Member member : getImplementedMethods(token)) {
+            methods.add(toStub(member.owner, member.method, member.method.name,
+                    getTypeName(member.method.getReturnType(), member.owner)));
+        }
+        final int dot = className.lastIndexOf('.');
+        final InnerClass inner = token.innerClasses.get(className);
+        final String simpleName = inner == null
+                ? className.substring(dot + 1)
+                : inner.simpleName == null ? "" : inner.simpleName;
+        return new ClassStub(className, dot < 0 ? "" : className.substring(0, dot), simpleName,
+                getCanonicalName(className, token), token.isInterface, constructor, List.copyOf(methods));
+    }
+
+    /**
+     * Tells whether the class can be implemented, by the rules of {@link Implementor#checkToken(Class)}:
+     * it is neither {@link Enum}, nor a final or a private class.
+     * Primitives and arrays have no <var>.class</var> files.
+     *
+     * @param token the parsed class
+     * @return {@code true} if the class can be implemented, {@code false} otherwise
+     */
+    private static boolean isSupported(final ClassFile token) {
+        return !token.name.equals("java.lang.Enum")
+                && !Modifier.isFinal(token.modifiers)
+                && !Modifier.isPrivate(token.modifiers);
+    }
+
+    /**
+     * Parses the <var>.class</var> file and tells whether it declares an abstract class or an interface
+     * that can be implemented, see {@link #isSupported(ClassFile)}.
+     * Nothing but the file itself is read.
+     *
+     * @param bytes contents of the <var>.class</var> file
+     * @return binary name of the class, or {@code null} if it is concrete or cannot be implemented
+     * @throws ImplerException if the file is malformed
+     */
+    static String getImplementableName(final byte[] bytes) throws ImplerException {
+        final ClassFile classFile = parse(bytes);
+        return (classFile.isInterface || Modifier.isAbstract(classFile.modifiers)) && isSupported(classFile)
+                ? classFile.name
+                : null;
+    }
+
+    /**
+     * Chooses the constructor of the parent class as {@link Implementor#getSuperConstructor(Class)} does.
+     *
+     * @param token the parent class
+     * @return the constructor to call
+     * @throws ImplerException if there are no appropriate constructors in a class given
+     */
+    private ClassStub.MethodStub getSuperConstructor(final ClassFile token) throws ImplerException {
+        final Optional<MethodInfo> constructor = token.methods.stream()
+                .filter(method -> method.name.equals("<init>") && !Modifier.isPrivate(method.modifiers))
+                .min(Comparator.<MethodInfo>comparingInt(method -> parseTypes(method.getParameters()).size())
+                        .thenComparing(method -> String.join(",", parseTypes(method.getParameters()))));
+        if (constructor.isEmpty()) {
+            throw new ImplerException("No non-private constructors found");
+        }
+        return toStub(token, constructor.get(), token.name, null);
+    }
+
+    /**
+     * Returns the methods an implementation of the <var>token</var> has to override,
+     * as {@link MethodResolver#getImplementedMethods(Class)} does.
+     *
+     * @param token the parent class or the interface
+     * @return the methods, sorted as {@link MethodResolver} sorts them
+     * @throws ImplerException if a supertype cannot be found or read
+     */
+    private List<Member> getImplementedMethods(final ClassFile token) throws ImplerException {
+        final MethodTable table = getMethodTable(token);
+        final Map<String, Member> implemented = new LinkedHashMap<>();
+        final Set<String> removed = new HashSet<>();
+        for (final Member member : getPublicMethods(token)) {
+            if (Modifier.isAbstract(member.method.modifiers)) {
+                implemented.putIfAbsent(member.getSignature(), member);
+            } else if (Modifier.isFinal(member.method.modifiers)) {
+                removed.add(member.getSignature());
+            }
+        }
+        table.abstractMethods.forEach(implemented::putIfAbsent);
+        final Map<String, Member> sorted = new TreeMap<>();
+        for (final Map.Entry<String, Member> entry : implemented.entrySet()) {
+            if (!table.finalMethods.contains(entry.getKey()) && !removed.contains(entry.getKey())) {
+                sorted.put(getSortKey(entry.getValue().method), entry.getValue());
+            }
+        }
+        return List.copyOf(sorted.values());
+    }
+
+    /**
+     * Returns the key methods are sorted by, as in {@link MethodResolver}.
+     *
+     * @param method the method
+     * @return the name, binary names of the parameter types in parentheses and the binary name of the return type
+     */
+    private static String getSortKey(final MethodInfo method) {
+        final StringBuilder sb = new StringBuilder(method.name).append('(');
+        for (final String parameterType : parseTypes(method.getParameters())) {
+            sb.append(parameterType).append(',');
+        }
+        return sb.append(')').append(parseTypes(method.getReturnType()).get(0)).toString();
+    }
+
+    /**
+     * Returns the method table of the class, built from the table of its superclass.
+     *
+     * @param type the class
+     * @return the table
+     * @throws ImplerException if a superclass cannot be found or read
+     */
+    private MethodTable getMethodTable(final ClassFile type) throws ImplerException {
+        final MethodTable cached = methodTables.get(type.name);
+        if (cached != null) {
+            return cached;
+        }
+        final Map<String, Member> abstractMethods = new LinkedHashMap<>();
+        final Set<String> finalMethods = new HashSet<>();
+        for (final MethodInfo method : type.methods) {
+            if (!isDeclaredMethod(method)) {
+                continue;
+            }
+            if (Modifier.isAbstract(method.modifiers)) {
+                abstractMethods.putIfAbsent(method.name + method.descriptor, new Member(type, method));
+            } else if (Modifier.isFinal(method.modifiers)) {
+                finalMethods.add(method.name + method.descriptor);
+            }
+        }
+        if (type.superclass != null) {
+            final MethodTable parent = getMethodTable(get(type.superclass));
+            parent.abstractMethods.forEach(abstractMethods::putIfAbsent);
+            finalMethods.addAll(parent.finalMethods);
+        }
+        final MethodTable table = new MethodTable(abstractMethods, finalMethods);
+        methodTables.put(type.name, table);
+        return table;
+    }
+
+    /**
+     * Returns the public methods of the class, merged and ordered as by {@link Class#getMethods()}:
+     * the public methods declared in the class, of the superclass and the non-static ones of the superinterfaces.
+     *
+     * @param type the class
+     * @return the methods
+     * @throws ImplerException if a supertype cannot be found or read
+     */
+    private List<Member> getPublicMethods(final ClassFile type) throws ImplerException {
+        final List<Member> cached = publicMethods.get(type.name);
+        if (cached != null) {
+            return cached;
+        }
+        final Map<String, List<Member>> merged = new LinkedHashMap<>();
+        for (final MethodInfo method : type.methods) {
+            if (isDeclaredMethod(method) && Modifier.isPublic(method.modifiers)) {
+                merge(merged, new Member(type, method));
+            }
+        }
+        if (type.superclass != null) {
+            for (final Member member : getPublicMethods(get(type.superclass))) {
+                merge(merged, member);
+            }
+        }
+        for (final String superinterface : type.interfaces) {
+            for (final Member member : getPublicMethods(get(superinterface))) {
+                if (!Modifier.isStatic(member.method.modifiers)) {
+                    merge(merged, member);
+                }
+            }
+        }
+        final List<Member> methods = merged.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toUnmodifiableList());
+        publicMethods.put(type.name, methods);
+        return methods;
+    }
+
+    /**
+     * Merges the <var>member</var> into the methods with the same name and parameter types,
+     * as {@link Class#getMethods()} does: of the methods with the same return type, the most specific ones are kept,
+     * and the methods declared in classes take precedence over the methods declared in interfaces.
+     *
+     * @param merged methods by the names and parameter types
+     * @param member the method to merge
+     * @throws ImplerException if a supertype cannot be found or read
+     */
+    private void merge(final Map<String, List<Member>> merged, final Member member) throws ImplerException {
+        final List<Member> methods = merged.computeIfAbsent(
+                member.method.name + member.method.getParameters(), key -> new ArrayList<>());
+        final String returnType = member.method.getReturnType();
+        final ClassFile owner = member.owner;
+        for (int i = 0; i < methods.size(); i++) {
+            final Member existing = methods.get(i);
+            if (!returnType.equals(existing.method.getReturnType())) {
+                continue;
+            }
+            final ClassFile existingOwner = existing.owner;
+            if (owner.isInterface == existingOwner.isInterface) {
+                if (isAssignableFrom(owner, existingOwner)) {
+                    return;
+                }
+                if (isAssignableFrom(existingOwner, owner)) {
+                    methods.remove(i--);
+                }
+            } else if (owner.isInterface) {
+                return;
+            } else {
+                methods.remove(i--);
+            }
+        }
+        methods.add(member);
+    }
+
+    /**
+     * Tells whether the <var>type</var> is the <var>subtype</var> or its supertype.
+     *
+     * @param type    the supposed supertype
+     * @param subtype the supposed subtype
+     * @return {@code true} if the <var>subtype</var> is assignable to the <var>type</var>
+     * @throws ImplerException if a supertype cannot be found or read
+     */
+    private boolean isAssignableFrom(final ClassFile type, final ClassFile subtype) throws ImplerException {
+        return getSupertypes(subtype).contains(type.name);
+    }
+
+    /**
+     * Returns the binary names of all the supertypes of the class, the class itself included.
+     *
+     * @param type the class
+     * @return the names
+     * @throws ImplerException if a supertype cannot be found or read
+     */
+    private Set<String> getSupertypes(final ClassFile type) throws ImplerException {
+        final Set<String> cached = supertypes.get(type.name);
+        if (cached != null) {
+            return cached;
+        }
+        final Set<String> names = new HashSet<>();
+        names.add(type.name);
+        if (type.superclass != null) {
+            names.addAll(getSupertypes(get(type.superclass)));
+        }
+        for (final String superinterface : type.interfaces) {
+            names.addAll(getSupertypes(get(superinterface)));
+        }
+        supertypes.put(type.name, names);
+        return names;
+    }
+
+    /**
+     * Tells whether the method is returned by {@link Class#getDeclaredMethods()}, that is not an initializer.
+     *
+     * @param method the method
+     * @return {@code true} for the methods, {@code false} for the constructors and the static initializer
+     */
+    private static boolean isDeclaredMethod(final MethodInfo method) {
+        return !method.name.equals("<init>") && !method.name.equals("<clinit>");
+    }
+
+    /**
+     * Builds the stub of a method or a constructor.
+     *
+     * @param owner      the declaring class
+     * @param method     the method or the constructor
+     * @param name       name of the stub
+     * @param returnType return type, {@code null} for a constructor
+     * @return the stub
+     * @throws ImplerException if a nested class of the signature cannot be read
+     */
+    private ClassStub.MethodStub toStub(final ClassFile owner, final MethodInfo method, final String name,
+                                        final ClassStub.TypeName returnType) throws ImplerException {
+        final List<ClassStub.TypeName> parameterTypes = new ArrayList<>();
+        for (final String parameterType : parseDescriptors(method.getParameters())) {
+            parameterTypes.add(getTypeName(parameterType, owner));
+        }
+        final List<ClassStub.TypeName> exceptionTypes = new ArrayList<>();
+        for (final String exceptionType : method.exceptions) {
+            exceptionTypes.add(new ClassStub.TypeName(exceptionType, getCanonicalName(exceptionType, owner)));
+        }
+        return new ClassStub.MethodStub(method.modifiers, name, returnType,
+                List.copyOf(parameterTypes), List.copyOf(exceptionTypes));
+    }
+
+    /**
+     * Returns the name of the type of the descriptor.
+     *
+     * @param descriptor descriptor of a single type
+     * @param context    class whose <var>InnerClasses</var> attribute is consulted first
+     * @return the name
+     * @throws ImplerException if a nested class cannot be read
+     */
+    private ClassStub.TypeName getTypeName(final String descriptor, final ClassFile context) throws ImplerException {
+        final String name = toBinaryName(descriptor);
+        int dimensions = 0;
+        while (descriptor.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        final String component = descriptor.substring(dimensions);
+        String canonicalName;
+        if (component.charAt(0) == 'L') {
+            canonicalName = getCanonicalName(toBinaryName(component), context);
+        } else {
+            canonicalName = PRIMITIVES.get(component.charAt(0));
+        }
+        if (canonicalName != null) {
+            canonicalName += "[]".repeat(dimensions);
+        }
+        return new ClassStub.TypeName(name, canonicalName);
+    }
+
+    /**
+     * Returns the canonical name of a class, as {@link Class#getCanonicalName()} does.
+     * The class is taken as a nested one if the <var>InnerClasses</var> attribute of the <var>context</var>
+     * or, failing that, of the class itself says so. The <var>.class</var> file of the class
+     * is only read if its name contains a dollar sign and the <var>context</var> has no entry for it.
+     *
+     * @param name    binary name of the class
+     * @param context class whose <var>InnerClasses</var> attribute is consulted first
+     * @return the canonical name, or {@code null} for a local or an anonymous class and the classes nested in them
+     * @throws ImplerException if the <var>.class</var> file of a class cannot be read
+     */
+    private String getCanonicalName(final String name, final ClassFile context) throws ImplerException {
+        if (canonicalNames.containsKey(name)) {
+            return canonicalNames.get(name);
+        }
+        InnerClass inner = context.innerClasses.get(name);
+        if (inner == null && name.indexOf('$') >= 0) {
+            final ClassFile own = find(name);
+            inner = own == null ? null : own.innerClasses.get(name);
+        }
+        final String canonicalName;
+        if (inner == null) {
+            canonicalName = name;
+        } else if (inner.outer == null || inner.simpleName == null) {
+            canonicalName = null;
+        } else {
+            final String outer = getCanonicalName(inner.outer, context);
+            canonicalName = outer == null ? null : outer + "." + inner.simpleName;
+        }
+        canonicalNames.put(name, canonicalName);
+        return canonicalName;
+    }
+
+    /**
+     * Splits the descriptors of the types in a method descriptor part.
+     *
+     * @param descriptors descriptors of the types, possibly in parentheses
+     * @return the descriptors of the types
+     */
+    private static List<String> parseDescriptors(final String descriptors) {
+        final List<String> types = new ArrayList<>();
+        int i = descriptors.startsWith("(") ? 1 : 0;
+        while (i < descriptors.length() && descriptors.charAt(i) != ')') {
+            final int start = i;
+            while (descriptors.charAt(i) == '[') {
+                i++;
+            }
+            i = descriptors.charAt(i) == 'L' ? descriptors.indexOf(';', i) + 1 : i + 1;
+            types.add(descriptors.substring(start, i));
+        }
+        return types;
+    }
+
+    /**
+     * Returns the binary names of the types in a method descriptor part.
+     *
+     * @param descriptors descriptors of the types, possibly in parentheses
+     * @return names of the types, as {@link Class#getName()} returns them
+     */
+    private static List<String> parseTypes(final String descriptors) {
+        return parseDescriptors(descriptors).stream()
+                .map(ClassFileResolver::toBinaryName)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the name of the type of the descriptor, as {@link Class#getName()} returns it.
+     *
+     * @param descriptor descriptor of a single type
+     * @return the name
+     */
+    private static String toBinaryName(final String descriptor) {
+        switch (descriptor.charAt(0)) {
+            case '[':
+                return descriptor.replace('/', '.');
+            case 'L':
+                return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+            default:
+                return PRIMITIVES.get(descriptor.charAt(0));
+        }
+    }
+
+    /**
+     * Returns the parsed <var>.class</var> file of the class.
+     *
+     * @param name binary name of the class
+     * @return the parsed file
+     * @throws ImplerException if the class cannot be found or its <var>.class</var> file cannot be read
+     */
+    private ClassFile get(final String name) throws ImplerException {
+        final ClassFile classFile = find(name);
+        if (classFile == null) {
+            throw new ImplerException("Class not found: " + name);
+        }
+        return classFile;
+    }
+
+    /**
+     * Finds and parses the <var>.class</var> file of the class.
+     *
+     * @param name binary name of the class
+     * @return the parsed file, or {@code null} if the class cannot be found
+     * @throws ImplerException if the <var>.class</var> file cannot be read or parsed
+     */
+    private ClassFile find(final String name) throws ImplerException {
+        final Optional<ClassFile> cached = classFiles.get(name);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        final byte[] bytes = readClassFile(name);
+        final ClassFile classFile = bytes == null ? null : parse(bytes);
+        if (classFile != null && !classFile.name.equals(name)) {
+            throw new ImplerException("Error during parsing a class file: " + name + " declares " + classFile.name);
+        }
+        classFiles.put(name, Optional.ofNullable(classFile));
+        return classFile;
+    }
+
+    /**
+     * Reads the <var>.class</var> file of the class from the runtime image or the class path.
+     *
+     * @param name binary name of the class
+     * @return the contents of the file, or {@code null} if the class cannot be found
+     * @throws ImplerException if an error occurred trying to read the file
+     */
+    private byte[] readClassFile(final String name) throws ImplerException {
+        final int dot = name.lastIndexOf('.');
+        final String entryName = name.replace('.', '/') + ".class";
+        try {
+            final List<String> modules = getModules(dot < 0 ? "" : name.substring(0, dot));
+            for (final String module : modules) {
+                final Path file = runtimeImage.getPath("/modules", module, entryName);
+                if (Files.isRegularFile(file)) {
+                    return Files.readAllBytes(file);
+                }
+            }
+            if (!modules.isEmpty()) {
+                return null;
+            }
+            for (final Path entry : classPath) {
+                if (Files.isDirectory(entry)) {
+                    final Path file;
+                    try {
+                        file = entry.resolve(entryName);
+                    } catch (final InvalidPathException e) {
+                        // The name cannot be encoded in the file system, so there is no such file.
+                        continue;
+                    }
+                    if (Files.isRegularFile(file)) {
+                        return Files.readAllBytes(file);
+                    }
+                } else if (Files.isRegularFile(entry)) {
+                    final JarFile jar = getJar(entry);
+                    final JarEntry jarEntry = jar.getJarEntry(entryName);
+                    if (jarEntry != null) {
+                        try (final InputStream in = jar.getInputStream(jarEntry)) {
+                            return in.readAllBytes();
+                        }
+                    }
+                }
+            }
+            return null;
+        } catch (final IOException | UncheckedIOException e) {
+            throw new ImplerException("Error during reading a class file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the modules of the runtime image the package may be loaded from, if they are visible to the class loader
+     * of the class path: modules of the boot layer, defined to the bootstrap or the platform class loader
+     * unless the class path is the class path of the running application.
+     * The runtime image lists a module for a package if the module has a directory of the package,
+     * so modules with subpackages only are listed too.
+     *
+     * @param packageName name of the package
+     * @return names of the modules, empty if the package is not in the visible modules of the runtime image
+     * @throws IOException if the runtime image cannot be read
+     */
+    private List<String> getModules(final String packageName) throws IOException {
+        final List<String> cached = packageModules.get(packageName);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> modules = List.of();
+        final Path packages = runtimeImage.getPath("/packages", packageName);
+        if (!packageName.isEmpty() && Files.isDirectory(packages)) {
+            try (final Stream<Path> listed = Files.list(packages)) {
+                modules = listed.map(path -> path.getFileName().toString())
+                        .filter(this::isVisible)
+                        .collect(Collectors.toUnmodifiableList());
+            }
+        }
+        packageModules.put(packageName, modules);
+        return modules;
+    }
+
+    /**
+     * Tells whether the classes of the module of the runtime image are visible to the class loader of the class path.
+     *
+     * @param moduleName name of the module
+     * @return {@code true} if the module is visible, {@code false} otherwise
+     */
+    private boolean isVisible(final String moduleName) {
+        return ModuleLayer.boot().findModule(moduleName)
+                .map(module -> {
+                    final ClassLoader loader = module.getClassLoader();
+                    return applicationModules || loader == null || loader == ClassLoader.getPlatformClassLoader();
+                })
+                .orElse(false);
+    }
+
+    /**
+     * Returns the opened <var>.jar</var> file of the class path.
+     *
+     * @param path path of the file
+     * @return the file
+     * @throws IOException if the file cannot be opened
+     */
+    private JarFile getJar(final Path path) throws IOException {
+        JarFile jar = jars.get(path);
+        if (jar == null) {
+            jar = new JarFile(path.toFile(), true, ZipFile.OPEN_READ, Runtime.version());
+            jars.put(path, jar);
+        }
+        return jar;
+    }
+
+    /**
+     * Parses a <var>.class</var> file.
+     *
+     * @param bytes contents of the file
+     * @return the parsed file
+     * @throws ImplerException if the file is malformed
+     */
+    private static ClassFile parse(final byte[] bytes) throws ImplerException {
+        try {
+            return new Parser(bytes).parse();
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                       | ClassCastException | IOException e) {
+            throw new ImplerException("Error during parsing a class file: " + e, e);
+        }
+    }
+
+    /**
+     * Parser of a single <var>.class</var> file.
+     */
+    private static final class Parser {
+        /**
+         * Contents of the file.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Offsets of the constant pool entries, after their tags.
+         */
+        private int[] offsets;
+
+        /**
+         * Tags of the constant pool entries.
+         */
+        private byte[] tags;
+
+        /**
+         * Decoded <var>UTF-8</var> constants by indices.
+         */
+        private String[] strings;
+
+        /**
+         * Creates a parser of the file.
+         *
+         * @param bytes contents of the file
+         */
+        Parser(final byte[] bytes) {
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        /**
+         * Parses the file.
+         *
+         * @return the parsed file
+         * @throws IOException if the file is malformed
+         */
+        ClassFile parse() throws IOException {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a class file");
+            }
+            buffer.getShort();
+            final int major = buffer.getShort() & 0xFFFF;
+            readConstantPool();
+            final int access = buffer.getShort() & 0xFFFF;
+            final String name = getClassName(buffer.getShort() & 0xFFFF);
+            final int superIndex = buffer.getShort() & 0xFFFF;
+            final boolean isInterface = (access & Modifier.INTERFACE) != 0;
+            final String superclass = superIndex == 0 || isInterface ? null : getClassName(superIndex);
+            final int interfaceCount = buffer.getShort() & 0xFFFF;
+            final List<String> interfaces = new ArrayList<>(interfaceCount);
+            for (int i = 0; i < interfaceCount; i++) {
+                interfaces.add(getClassName(buffer.getShort() & 0xFFFF));
+            }
+            final int fieldCount = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < fieldCount; i++) {
+                buffer.position(buffer.position() + 6);
+                skipAttributes();
+            }
+            final int methodCount = buffer.getShort() & 0xFFFF;
+            final List<MethodInfo> methods = new ArrayList<>(methodCount);
+            for (int i = 0; i < methodCount; i++) {
+                methods.add(readMethod(major));
+            }
+            final Map<String, InnerClass> innerClasses = new HashMap<>();
+            final int attributeCount = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < attributeCount; i++) {
+                final String attribute = getString(buffer.getShort() & 0xFFFF);
+                final int length = buffer.getInt();
+                final int end = buffer.position() + length;
+                if (attribute.equals("InnerClasses")) {
+                    final int count = buffer.getShort() & 0xFFFF;
+                    for (int j = 0; j < count; j++) {
+                        final int inner = buffer.getShort() & 0xFFFF;
+                        final int outer = buffer.getShort() & 0xFFFF;
+                        final int simpleName = buffer.getShort() & 0xFFFF;
+                        final int flags = buffer.getShort() & 0xFFFF;
+                        innerClasses.putIfAbsent(getClassName(inner), new InnerClass(
+                                outer == 0 ? null : getClassName(outer),
+                                simpleName == 0 ? null : getString(simpleName),
+                                flags));
+                    }
+                }
+                buffer.position(end);
+            }
+            final InnerClass own = innerClasses.get(name);
+            final int modifiers = own == null ? access : own.modifiers;
+            return new ClassFile(name, modifiers & ~Modifier.SYNCHRONIZED, isInterface, superclass,
+                    List.copyOf(interfaces), List.copyOf(methods), innerClasses);
+        }
+
+        /**
+         * Reads the constant pool, remembering the offsets of the entries.
+         *
+         * @throws IOException if the constant pool is malformed
+         */
+        private void readConstantPool() throws IOException {
+            final int count = buffer.getShort() & 0xFFFF;
+            offsets = new int[count];
+            tags = new byte[count];
+            strings = new String[count];
+            for (int i = 1; i < count; i++) {
+                final byte tag = buffer.get();
+                tags[i] = tag;
+                offsets[i] = buffer.position();
+                switch (tag) {
+                    case UTF8:
+                        buffer.position(buffer.position() + 2 + (buffer.getShort() & 0xFFFF));
+                        break;
+                    case CLASS: case STRING: case METHOD_TYPE: case MODULE: case PACKAGE:
+                        buffer.position(buffer.position() + 2);
+                        break;
+                    case METHOD_HANDLE:
+                        buffer.position(buffer.position() + 3);
+                        break;
+                    case INTEGER: case FLOAT: case FIELD_REF: case METHOD_REF: case INTERFACE_METHOD_REF:
+                    case NAME_AND_TYPE: case DYNAMIC: case INVOKE_DYNAMIC:
+                        buffer.position(buffer.position() + 4);
+                        break;
+                    case LONG: case DOUBLE:
+                        buffer.position(buffer.position() + 8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+        }
+
+        /**
+         * Reads a method.
+         *
+         * @param major major version of the file
+         * @return the method
+         * @throws IOException if the method is malformed
+         */
+        private MethodInfo readMethod(final int major) throws IOException {
+            int modifiers = buffer.getShort() & METHOD_MODIFIERS;
+            if (major >= JAVA_17_VERSION) {
+                modifiers &= ~Modifier.STRICT;
+            }
+            final String name = getString(buffer.getShort() & 0xFFFF);
+            final String descriptor = getString(buffer.getShort() & 0xFFFF);
+            List<String> exceptions = List.of();
+            final int attributeCount = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < attributeCount; i++) {
+                final String attribute = getString(buffer.getShort() & 0xFFFF);
+                final int length = buffer.getInt();
+                final int end = buffer.position() + length;
+                if (attribute.equals("Exceptions")) {
+                    final String[] names = new String[buffer.getShort() & 0xFFFF];
+                    for (int j = 0; j < names.length; j++) {
+                        names[j] = getClassName(buffer.getShort() & 0xFFFF);
+                    }
+                    exceptions = List.of(names);
+                }
+                buffer.position(end);
+            }
+            return new MethodInfo(modifiers, name, descriptor, exceptions);
+        }
+
+        /**
+         * Skips the attributes of a field.
+         */
+        private void skipAttributes() {
+            final int count = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                buffer.position(buffer.position() + 2);
+                final int length = buffer.getInt();
+                buffer.position(buffer.position() + length);
+            }
+        }
+
+        /**
+         * Returns the constant of the given index, checking its tag.
+         *
+         * @param index index of the constant
+         * @param tag   expected tag
+         * @return offset of the constant, after its tag
+         * @throws IOException if the constant has another tag
+         */
+        private int getOffset(final int index, final int tag) throws IOException {
+            if (index <= 0 || index >= tags.length || tags[index] != tag) {
+                throw new IOException("Invalid constant pool reference " + index);
+            }
+            return offsets[index];
+        }
+
+        /**
+         * Returns the <var>UTF-8</var> constant of the given index.
+         *
+         * @param index index of the constant
+         * @return the decoded string
+         * @throws IOException if the constant is not a valid <var>UTF-8</var> constant
+         */
+        private String getString(final int index) throws IOException {
+            if (index > 0 && index < strings.length && strings[index] != null) {
+                return strings[index];
+            }
+            final int offset = getOffset(index, UTF8);
+            final int length = 2 + (buffer.getShort(offset) & 0xFFFF);
+            final DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(buffer.array(), offset, length));
+            final String string = in.readUTF();
+            strings[index] = string;
+            return string;
+        }
+
+        /**
+         * Returns the binary name of the class constant of the given index.
+         *
+         * @param index index of the constant
+         * @return the binary name of the class, or the descriptor of an array class with dots
+         * @throws IOException if the constant is not a valid class constant
+         */
+        private String getClassName(final int index) throws IOException {
+            return getString(buffer.getShort(getOffset(index, CLASS)) & 0xFFFF).replace('/', '.');
+        }
+    }
+
+    /**
+     * Closes the <var>.jar</var> files of the class path.
+     *
+     * @throws IOException if an error occurred trying to close a file
+     */
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (final JarFile jar : jars.values()) {
+            try {
+                jar.close();
+            } catch (final IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        jars.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolved description of a class or an interface being implemented:
+ * everything the implementation is generated from, without references to reflection objects.
+ * A stub holds the names of the token, the constructor called by the implementation
+ * and the methods it overrides, as {@link Implementor#getSuperConstructor(Class)}
+ * and {@link Implementor#getImplementedMethods(Class)} resolve them.
+ * <p>
+ * Stubs are taken from the {@link ResolutionArchive} when it holds the token, and built by reflection otherwise.
+ * Either way, the stub of a class is built once per class.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class ClassStub {
+    /**
+     * Stubs by classes, {@code null} for the classes without non-private constructors.
+     */
+    private static final ClassValue<ClassStub> STUBS = new ClassValue<>() {
+        @Override
+        protected ClassStub computeValue(final Class<?> type) {
+            final ClassStub archived = ResolutionArchive.lookup(type);
+            if (archived != null) {
+                return archived;
+            }
+            try {
+                return reflect(type);
+            } catch (final ImplerException e) {
+                return null;
+            }
+        }
+    };
+
+    /**
+     * Binary name of the token.
+     */
+    final String name;
+
+    /**
+     * Package name of the token, empty for the unnamed package.
+     */
+    final String packageName;
+
+    /**
+     * Simple name of the token.
+     */
+    final String simpleName;
+
+    /**
+     * Canonical name of the token.
+     */
+    final String canonicalName;
+
+    /**
+     * Whether the token is an interface.
+     */
+    final boolean isInterface;
+
+    /**
+     * Constructor called by the implementation, {@code null} for interfaces.
+     */
+    final MethodStub constructor;
+
+    /**
+     * Methods the implementation overrides, in the order of {@link Implementor#getImplementedMethods(Class)}.
+     */
+    final List<MethodStub> methods;
+
+    /**
+     * Constructs a stub.
+     *
+     * @param name          binary name of the token
+     * @param packageName   package name of the token
+     * @param simpleName    simple name of the token
+     * @param canonicalName canonical name of the token
+     * @param isInterface   whether the token is an interface
+     * @param constructor   constructor called by the implementation, {@code null} for interfaces
+     * @param methods       methods the implementation overrides
+     */
+    ClassStub(final String name, final String packageName, final String simpleName, final String canonicalName,
+              final boolean isInterface, final MethodStub constructor, final List<MethodStub> methods) {
+        this.name = name;
+        this.packageName = packageName;
+        this.simpleName = simpleName;
+        this.canonicalName = canonicalName;
+        this.isInterface = isInterface;
+        this.constructor = constructor;
+        this.methods = methods;
+    }
+
+    /**
+     * Returns the stub of the <var>token</var>.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the stub
+     * @throws ImplerException if there are no appropriate constructors in a class given
+     */
+    static ClassStub of(final Class<?> token) throws ImplerException {
+        final ClassStub stub = STUBS.get(token);
+        if (stub == null) {
+            throw new ImplerException("No non-private constructors found");
+        }
+        return stub;
+    }
+
+    /**
+     * Builds the stub of the <var>token</var> by reflection.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the stub
+     * @throws ImplerException if there are no appropriate constructors in a class given
+     */
+    static ClassStub reflect(final Class<?> token) throws ImplerException {
+        final MethodStub constructor = token.isInterface()
+                ? null
+                : MethodStub.reflect(Implementor.getSuperConstructor(token), null);
+        final List<Method> implemented = Implementor.getImplementedMethods(token);
+        final List<MethodStub> methods = new ArrayList<>(implemented.size());
+        for (final Method method : implemented) {
+            methods.add(MethodStub.reflect(method, TypeName.of(method.getReturnType())));
+        }
+        return new ClassStub(token.getName(), token.getPackageName(), token.getSimpleName(),
+                token.getCanonicalName(), token.isInterface(), constructor, List.copyOf(methods));
+    }
+
+    /**
+     * Name of a type used in a signature.
+     */
+    static final class TypeName {
+        /**
+         * Names of the primitive types, {@code void} included.
+         */
+        private static final List<String> PRIMITIVES =
+                List.of("boolean", "byte", "char", "short", "int", "long", "float", "double", "void");
+
+        /**
+         * Binary name of the type, as {@link Class#getName()} returns it.
+         */
+        final String name;
+
+        /**
+         * Canonical name of the type, the name used in the source code.
+         */
+        final String canonicalName;
+
+        /**
+         * Constructs a type name.
+         *
+         * @param name          binary name of the type
+         * @param canonicalName canonical name of the type
+         */
+        TypeName(final String name, final String canonicalName) {
+            this.name = name;
+            this.canonicalName = canonicalName;
+        }
+
+        /**
+         * Returns the name of the <var>type</var>.
+         *
+         * @param type the type
+         * @return the name
+         */
+        static TypeName of(final Class<?> type) {
+            return new TypeName(type.getName(), type.getCanonicalName());
+        }
+
+        /**
+         * Tells whether the type is primitive or {@code void}.
+         *
+         * @return {@code true} if the type is primitive, {@code false} otherwise
+         */
+        boolean isPrimitive() {
+            return PRIMITIVES.contains(name);
+        }
+    }
+
+    /**
+     * Method or constructor being overridden or called by the implementation.
+     */
+    static final class MethodStub {
+        /**
+         * Modifiers, as {@link Executable#getModifiers()} returns them.
+         */
+        final int modifiers;
+
+        /**
+         * Name of the method, the binary name of the declaring class for a constructor.
+         */
+        final String name;
+
+        /**
+         * Return type, {@code null} for a constructor.
+         */
+        final TypeName returnType;
+
+        /**
+         * Parameter types.
+         */
+        final List<TypeName> parameterTypes;
+
+        /**
+         * Exception types.
+         */
+        final List<TypeName> exceptionTypes;
+
+        /**
+         * Constructs a method stub.
+         *
+         * @param modifiers      modifiers of the method or the constructor
+         * @param name           name of the method, the binary name of the declaring class for a constructor
+         * @param returnType     return type, {@code null} for a constructor
+         * @param parameterTypes parameter types
+         * @param exceptionTypes exception types
+         */
+        MethodStub(final int modifiers, final String name, final TypeName returnType,
+                   final List<TypeName> parameterTypes, final List<TypeName> exceptionTypes) {
+            this.modifiers = modifiers;
+            this.name = name;
+            this.returnType = returnType;
+            this.parameterTypes = parameterTypes;
+            this.exceptionTypes = exceptionTypes;
+        }
+
+        /**
+         * Builds the stub of the <var>executable</var> by reflection.
+         *
+         * @param executable the method or the constructor
+         * @param returnType return type, {@code null} for a constructor
+         * @return the stub
+         */
+        private static MethodStub reflect(final Executable executable, final TypeName returnType) {
+            return new MethodStub(executable.getModifiers(), executable.getName(), returnType,
+                    names(executable.getParameterTypes()), names(executable.getExceptionTypes()));
+        }
+
+        /**
+         * Returns the names of the <var>types</var>.
+         *
+         * @param types the types
+         * @return unmodifiable list of the names
+         */
+        private static List<TypeName> names(final Class<?>[] types) {
+            final TypeName[] names = new TypeName[types.length];
+            for (int i = 0; i < types.length; i++) {
+                names[i] = TypeName.of(types[i]);
+            }
+            return List.of(names);
+        }
+
+        /**
+         * Tells whether the stub describes a constructor.
+         *
+         * @return {@code true} for a constructor, {@code false} for a method
+         * @see Constructor
+         */
+        boolean isConstructor() {
+            return returnType == null;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import com.sun.management.GcInfo;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Admission controller limiting the number of concurrent compilations.
+ * A compilation can take hundreds of megabytes of heap, so the number of compilations allowed to run together
+ * is adjusted while the batch runs instead of being fixed:
+ * <ul>
+ *     <li>when the heap used after a compilation, measured by the {@link MemoryMXBean}, exceeds
+ *     the {@link #HEAP_THRESHOLD threshold} and is not garbage, as the heap left by the last collection
+ *     exceeds the threshold too, or the collectors took more than the {@link #GC_THRESHOLD share}
+ *     of the time since the last adjustment, the limit is halved;</li>
+ *     <li>otherwise, once every adjustment window, the throughput of the window in tokens per second
+ *     is compared to the previous one: the limit keeps moving in the same direction by one while
+ *     the throughput grows, and turns back when it falls.</li>
+ * </ul>
+ * The limit stays between one and the maximum given on construction. The controller is thread-safe.
+ * The clock and the state of the heap and the collectors are read through a {@link Probe}.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class CompileAdmission {
+    /**
+     * Share of the maximal heap used after which the limit is halved.
+     */
+    static final double HEAP_THRESHOLD = 0.75;
+
+    /**
+     * Share of the time spent in garbage collection after which the limit is halved.
+     */
+    static final double GC_THRESHOLD = 0.2;
+
+    /**
+     * Heap of the virtual machine.
+     */
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    /**
+     * Garbage collectors of the virtual machine.
+     */
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    /**
+     * Names of the heap memory pools.
+     */
+    private static final Set<String> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .map(MemoryPoolMXBean::getName)
+            .collect(Collectors.toSet());
+
+    /**
+     * Probe of the virtual machine.
+     */
+    private final Probe probe;
+
+    /**
+     * Maximal number of concurrent compilations.
+     */
+    private final int maxLimit;
+
+    /**
+     * Current number of compilations allowed to run together.
+     */
+    private int limit = 1;
+
+    /**
+     * Number of compilations running.
+     */
+    private int running;
+
+    /**
+     * Direction the limit is moving in, {@code 1} or {@code -1}.
+     */
+    private int direction = 1;
+
+    /**
+     * Start of the current adjustment window, in nanoseconds.
+     */
+    private long windowStart;
+
+    /**
+     * Collection time of all collectors at the start of the window, in milliseconds.
+     */
+    private long windowGcTime;
+
+    /**
+     * Compilations completed in the current window.
+     */
+    private int windowCompilations;
+
+    /**
+     * Tokens compiled in the current window.
+     */
+    private long windowTokens;
+
+    /**
+     * Throughput of the previous window in tokens per second, {@code 0} if there was none.
+     */
+    private double lastThroughput;
+
+    /**
+     * Source of the time and of the state of the heap and the collectors the limit is adjusted by.
+     */
+    interface Probe {
+        /**
+         * Probe of this virtual machine, reading the {@link ManagementFactory management beans}.
+         */
+        Probe SYSTEM = new Probe() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public long getGcTime() {
+                return CompileAdmission.getGcTime();
+            }
+
+            @Override
+            public boolean isHeapExhausted() {
+                return CompileAdmission.isHeapExhausted();
+            }
+        };
+
+        /**
+         * Returns the current time.
+         *
+         * @return the time, in nanoseconds
+         * @see System#nanoTime()
+         */
+        long nanoTime();
+
+        /**
+         * Returns the total collection time of all collectors.
+         *
+         * @return collection time, in milliseconds
+         */
+        long getGcTime();
+
+        /**
+         * Checks whether the live heap exceeds the {@link #HEAP_THRESHOLD threshold} of the maximal heap.
+         *
+         * @return whether the heap is nearly exhausted
+         */
+        boolean isHeapExhausted();
+    }
+
+    /**
+     * Constructs a controller of this virtual machine admitting one compilation at first.
+     *
+     * @param maxLimit maximal number of concurrent compilations
+     * @throws IllegalArgumentException if <var>maxLimit</var> is not positive
+     */
+    CompileAdmission(final int maxLimit) {
+        this(maxLimit, Probe.SYSTEM);
+    }
+
+    /**
+     * Constructs a controller admitting one compilation at first.
+     *
+     * @param maxLimit maximal number of concurrent compilations
+     * @param probe    probe of the virtual machine
+     * @throws IllegalArgumentException if <var>maxLimit</var> is not positive
+     */
+    CompileAdmission(final int maxLimit, final Probe probe) {
+        if (maxLimit <= 0) {
+            throw new IllegalArgumentException("Invalid maximal number of compilations: " + maxLimit);
+        }
+        this.maxLimit = maxLimit;
+        this.probe = probe;
+        this.windowStart = probe.nanoTime();
+        this.windowGcTime = probe.getGcTime();
+    }
+
+    /**
+     * Waits until a compilation can start and registers it.
+     * Every call must be followed by {@link #release(int)}.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (running >= limit) {
+            wait();
+        }
+        running++;
+    }
+
+    /**
+     * Unregisters a completed compilation and adjusts the limit.
+     *
+     * @param tokens number of tokens compiled
+     */
+    synchronized void release(final int tokens) {
+        running--;
+        windowCompilations++;
+        windowTokens += tokens;
+        final long now = probe.nanoTime();
+        final long elapsed = Math.max(1, now - windowStart);
+        final long gcTime = probe.getGcTime();
+        if (probe.isHeapExhausted() || (gcTime - windowGcTime) * 1_000_000.0 / elapsed > GC_THRESHOLD) {
+            limit = Math.max(1, limit / 2);
+            direction = 1;
+            lastThroughput = 0;
+            startWindow(now, gcTime);
+        } else if (windowCompilations >= limit) {
+            final double throughput = windowTokens * 1e9 / elapsed;
+            if (throughput < lastThroughput) {
+                direction = -direction;
+            }
+            lastThroughput = throughput;
+            limit = Math.max(1, Math.min(maxLimit, limit + direction));
+            startWindow(now, gcTime);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the current number of compilations allowed to run together.
+     *
+     * @return the limit
+     */
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the throughput measured in the last completed window.
+     *
+     * @return tokens compiled per second, {@code 0} if not measured yet
+     */
+    synchronized double getThroughput() {
+        return lastThroughput;
+    }
+
+    /**
+     * Starts a new adjustment window.
+     *
+     * @param now    current time, in nanoseconds
+     * @param gcTime current collection time, in milliseconds
+     */
+    private void startWindow(final long now, final long gcTime) {
+        windowStart = now;
+        windowGcTime = gcTime;
+        windowCompilations = 0;
+        windowTokens = 0;
+    }
+
+    /**
+     * Checks whether the live heap exceeds the {@link #HEAP_THRESHOLD threshold} of the maximal heap.
+     * The used heap includes garbage, so when it exceeds the threshold, the heap left by the last collection
+     * is checked, if the collectors report it.
+     *
+     * @return whether the heap is nearly exhausted
+     */
+    private static boolean isHeapExhausted() {
+        final MemoryUsage heap = MEMORY.getHeapMemoryUsage();
+        final long max = heap.getMax() < 0 ? heap.getCommitted() : heap.getMax();
+        if (heap.getUsed() <= HEAP_THRESHOLD * max) {
+            return false;
+        }
+        GcInfo last = null;
+        for (final GarbageCollectorMXBean collector : COLLECTORS) {
+            if (collector instanceof com.sun.management.GarbageCollectorMXBean) {
+                final GcInfo info = ((com.sun.management.GarbageCollectorMXBean) collector).getLastGcInfo();
+                if (info != null && (last == null || info.getEndTime() > last.getEndTime())) {
+                    last = info;
+                }
+            }
+        }
+        if (last == null) {
+            return true;
+        }
+        long live = 0;
+        for (final Map.Entry<String, MemoryUsage> pool : last.getMemoryUsageAfterGc().entrySet()) {
+            if (HEAP_POOLS.contains(pool.getKey())) {
+                live += pool.getValue().getUsed();
+            }
+        }
+        return live > HEAP_THRESHOLD * max;
+    }
+
+    /**
+     * Returns the total collection time of all collectors.
+     *
+     * @return collection time, in milliseconds
+     */
+    private static long getGcTime() {
+        long time = 0;
+        for (final GarbageCollectorMXBean collector : COLLECTORS) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,318 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import com.sun.source.util.JavacTask;
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Warm java compiler bound to a class path.
+ * Holds a {@link StandardJavaFileManager} whose class path is set once, so indexes of the class path
+ * directories and archives, as well as the platform classes, are read by the first compilation only
+ * and reused by the following ones through the {@link JavacTask} API.
+ * <p>
+ * Contexts live for the whole process and are pooled by class path fingerprint:
+ * {@link #acquire(List)} returns an idle context for the class path or creates a new one,
+ * and {@link #close()} returns it to the pool. A context is used by one thread at a time,
+ * so concurrent compilations against the same class path get separate contexts.
+ *
+ * @author Boris Shaposhnikov
+ */
+public final class CompilerContext implements AutoCloseable {
+    /**
+     * Maximal number of class paths idle contexts are kept for.
+     */
+    private static final int MAX_CLASS_PATHS = 16;
+
+    /**
+     * Maximal number of idle contexts kept for a class path.
+     */
+    private static final int MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Options of every compilation.
+     */
+    private static final List<String> OPTIONS = List.of("-encoding", StandardCharsets.UTF_8.name());
+
+    /**
+     * Idle contexts by class path fingerprint, least recently used first.
+     */
+    private static final Map<String, Deque<CompilerContext>> IDLE =
+            new LinkedHashMap<>(MAX_CLASS_PATHS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Deque<CompilerContext>> eldest) {
+                    if (size() <= MAX_CLASS_PATHS) {
+                        return false;
+                    }
+                    eldest.getValue().forEach(CompilerContext::dispose);
+                    return true;
+                }
+            };
+
+    /**
+     * Fingerprint of the class path of the context.
+     */
+    private final String fingerprint;
+
+    /**
+     * The java compiler.
+     */
+    private final JavaCompiler javaCompiler;
+
+    /**
+     * File manager with the class path set.
+     */
+    private final StandardJavaFileManager fileManager;
+
+    /**
+     * Constructs a context for the given class path.
+     *
+     * @param fingerprint fingerprint of the class path
+     * @param classPath   class path entries
+     * @throws ImplerException if the java compiler wasn't found or the class path cannot be set
+     */
+    private CompilerContext(final String fingerprint, final List<Path> classPath) throws ImplerException {
+        this.fingerprint = fingerprint;
+        this.javaCompiler = ToolProvider.getSystemJavaCompiler();
+        if (javaCompiler == null) {
+            throw new ImplerException("No java compiler found");
+        }
+        this.fileManager = javaCompiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        try {
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, classPath);
+        } catch (final IOException e) {
+            dispose();
+            throw new ImplerException("Error during setting a class path: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the identity of the class files compiled in the contexts:
+     * the version of the platform and the {@link #OPTIONS options} of every compilation.
+     *
+     * @return the identity
+     * @see ClassCompiler#getIdentity()
+     */
+    static String getIdentity() {
+        return "javac " + Runtime.version() + " " + String.join(" ", OPTIONS);
+    }
+
+    /**
+     * Returns a fingerprint of the class path.
+     * Reflects the order of the entries, their sizes and modification times,
+     * so changed class path archives and directories get fresh contexts.
+     *
+     * @param classPath class path entries
+     * @return the fingerprint
+     */
+    private static String getFingerprint(final List<Path> classPath) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Path entry : classPath) {
+            final Path path = entry.toAbsolutePath().normalize();
+            sb.append(path).append('|');
+            try {
+                sb.append(Files.size(path)).append('|').append(Files.getLastModifiedTime(path).toMillis());
+            } catch (final IOException e) {
+                sb.append('-');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a context for the given class path.
+     * An idle context with the same class path fingerprint is reused if there is one.
+     * The context must be {@link #close() closed} to return it to the pool.
+     *
+     * @param classPath class path entries
+     * @return a context exclusively owned by the caller until it is closed
+     * @throws ImplerException if the java compiler wasn't found or the class path cannot be set
+     */
+    public static CompilerContext acquire(final List<Path> classPath) throws ImplerException {
+        final String fingerprint = getFingerprint(classPath);
+        synchronized (IDLE) {
+            final Deque<CompilerContext> idle = IDLE.get(fingerprint);
+            if (idle != null && !idle.isEmpty()) {
+                return idle.pop();
+            }
+        }
+        return new CompilerContext(fingerprint, classPath);
+    }
+
+    /**
+     * Returns the context to the pool. The context must not be used after that.
+     */
+    @Override
+    public void close() {
+        synchronized (IDLE) {
+            final Deque<CompilerContext> idle = IDLE.computeIfAbsent(fingerprint, f -> new ArrayDeque<>());
+            if (idle.size() < MAX_IDLE) {
+                idle.push(this);
+                return;
+            }
+        }
+        dispose();
+    }
+
+    /**
+     * Closes the file manager of the context.
+     */
+    private void dispose() {
+        try {
+            fileManager.close();
+        } catch (final IOException e) {
+            System.err.println("Error during closing a file manager: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a message describing the errors reported by the compiler.
+     *
+     * @param diagnostics diagnostics reported by the compiler
+     * @return the error messages separated by line separators
+     */
+    static String getErrors(final List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        return diagnostics.stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> String.format("line %d: %s",
+                        diagnostic.getLineNumber(), diagnostic.getMessage(null)))
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    /**
+     * Runs the compiler on the given sources.
+     *
+     * @param manager file manager of the compilation
+     * @param options compilation options in addition to {@link #OPTIONS}
+     * @param units   sources to compile
+     * @return diagnostics reported by the compiler
+     * @throws ImplerException if the compiler failed to read or write files
+     */
+    private List<Diagnostic<? extends JavaFileObject>> generate(final JavaFileManager manager,
+                                                               final List<String> options,
+                                                               final Iterable<? extends JavaFileObject> units)
+            throws ImplerException {
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final List<String> allOptions = new ArrayList<>(OPTIONS);
+        allOptions.addAll(options);
+        final JavacTask task = (JavacTask) javaCompiler.getTask(null, manager, diagnostics, allOptions, null, units);
+        try {
+            task.generate();
+        } catch (final IOException | IllegalStateException e) {
+            throw new ImplerException("Error during compiling classes: " + e.getMessage(), e);
+        }
+        return diagnostics.getDiagnostics();
+    }
+
+    /**
+     * Runs the compiler on the given sources, failing on any error.
+     *
+     * @param manager file manager of the compilation
+     * @param options compilation options in addition to {@link #OPTIONS}
+     * @param units   sources to compile
+     * @throws ImplerException if an error occurred trying to compile classes
+     */
+    private void generateOrFail(final JavaFileManager manager,
+                                final List<String> options,
+                                final Iterable<? extends JavaFileObject> units) throws ImplerException {
+        final String errors = getErrors(generate(manager, options, units));
+        if (!errors.isEmpty()) {
+            throw new ImplerException("Error during compiling classes: " + errors);
+        }
+    }
+
+    /**
+     * Compiles a class from the source held in memory.
+     *
+     * @param className binary name of the class
+     * @param source    source code of the class
+     * @return contents of the <var>.class</var> file
+     * @throws ImplerException if an error occurred trying to compile the class
+     */
+    public byte[] compile(final String className, final String source) throws ImplerException {
+        final InMemoryCompiler.MemoryFileManager manager = new InMemoryCompiler.MemoryFileManager(fileManager);
+        generateOrFail(manager, List.of(), List.of(new InMemoryCompiler.SourceFile(className, source)));
+        final byte[] bytes = manager.getClassBytes(className);
+        if (bytes == null) {
+            throw new ImplerException("Error during compiling classes: no class file produced for " + className);
+        }
+        return bytes;
+    }
+
+    /**
+     * Compiles several classes from sources held in memory with a single compiler run.
+     * Errors are mapped back to the sources they were reported for: the classes with errors
+     * are put into <var>errors</var>, and the rest are compiled again without them,
+     * as the compiler does not write any class file once an error is found.
+     *
+     * @param sources source code of the classes by binary class names
+     * @param errors  where to put error messages of the classes that failed to compile, by binary class names
+     * @return contents of the <var>.class</var> files of the successfully compiled classes, by binary class names
+     * @throws ImplerException if the compiler failed to read or write files
+     */
+    public Map<String, byte[]> compile(final Map<String, String> sources, final Map<String, String> errors)
+            throws ImplerException {
+        final Map<String, String> pending = new LinkedHashMap<>(sources);
+        final Map<String, byte[]> classes = new LinkedHashMap<>();
+        while (!pending.isEmpty()) {
+            final InMemoryCompiler.MemoryFileManager manager = new InMemoryCompiler.MemoryFileManager(fileManager);
+            final List<InMemoryCompiler.SourceFile> units = new ArrayList<>();
+            pending.forEach((className, source) -> units.add(new InMemoryCompiler.SourceFile(className, source)));
+
+            final Map<String, List<Diagnostic<? extends JavaFileObject>>> failed = new LinkedHashMap<>();
+            final List<Diagnostic<? extends JavaFileObject>> unmapped = new ArrayList<>();
+            for (final Diagnostic<? extends JavaFileObject> diagnostic : generate(manager, List.of(), units)) {
+                if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                    continue;
+                }
+                if (diagnostic.getSource() instanceof InMemoryCompiler.SourceFile) {
+                    final String className = ((InMemoryCompiler.SourceFile) diagnostic.getSource()).getClassName();
+                    failed.computeIfAbsent(className, name -> new ArrayList<>()).add(diagnostic);
+                } else {
+                    unmapped.add(diagnostic);
+                }
+            }
+
+            if (!unmapped.isEmpty()) {
+                final String message = getErrors(unmapped);
+                pending.keySet().forEach(className -> errors.put(className, message));
+                break;
+            }
+            if (failed.isEmpty()) {
+                for (final String className : pending.keySet()) {
+                    final byte[] bytes = manager.getClassBytes(className);
+                    if (bytes == null) {
+                        errors.put(className, "no class file produced");
+                    } else {
+                        classes.put(className, bytes);
+                    }
+                }
+                break;
+            }
+            failed.forEach((className, diagnostics) -> {
+                errors.put(className, getErrors(diagnostics));
+                pending.remove(className);
+            });
+        }
+        return classes;
+    }
+
+    /**
+     * Compiles source files, storing <var>.class</var> files in the given directory.
+     *
+     * @param sources   source files to compile
+     * @param outputDir where to save <var>.class</var> files
+     * @throws ImplerException if an error occurred trying to compile classes
+     */
+    public void compile(final List<Path> sources, final Path outputDir) throws ImplerException {
+        generateOrFail(fileManager, List.of("-d", outputDir.toString()),
+                fileManager.getJavaFileObjectsFromPaths(sources));
+    }
+}
@@ -0,0 +1,240 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * Measures the bytes allocated per generated method by the {@link SourceEmitter}
+ * and by the {@link String#format(String, Object...)} based generation it replaced.
+ * Both sides generate the whole implementation class: the package line, the declaration,
+ * the constructor and the methods, and the lengths of their output are printed along with the allocations,
+ * so it can be seen that the same code is measured.
+ * Allocations are taken from {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ * of the current thread, after the warm-up iterations.
+ * <p>
+ * Usage: {@code EmitterBenchmark [iterations] class [class...]}.
+ * Default classes are {@code javax.sql.rowset.CachedRowSet} and {@code java.io.DataInput}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public final class EmitterBenchmark {
+    /**
+     * Default number of measured iterations.
+     */
+    private static final int DEFAULT_ITERATIONS = 1000;
+
+    /**
+     * Classes measured by default.
+     */
+    private static final List<String> DEFAULT_CLASSES = List.of("javax.sql.rowset.CachedRowSet", "java.io.DataInput");
+
+    /**
+     * Bean reporting allocated bytes of threads.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Utility class.
+     */
+    private EmitterBenchmark() {
+    }
+
+    /**
+     * Generation of the source code of the implementation class being measured.
+     */
+    @FunctionalInterface
+    private interface Generator {
+        /**
+         * Generates the source code.
+         *
+         * @param token the {@link Class} object of a parent class or an interface that is being implemented
+         * @return length of the source code
+         * @throws ImplerException if the <var>token</var> cannot be implemented
+         */
+        int generate(Class<?> token) throws ImplerException;
+    }
+
+    /**
+     * Result of a measurement.
+     */
+    private static final class Result {
+        /**
+         * Bytes allocated per iteration.
+         */
+        final double allocated;
+
+        /**
+         * Length of the source code generated per iteration.
+         */
+        final long length;
+
+        /**
+         * Constructs a result.
+         *
+         * @param allocated bytes allocated per iteration
+         * @param length    length of the source code generated per iteration
+         */
+        Result(final double allocated, final long length) {
+            this.allocated = allocated;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Generation of the implementation class with {@link String#format(String, Object...)}
+     * and streams, as it was done before the {@link SourceEmitter}.
+     * Kept as the baseline of the benchmark only.
+     */
+    private static final class FormatGenerator {
+        /**
+         * Utility class.
+         */
+        private FormatGenerator() {
+        }
+
+        /**
+         * Returns the implementation of a method.
+         *
+         * @param method the method
+         * @return the implementation
+         */
+        static String getMethod(final Method method) {
+            final Class<?> returnType = method.getReturnType();
+            final String returnValue = returnType == void.class ? ""
+                    : returnType == boolean.class ? "false" : returnType.isPrimitive() ? "0" : "null";
+            return getExecutable(method, returnType.getCanonicalName() + " " + method.getName(),
+                    "return " + returnValue);
+        }
+
+        /**
+         * Returns the implementation of a method or a constructor.
+         *
+         * @param executable        the method or the constructor
+         * @param returnTypeAndName return type and name
+         * @param body              the body
+         * @return the implementation
+         */
+        static String getExecutable(final Executable executable, final String returnTypeAndName, final String body) {
+            final Class<?>[] exceptions = executable.getExceptionTypes();
+            return String.format("\t%s %s%s %s {%n\t\t%s;%n\t}%n",
+                    Modifier.toString(executable.getModifiers()
+                            & ~Modifier.ABSTRACT & ~Modifier.NATIVE & ~Modifier.TRANSIENT),
+                    returnTypeAndName,
+                    Arrays.stream(executable.getParameters())
+                            .map(parameter -> parameter.getType().getCanonicalName() + " " + parameter.getName())
+                            .collect(Collectors.joining(", ", "(", ")")),
+                    exceptions.length == 0 ? "" : Arrays.stream(exceptions)
+                            .map(Class::getCanonicalName)
+                            .collect(Collectors.joining(", ", "throws ", "")),
+                    body);
+        }
+
+        /**
+         * Returns the implementation of the constructor calling the given one of the superclass.
+         *
+         * @param token       the {@link Class} object of the parent class
+         * @param constructor the constructor of the parent class
+         * @return the implementation
+         */
+        static String getConstructor(final Class<?> token, final Constructor<?> constructor) {
+            return getExecutable(constructor, getImplSimpleName(token), Arrays.stream(constructor.getParameters())
+                    .map(Parameter::getName)
+                    .collect(Collectors.joining(", ", "super(", ")")));
+        }
+
+        /**
+         * Generates the implementation class.
+         *
+         * @param token the {@link Class} object of a parent class or an interface that is being implemented
+         * @return length of the source code
+         * @throws ImplerException if there are no appropriate constructors in a class given
+         */
+        static int generate(final Class<?> token) throws ImplerException {
+            final String packageName = token.getPackageName();
+            final StringBuilder sb = new StringBuilder(String.format("%s%n%s {%n",
+                    packageName.isEmpty() ? "" : String.format("package %s;", packageName),
+                    String.format("public class %s %s %s", getImplSimpleName(token),
+                            token.isInterface() ? "implements" : "extends", token.getCanonicalName())));
+            if (!token.isInterface()) {
+                sb.append(getConstructor(token, Implementor.getSuperConstructor(token)));
+            }
+            for (final Method method : Implementor.getImplementedMethods(token)) {
+                sb.append(getMethod(method));
+            }
+            return sb.append('}').length();
+        }
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread per iteration of the <var>generator</var>.
+     * The lengths of the generated code are summed and returned, so the generation cannot be eliminated.
+     *
+     * @param generator  the generation being measured
+     * @param token      the {@link Class} object of a parent class or an interface that is being implemented
+     * @param iterations number of measured iterations, positive
+     * @return allocated bytes and generated length per iteration
+     * @throws ImplerException if the <var>token</var> cannot be implemented
+     */
+    private static Result measure(final Generator generator, final Class<?> token, final int iterations)
+            throws ImplerException {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += generator.generate(token);
+        }
+        final long thread = Thread.currentThread().getId();
+        final long before = THREADS.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            sink += generator.generate(token);
+        }
+        final long allocated = THREADS.getThreadAllocatedBytes(thread) - before;
+        return new Result((double) allocated / iterations, sink / (2L * iterations));
+    }
+
+    /**
+     * Prints the bytes allocated per generated method for every class.
+     *
+     * @param args optional number of iterations followed by the names of the classes to measure
+     */
+    public static void main(final String[] args) {
+        int iterations = DEFAULT_ITERATIONS;
+        List<String> classes = DEFAULT_CLASSES;
+        if (args != null && args.length > 0) {
+            int first = 0;
+            if (args[0] != null && args[0].matches("[1-9]\\d*")) {
+                iterations = Integer.parseInt(args[0]);
+                first = 1;
+            }
+            if (first < args.length) {
+                classes = Arrays.asList(args).subList(first, args.length);
+            }
+        }
+        System.out.printf("%-40s %8s %16s %17s %14s %15s%n", "class", "methods",
+                "format, B/method", "emitter, B/method", "format, chars", "emitter, chars");
+        for (final String name : classes) {
+            try {
+                final Class<?> token = Util.loadClass(name, List.of());
+                final int methods = Math.max(Implementor.getImplementedMethods(token).size(), 1);
+                final Result format = measure(FormatGenerator::generate, token, iterations);
+                final Result emitter = measure(t -> SourceEmitter.get().emit(t).length(), token, iterations);
+                System.out.printf("%-40s %8d %16.1f %17.1f %14d %15d%n", name, methods,
+                        format.allocated / methods, emitter.allocated / methods, format.length, emitter.length);
+            } catch (final ClassNotFoundException e) {
+                System.err.println("Class not found: " + name);
+            } catch (final ImplerException e) {
+                System.err.println("Error during generating " + name + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -4,647 +4,735 @@ import info.kgeorgiy.java.advanced.implementor.Impler;
 import info.kgeorgiy.java.advanced.implementor.ImplerException;
 import info.kgeorgiy.java.advanced.implementor.JarImpler;
 
-import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.*;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileAttribute;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.jar.Attributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 
 import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
 
 /**
- * Implementation of {@link Impler} and {@link JarImpler} interfaces.
+ * Implementation of {@link Impler}, {@link JarImpler} and {@link BatchImpler} interfaces.
  * Generates a file with the class by the transmitted {@link Class} token.
  * When launched with the <var>-jar</var> key generates a <var>.jar</var> file.
+ * Batches of tokens are implemented in parallel on a {@link ForkJoinPool}.
+ * Generated classes are compiled by a {@link ClassCompiler}: in a temporary directory by default,
+ * entirely in memory with {@link InMemoryCompiler}, or written directly as bytecode by {@link BytecodeCompiler}.
  *
  * @author Boris Shaposhnikov
  */
-public class Implementor implements Impler, JarImpler {
+public class Implementor implements Impler, JarImpler, BatchImpler {
     /**
-     * Returns a {@link String} contains package line in generated java class.
-     * If a parent class or an interface is not placed in a package, an empty string is returned.
-     *
-     * @param token the {@link Class} object of a parent class or an interface that is being implemented
-     * @return a {@link String} containing a package line if it exist, and empty string otherwise
+     * Work-stealing pool batches are implemented on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Compiler of the generated classes.
+     */
+    private final ClassCompiler compiler;
+
+    /**
+     * Constructs an implementor compiling in a temporary directory
+     * and running batches on the {@link ForkJoinPool#commonPool() common pool}.
      */
-    private static String getPackageLine(final Class<?> token) {
-        final String packageName = token.getPackageName();
-        return packageName.isEmpty() ? "" : String.format("package %s;", packageName);
+    public Implementor() {
+        this(new TempDirectoryCompiler());
     }
 
     /**
-     * Returns a string containing declaration of implementation class.
-     * Format: {@code public class implementation_class_name extends class_that_is_being_implemented}.
-     * If given {@link Class} object is interface, instead of {@code extends} will be {@code implements}, respectively.
+     * Constructs an implementor compiling in a temporary directory and running batches on the given <var>pool</var>.
      *
-     * @param token the {@link Class} object of a parent class or an interface that is being implemented
-     * @return a declaration of implementation class
-     * @see Util#getImplSimpleName(Class)
+     * @param pool work-stealing pool to implement batches on
      */
-    private String getDeclarationLine(final Class<?> token) {
-        return String.format("public class %s %s %s",
-                getImplSimpleName(token),
-                token.isInterface() ? "implements" : "extends",
-                token.getCanonicalName());
+    public Implementor(final ForkJoinPool pool) {
+        this(new TempDirectoryCompiler(), pool);
     }
 
     /**
-     * Returns a string containing separated collection elements with prefix and suffix.
-     * All objects in the {@link Collection} are converted to a string by <var>mapper</var> function.
-     * The strings are separated by the passed string. Also at the beginning of the sequence is added a prefix,
-     * at the end of the suffix.
+     * Constructs an implementor compiling with the given <var>compiler</var>
+     * and running batches on the {@link ForkJoinPool#commonPool() common pool}.
      *
-     * @param elements  the {@link Collection} of elements to enumerate
-     * @param mapper    the function of converting elements to strings
-     * @param separator sequence elements will be separated by this string
-     * @param prefix    this string will be added to the beginning of the sequence
-     * @param suffix    this string will be added to the end of the sequence
-     * @param <T>       type of elements contained in the collection
-     * @return the string in which elements are listed through a separator with prefix and suffix added
+     * @param compiler compiler of the generated classes
      */
-    private static <T> String join(final Collection<T> elements,
-                                   final Function<T, String> mapper,
-                                   final String separator, final String prefix, final String suffix) {
-        return elements.stream().map(mapper).collect(Collectors.joining(separator, prefix, suffix));
+    public Implementor(final ClassCompiler compiler) {
+        this(compiler, ForkJoinPool.commonPool());
     }
 
     /**
-     * Returns a string containing separated array elements with prefix and suffix.
-     * Does the same as {@link #join(Collection, Function, String, String, String)},
-     * but takes an array of elements of type <var>T</var>.
+     * Constructs an implementor compiling with the given <var>compiler</var>
+     * and running batches on the given <var>pool</var>.
      *
-     * @param elements  the array of elements to enumerate
-     * @param mapper    the function of converting elements to strings
-     * @param separator sequence elements will be separated by this string
-     * @param prefix    this string will be added to the beginning of the sequence
-     * @param suffix    this string will be added to the end of the sequence
-     * @param <T>       type of elements contained in the array
-     * @return the string in which elements are listed through a separator with prefix and suffix added
-     * @see #join(Collection, Function, String, String, String)
+     * @param compiler compiler of the generated classes
+     * @param pool     work-stealing pool to implement batches on
      */
-    private static <T> String join(final T[] elements,
-                                   final Function<T, String> mapper,
-                                   final String separator, final String prefix, final String suffix) {
-        return join(Arrays.asList(elements), mapper, separator, prefix, suffix);
+    public Implementor(final ClassCompiler compiler, final ForkJoinPool pool) {
+        this.compiler = Objects.requireNonNull(compiler, "Expected non null compiler");
+        this.pool = Objects.requireNonNull(pool, "Expected non null pool");
     }
 
     /**
-     * Returns a string containing separated array elements without prefix and suffix.
-     * Does the same as {@link #join(Object[], Function, String, String, String)},
-     * but does not add prefix and suffix to the enumeration string.
+     * Returns the compiler of the generated classes.
      *
-     * @param elements  the array of elements to enumerate
-     * @param mapper    the function of converting elements to strings
-     * @param separator sequence elements will be separated by this string
-     * @param <T>       type of elements contained in the array
-     * @return the string in which elements are listed through a separator
+     * @return the compiler
      */
-    private static <T> String join(final T[] elements,
-                                   final Function<T, String> mapper,
-                                   final String separator) {
-        return join(elements, mapper, separator, "", "");
+    ClassCompiler getCompiler() {
+        return compiler;
     }
 
     /**
-     * Writes any one constructor implementation of class that is to being using a given <var>writer</var>.
-     * If the passed class object is an interface, the function does nothing.
+     * Returns the constructor of the parent class called by the constructor of the implementation class.
+     * The non-private constructor with the fewest parameters is chosen,
+     * ties are broken by the names of the parameter types, so the choice does not depend
+     * on the order reflection returns constructors in.
      *
-     * @param token  the {@link Class} object of a parent class or an interface that is being implemented
-     * @param writer where to write the constructor
+     * @param token the {@link Class} object of a parent class that is being implemented
+     * @return the constructor to call
      * @throws ImplerException if there are no appropriate constructors in a class given
-     * @throws IOException     if an error occurred trying to write with a given writer
-     * @see #getConstructor(Constructor)
      */
-    private void writeConstructor(final Class<?> token, final Writer writer) throws ImplerException, IOException {
-        if (token.isInterface()) {
-            return;
-        }
-        write(writer, Arrays.stream(token.getDeclaredConstructors())
+    static Constructor<?> getSuperConstructor(final Class<?> token) throws ImplerException {
+        return Arrays.stream(token.getDeclaredConstructors())
                 .filter(constructor -> !Modifier.isPrivate(constructor.getModifiers()))
-                .findAny().map(this::getConstructor)
-                .orElseThrow(() -> new ImplerException("No non-private constructors found")));
+                .min(Comparator.<Constructor<?>>comparingInt(Constructor::getParameterCount)
+                        .thenComparing(constructor -> Arrays.stream(constructor.getParameterTypes())
+                                .map(Class::getName)
+                                .collect(Collectors.joining(","))))
+                .orElseThrow(() -> new ImplerException("No non-private constructors found"));
     }
 
     /**
-     * Writes the implementation of all abstract superclass classes using writer.
+     * Returns the methods the implementation class has to override.
      *
-     * @param token  the {@link Class} object of a parent class or an interface that is being implemented
-     * @param writer where to write the methods
-     * @throws IOException if an error occurred trying to write with a given writer
-     * @see #getMethod(Method)
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return methods that need to be implemented
+     * @see MethodResolver#getImplementedMethods(Class)
      */
-    private void writeMethods(final Class<?> token, final Writer writer) throws IOException {
-        final Set<MethodWrapper> methods = getMethodsSet(token);
-        for (final MethodWrapper methodWrapper : methods) {
-            write(writer, getMethod(methodWrapper.getMethod()));
-        }
+    static List<Method> getImplementedMethods(final Class<?> token) {
+        return MethodResolver.getImplementedMethods(token);
     }
 
     /**
-     * Returns a string containing implementation of <var>constructor</var>.
-     * The result of function {@link Util#getImplSimpleName(Class)}. is used as the name of the constructor.
-     * The result of function {@link #getConstructorBody(Constructor)} is used as the constructor body.
+     * Writes class implementation using a <var>writer</var>.
+     * The code is emitted by the {@link SourceEmitter} of the current thread
+     * and written through an {@link UnicodeEscapingWriter}, escaping all Unicode characters greater than or equal to 128.
+     * An implementation class contains one constructor calling any non-private constructor of the parent class,
+     * and an implementation of inherited abstract methods returning default values.
      *
-     * @param constructor the {@link Constructor} whose implementation must be obtained
-     * @return implementation constructor {@link String}
-     * @see #getExecutable(Executable, String, String)
+     * @param token  the {@link Class} object of a parent class or an interface that is being implemented
+     * @param writer where to write the class implementation
+     * @throws IOException     if an error occurred trying to write with a given writer
+     * @throws ImplerException if there are no appropriate constructors in a class given
+     * @see SourceEmitter#emit(Class)
      */
-    private String getConstructor(final Constructor<?> constructor) {
-        return getExecutable(constructor,
-                getImplSimpleName(constructor.getDeclaringClass()),
-                getConstructorBody(constructor));
+    private void writeClass(final Class<?> token, final Writer writer) throws IOException, ImplerException {
+        new UnicodeEscapingWriter(writer).append(SourceEmitter.get().emit(token));
     }
 
     /**
-     * Returns a string containing implementation of method.
-     * The result of function {@link #getMethodBody(Method)} is used as the method body.
+     * Checks if all arguments passed are non-null.
      *
-     * @param method the {@link Method} whose implementation must be obtained
-     * @return implementation method string
-     * @see #getExecutable(Executable, String, String)
+     * @param args arguments to check
+     * @throws ImplerException if at least one argument is null
      */
-    private String getMethod(final Method method) {
-        return getExecutable(method,
-                method.getReturnType().getCanonicalName() + " " + method.getName(),
-                getMethodBody(method));
+    private void nullAssertion(final Object... args) throws ImplerException {
+        for (final Object o : args) {
+            if (Objects.isNull(o)) {
+                throw new ImplerException("Non null arguments expected");
+            }
+        }
     }
 
+
     /**
-     * Returns an enumeration of arguments.
-     * Return a {@link String} of type {@code (Argumenvarype0 arg0, Argumenvarype1 arg1, ... , Argumenvarypen argn)}
-     * by {@link Parameter} array
+     * Checks that the <var>token</var> can be implemented.
      *
-     * @param parameters the arguments array
-     * @return enumeration of arguments separated by commas with a space with bracket at the beginning and at the end.
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @throws ImplerException if the <var>token</var> is a primitive, an array, {@link Enum},
+     * a final or a private class
      */
-    private String getArgs(final Parameter[] parameters) {
-        return join(parameters,
-                parameter -> parameter.getType().getCanonicalName() + " " + parameter.getName(),
-                ", ", "(", ")");
+    static void checkToken(final Class<?> token) throws ImplerException {
+        if (token.isPrimitive()
+                || token.isArray()
+                || token == Enum.class
+                || Modifier.isFinal(token.getModifiers())
+                || Modifier.isPrivate(token.getModifiers())) {
+            throw new ImplerException("Unsupported class token given");
+        }
     }
 
     /**
-     * Returns a string about thrown exceptions.
-     * Return a {@link String} of type {@code throws Exception0, Exception1, ... , Exceptionn} by exception class array
-     * If exception class array is empty, returns an empty string.
+     * Returns the source code of the implementation class.
      *
-     * @param exceptions exception class array
-     * @return exception names separated by commas with a space with "throws " prefix
-     * if exception class array isn't empty, and and empty string otherwise
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the source code written by {@link #writeClass(Class, Writer)}
+     * @throws ImplerException if the <var>token</var> cannot be implemented
      */
-    private static String getExceptions(final Class<?>[] exceptions) {
-        return exceptions.length == 0 ? "" : "throws " + join(exceptions, Class::getCanonicalName, ", ");
+    private String generate(final Class<?> token) throws ImplerException {
+        checkToken(token);
+        final StringWriter writer = new StringWriter();
+        try {
+            writeClass(token, writer);
+        } catch (final IOException e) {
+            throw new ImplerException("Error during generating a class: " + e.getMessage(), e);
+        }
+        return writer.toString();
     }
 
-    /**
-     * Returns a constructor body implementation.
-     * The constructor implementation is a {@code super} method call with the arguments passed.
-     * The returned string does not contain a semicolon at the end.
-     *
-     * @param constructor the {@link Constructor} whose body implementation must be obtained
-     * @return enumeration of the arguments passed, separated by commas with a space with "super(" prefix ans ")" suffix
-     */
-    private String getConstructorBody(final Constructor<?> constructor) {
-        return join(constructor.getParameters(), Parameter::getName, ", ", "super(", ")");
+    @Override
+    public void implement(final Class<?> token, Path root) throws ImplerException {
+        nullAssertion(token, root);
+        checkToken(token);
+
+        root = getPath(token, root, ".java");
+
+        try (final Writer writer = Files.newBufferedWriter(root)) {
+            writeClass(token, writer);
+        } catch (final IOException e) {
+            throw new ImplerException("Error during writing in file: " + e.getMessage(), e);
+        }
     }
 
     /**
-     * Returns method or constructor implementation.
-     * Format: {@code modifiers returnType name(parameters) {
-     * method_or_constructor_body;
-     * }}
+     * Implements the classes of the given names, resolving them from their <var>.class</var> files
+     * by a {@link ClassFileResolver} instead of reflection, so the classes are never loaded into the JVM.
+     * The sources written are the same {@link #implement(Class, Path)} writes for the loaded classes.
+     * A class that cannot be implemented is reported and does not prevent others from being implemented.
      *
-     * @param executable        {@link Executable} class of method or constructor that is being implemented
-     * @param returnTypeAndName a {@link String} containing returnType and name separated by space
-     *                          if executable is method, and name otherwise
-     * @param body              a {@link String} containing constructor or method body
-     * @return a string containing method or constructor implementation
+     * @param classNames binary names of the parent classes or the interfaces that are being implemented
+     * @param classPath  class path to resolve the classes from, see {@link Util#getClassLoader(List)}
+     * @param root       the path to the directory where the source files should be
+     * @return errors by the names of the classes that are not implemented
      */
-    private String getExecutable(final Executable executable,
-                                 final String returnTypeAndName,
-                                 final String body) {
-        return String.format("\t%s %s%s %s {%n\t\t%s;%n\t}%n",
-                Modifier.toString(executable.getModifiers()
-                        & ~Modifier.ABSTRACT & ~Modifier.NATIVE & ~Modifier.TRANSIENT),
-                returnTypeAndName,
-                getArgs(executable.getParameters()),
-                getExceptions(executable.getExceptionTypes()),
-                body);
+    static Map<String, ImplerException> implementClassFiles(final List<String> classNames,
+                                                            final List<Path> classPath, final Path root) {
+        final Map<String, ImplerException> failed = new LinkedHashMap<>();
+        try (final ClassFileResolver resolver = new ClassFileResolver(classPath)) {
+            for (final String className : classNames) {
+                try {
+                    final ClassStub stub = resolver.resolve(className);
+                    final Path path = root.resolve(Path.of(stub.packageName.replace(".", File.separator),
+                            getNewClassName(stub.simpleName) + ".java"));
+                    createDirectories(path);
+                    try (final Writer writer = Files.newBufferedWriter(path)) {
+                        new UnicodeEscapingWriter(writer).append(SourceEmitter.get().emit(stub));
+                    } catch (final IOException e) {
+                        throw new ImplerException("Error during writing in file: " + e.getMessage(), e);
+                    }
+                } catch (final ImplerException e) {
+                    failed.put(className, e);
+                }
+            }
+        } catch (final IOException e) {
+            System.err.println("Error during closing a class path: " + e.getMessage());
+        }
+        return failed;
     }
 
     /**
-     * Returns a method body implementation.
-     * The method implementation is a {@code return} the required parameter,
-     * depending on the type obtained from the {@link Method#getReturnType()} method.
-     * The returned string does not contain a semicolon at the end.
+     * Create a <var>.jar</var> file containing the <var>.class</var> file of the implementation class.
      *
-     * @param method the {@link Method} whose body implementation must be obtained
-     * @return {@link String} containing the required value with "return " prefix
+     * @param token      the {@link Class} object of a parent class or an interface that is being implemented
+     * @param classBytes contents of the <var>.class</var> file compiled by the {@link #compiler}
+     * @param jarFile    where to save the <var>.jar</var> file
+     * @throws ImplerException if an error occurred trying to write in <var>.jar</var> file
      */
-    private String getMethodBody(final Method method) {
-        final Class<?> returnValueType = method.getReturnType();
-        final String returnValue;
-        if (returnValueType.equals(void.class)) {
-            returnValue = "";
-        } else if (returnValueType.equals(boolean.class)) {
-            returnValue = "false";
-        } else if (returnValueType.isPrimitive()) {
-            returnValue = "0";
-        } else {
-            returnValue = "null";
+    static void createJarFile(final Class<?> token, final byte[] classBytes, final Path jarFile)
+            throws ImplerException {
+        try {
+            writeJarFile(token, classBytes, Files.newOutputStream(jarFile));
+        } catch (final IOException e) {
+            throw new ImplerException("Error during a jar file writing: " + e.getMessage(), e);
         }
-        return "return " + returnValue;
     }
 
     /**
-     * Wraps the required methods in {@link MethodWrapper}.
-     * Gets the required methods defined by the function <var>getMethods</var> ({@link Class#getMethods()} or {@link Class#getDeclaredMethods()},
-     * Then filters them according to the <var>predicate</var> and return {@link Stream} of {@link MethodWrapper}.
+     * Writes a <var>.jar</var> file containing the <var>.class</var> file of the implementation class.
+     * The stream is closed afterwards.
      *
-     * @param token      the {@link Class} whose methods you want to get
-     * @param getMethods {@code Function<Class<?>, Method[]>} which imposes restrictions on return methods
-     *                   ({@link Class#getMethods()} or {@link Class#getDeclaredMethods()})
-     * @param predicate  how to filter
-     * @return {@link Stream} of {@link MethodWrapper}
+     * @param token      the {@link Class} object of a parent class or an interface that is being implemented
+     * @param classBytes contents of the <var>.class</var> file compiled by the {@link #compiler}
+     * @param out        where to write the <var>.jar</var> file
+     * @throws IOException if an error occurred trying to write the <var>.jar</var> file
      */
-    private Stream<MethodWrapper> getMethodWrapperSet(final Class<?> token,
-                                                      final Function<Class<?>, Method[]> getMethods,
-                                                      final Predicate<Method> predicate) {
-        return Arrays.stream(getMethods.apply(token))
-                .filter(predicate)
-                .map(MethodWrapper::new);
+    private static void writeJarFile(final Class<?> token, final byte[] classBytes, final OutputStream out)
+            throws IOException {
+        try (final JarOutputStream writer = openJarFile(out)) {
+            writer.putNextEntry(newJarEntry(getClassEntryName(token)));
+            writer.write(classBytes);
+        }
     }
 
     /**
-     * Helper method for obtaining the necessary methods.
-     * Adds the abstract methods defined by the function
-     * <var>getMethods</var> ({@link Class#getMethods()} or {@link Class#getDeclaredMethods()})
-     * to the {@link Set} <var>set</var>
-     * All methods are cast to {@link MethodWrapper} class using {@link #getMethodWrapperSet(Class, Function, Predicate)}.
-     *
-     * @param token      the {@link Class} whose methods you want to get
-     * @param getMethods {@code Function<Class<?>, Method[]>} which imposes restrictions on return methods
-     *                   ({@link Class#getMethods()} or {@link Class#getDeclaredMethods()})
-     * @param set        where to collect
+     * {@inheritDoc}
      */
-    private void getMethodsSet(final Class<?> token,
-                               final Function<Class<?>, Method[]> getMethods,
-                               final Set<MethodWrapper> set) {
-        getMethodWrapperSet(token, getMethods, method -> Modifier.isAbstract(method.getModifiers()))
-                .collect(Collectors.toCollection(() -> set));
+    @Override
+    public void implementJar(final Class<?> token, final Path jarFile) throws ImplerException {
+        nullAssertion(token, jarFile);
+        checkToken(token);
+        final byte[] classBytes = compiler.compile(token, compiler.requiresSource() ? generate(token) : null);
+        createDirectories(jarFile);
+        createJarFile(token, classBytes, jarFile);
     }
 
     /**
-     * Deletes final methods in super classes.
-     * Needed to remove abstract methods that cannot be implemented in the generated class.
-     * Deletes the final methods defined by the function {@code getMethods} ({@link Class#getMethods()} or {@link Class#getDeclaredMethods()})
+     * Checks that the implementation of the <var>token</var> is reproducible.
+     * The source code and the <var>.jar</var> file are produced twice and compared byte for byte.
+     * The returned digest is to be compared with the digests reported by other runs,
+     * as the output is expected to be the same in every JVM.
      *
-     * @param token      the {@link Class} object of a parent class or an interface that is being implemented
-     * @param getMethods {@code Function<Class<?>, Method[]>} which imposes restrictions on return methods
-     *                   ({@link Class#getMethods()} or {@link Class#getDeclaredMethods()})
-     * @param set        where to remove unnecessary methods
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return hexadecimal SHA-256 digest of the <var>.jar</var> file
+     * @throws ImplerException if the <var>token</var> cannot be implemented or the outputs differ
      */
-    private void removeFinalMethods(final Class<?> token,
-                                    final Function<Class<?>, Method[]> getMethods,
-                                    final Set<MethodWrapper> set) {
-        getMethodWrapperSet(token, getMethods, method -> Modifier.isFinal(method.getModifiers()))
-                .forEach(set::remove);
+    public String checkReproducible(final Class<?> token) throws ImplerException {
+        nullAssertion(token);
+        checkToken(token);
+        final byte[] first = getJarBytes(token);
+        final byte[] second = getJarBytes(token);
+        if (!Arrays.equals(first, second)) {
+            throw new ImplerException("Non-reproducible jar file of " + token.getName());
+        }
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(first));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new ImplerException("Error during computing a digest: " + e.getMessage(), e);
+        }
     }
 
     /**
-     * Collects a set of all abstract methods to implement of a class.
+     * Returns the contents of the <var>.jar</var> file {@link #implementJar(Class, Path)} would write.
+     * If the compiler requires the source, it is generated twice and compared too.
      *
      * @param token the {@link Class} object of a parent class or an interface that is being implemented
-     * @return set of methods that need to be implemented
+     * @return contents of the <var>.jar</var> file
+     * @throws ImplerException if the <var>token</var> cannot be implemented or the sources differ
      */
-    private Set<MethodWrapper> getMethodsSet(final Class<?> token) {
-        final Set<MethodWrapper> methods = new HashSet<>();
-        getMethodsSet(token, Class::getMethods, methods);
-        for (Class<?> curToken = token; curToken != null; curToken = curToken.getSuperclass()) {
-            getMethodsSet(curToken, Class::getDeclaredMethods, methods);
+    private byte[] getJarBytes(final Class<?> token) throws ImplerException {
+        String source = null;
+        if (compiler.requiresSource()) {
+            source = generate(token);
+            if (!source.equals(generate(token))) {
+                throw new ImplerException("Non-reproducible source of " + token.getName());
+            }
         }
-
-        removeFinalMethods(token, Class::getMethods, methods);
-        for (Class<?> curToken = token; curToken != null; curToken = curToken.getSuperclass()) {
-            removeFinalMethods(curToken, Class::getDeclaredMethods, methods);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writeJarFile(token, compiler.compile(token, source), out);
+        } catch (final IOException e) {
+            throw new ImplerException("Error during a jar file writing: " + e.getMessage(), e);
         }
-        return methods;
+        return out.toByteArray();
     }
 
     /**
-     * Class wrap over the classic {@link Method}.
-     * Allows you to compare methods for equivalence by name, arguments and return type.
+     * Implementation of a single token of a batch stage.
      *
-     * @see Method#hashCode()
-     * @see Method#equals(Object)
+     * @param <T> type of the stage result
      */
-    private static class MethodWrapper {
+    @FunctionalInterface
+    private interface BatchAction<T> {
         /**
-         * A method being stored inside a wrapper
+         * Processes the <var>token</var>.
+         *
+         * @param token the {@link Class} object of a parent class or an interface that is being implemented
+         * @return the result of the stage for the <var>token</var>
+         * @throws ImplerException if the <var>token</var> cannot be processed
          */
-        private final Method method;
+        T apply(Class<?> token) throws ImplerException;
+    }
 
+    /**
+     * Fork-join task running a batch stage for a group of workers.
+     * Groups are split in halves until a single worker is left, and every worker takes the next token
+     * not taken yet until there are none, so tokens are started in the order of the list
+     * and a worker finishing early takes more tokens.
+     *
+     * @param <T> type of the stage result
+     */
+    private static class BatchTask<T> extends RecursiveAction {
         /**
-         * Constructs a method wrapper by a given method
-         *
-         * @param method method to store
+         * Version of the serialized form.
          */
-        public MethodWrapper(final Method method) {
-            this.method = method;
-        }
+        private static final long serialVersionUID = 1L;
 
         /**
-         * Gets a method stored
-         *
-         * @return a method stored
+         * Tokens of the whole batch.
          */
-        public Method getMethod() {
-            return method;
-        }
+        private final List<Class<?>> tokens;
+        /**
+         * Index of the next token not taken yet, shared by all the workers.
+         */
+        private final AtomicInteger next;
+        /**
+         * Number of workers of the group.
+         */
+        private final int workers;
+        /**
+         * How to process a single token.
+         */
+        private final BatchAction<T> action;
+        /**
+         * Where to put results.
+         */
+        private final Map<Class<?>, T> results;
+        /**
+         * Where to put failures.
+         */
+        private final Map<Class<?>, ImplerException> failed;
 
         /**
-         * Overridden method for comparing the contents of wrapper classes.
-         * It returns {@code true} if and only if the argument passed is a method and the name,
-         * parameters and return type of the methods are the same, and {@code false} otherwise.
+         * Constructs a task for a group of <var>workers</var>.
          *
-         * @param obj a method wrapper to compare with
-         * @return {@code true} if objects are equal, {@code false} otherwise
+         * @param tokens  tokens of the whole batch, in the order to start them
+         * @param next    index of the next token not taken yet, shared by all the workers
+         * @param workers number of workers of the group, positive
+         * @param action  how to process a single token
+         * @param results where to put results
+         * @param failed  where to put failures
          */
-        @Override
-        public boolean equals(final Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (obj instanceof MethodWrapper) {
-                final MethodWrapper otherMethod = (MethodWrapper) obj;
-                return (method.getName().equals(otherMethod.method.getName())) &&
-                        Arrays.equals(method.getParameterTypes(), otherMethod.method.getParameterTypes()) &&
-                        method.getReturnType().equals(otherMethod.method.getReturnType());
-            }
-            return false;
+        BatchTask(final List<Class<?>> tokens, final AtomicInteger next, final int workers,
+                  final BatchAction<T> action,
+                  final Map<Class<?>, T> results, final Map<Class<?>, ImplerException> failed) {
+            this.tokens = tokens;
+            this.next = next;
+            this.workers = workers;
+            this.action = action;
+            this.results = results;
+            this.failed = failed;
         }
 
         /**
-         * {@inheritDoc}
+         * Processes the tokens not taken yet one by one if the group consists of one worker,
+         * splits the group in halves otherwise.
          */
         @Override
-        public int hashCode() {
-            return Objects.hash(method.getName(),
-                    Arrays.hashCode(method.getParameterTypes()),
-                    method.getReturnType());
+        protected void compute() {
+            if (workers > 1) {
+                final int half = workers >>> 1;
+                invokeAll(new BatchTask<>(tokens, next, half, action, results, failed),
+                        new BatchTask<>(tokens, next, workers - half, action, results, failed));
+                return;
+            }
+            for (int i = next.getAndIncrement(); i < tokens.size(); i = next.getAndIncrement()) {
+                final Class<?> token = tokens.get(i);
+                try {
+                    results.put(token, action.apply(token));
+                } catch (final ImplerException e) {
+                    failed.put(token, e);
+                } catch (final RuntimeException | LinkageError e) {
+                    failed.put(token, new ImplerException("Unexpected error: " + e.getMessage(), e));
+                }
+            }
         }
     }
 
     /**
-     * Writes class implementation using a <var>writer</var>.
-     * A package is wrivaren at the beginning of the file, if it exists, obtained by the {@link #getPackageLine(Class)} method.
-     * An implementation class contains one constructor (see {@link #writeConstructor(Class, Writer)},
-     * and an implementation of inherited methods (see {@link #writeMethods(Class, Writer)}).
+     * Checks the batch arguments and removes repeated tokens.
      *
-     * @param token  the {@link Class} object of a parent class or an interface that is being implemented
-     * @param writer where to write the class implementation
-     * @throws IOException     if an error occurred trying to write with a given writer
-     * @throws ImplerException if there are no appropriate constructors in a class given
-     * @see #getPackageLine(Class)
-     * @see #getDeclarationLine(Class)
-     * @see #writeConstructor(Class, Writer)
-     * @see #writeMethods(Class, Writer)
+     * @param tokens tokens to implement
+     * @param path   where to put the generated files
+     * @return distinct tokens in the original order
+     * @throws ImplerException if <var>tokens</var>, any of its elements or <var>path</var> is {@code null}
      */
-    private void writeClass(final Class<?> token, final Writer writer) throws IOException, ImplerException {
-        write(writer, String.format("%s%n%s {%n",
-                getPackageLine(token),
-                getDeclarationLine(token)));
-
-        writeConstructor(token, writer);
-        writeMethods(token, writer);
-
-        writer.write("}");
+    private List<Class<?>> distinct(final Collection<Class<?>> tokens, final Path path) throws ImplerException {
+        nullAssertion(tokens, path);
+        nullAssertion(tokens.toArray());
+        return new ArrayList<>(new LinkedHashSet<>(tokens));
     }
 
     /**
-     * Checks if all arguments passed are non-null.
+     * Runs a batch stage for every token on the {@link #pool}.
+     * Tokens are started in the order of {@link BatchScheduler#schedule(List)}, longest jobs and ancestors first,
+     * and share a {@link MethodResolver.Session} for the time of the stage.
      *
-     * @param args arguments to check
-     * @throws ImplerException if at least one argument is null
+     * @param tokens tokens to process
+     * @param action how to process a single token
+     * @param failed where to put failures
+     * @param <T>    type of the stage result
+     * @return results of the successfully processed tokens
      */
-    private void nullAssertion(final Object... args) throws ImplerException {
-        for (final Object o : args) {
-            if (Objects.isNull(o)) {
-                throw new ImplerException("Non null arguments expected");
-            }
-        }
-    }
-
-
-    @Override
-    public void implement(final Class<?> token, Path root) throws ImplerException {
-        nullAssertion(token, root);
-        if (token.isPrimitive()
-                || token.isArray()
-                || token == Enum.class
-                || Modifier.isFinal(token.getModifiers())
-                || Modifier.isPrivate(token.getModifiers())) {
-            throw new ImplerException("Unsupported class token given");
-        }
-
-        root = getPath(token, root, ".java");
-
-        try (final Writer writer = Files.newBufferedWriter(root)) {
-            writeClass(token, writer);
-        } catch (final IOException e) {
-            throw new ImplerException("Error during writing in file: " + e.getMessage(), e);
+    private <T> Map<Class<?>, T> runStage(final List<Class<?>> tokens,
+                                          final BatchAction<T> action,
+                                          final Map<Class<?>, ImplerException> failed) {
+        final Map<Class<?>, T> results = new ConcurrentHashMap<>();
+        final int workers = Math.max(1, Math.min(pool.getParallelism(), tokens.size()));
+        final MethodResolver.Session session = MethodResolver.openSession();
+        try {
+            pool.invoke(new BatchTask<>(BatchScheduler.schedule(tokens), new AtomicInteger(), workers,
+                    action, results, failed));
+        } finally {
+            session.close();
         }
+        return results;
     }
 
     /**
-     * Compiles implementation class and stores <var>.class</var> file in given <var>path</var>.
+     * Generates and compiles implementations of the tokens.
+     * Sources are generated in parallel and passed to a single {@link ClassCompiler#compileAll(Map, Map)} call.
+     * The default {@link TempDirectoryCompiler} and the {@link InMemoryCompiler} run the java compiler once
+     * per class path of the batch, so the compiler start-up cost is paid once per batch;
+     * other compilers may compile the tokens one by one.
      *
-     * @param token the {@link Class} object of a parent class or an interface that is being implemented
-     * @param path  where to save <var>.class</var> files
-     * @throws ImplerException if the java compiler wasn't found or an error occurred trying to compile classes
+     * @param tokens distinct tokens to implement
+     * @param failed where to put failures
+     * @return contents of the <var>.class</var> files of the successfully compiled tokens
      */
-    private void compileClass(final Class<?> token, final Path path) throws ImplerException {
-        final JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
-        final String[] args = new String[]{
-                "-cp",
-                System.getProperty("java.class.path") + File.pathSeparator + path.toString(),
-                getPath(token, path, ".java").toString()
-        };
-
-        if (javaCompiler == null) {
-            throw new ImplerException("No java compiler found");
-        }
-        if (javaCompiler.run(null, null, null, args) != 0) {
-            throw new ImplerException("Error during compiling classes");
+    private Map<Class<?>, byte[]> compileAll(final List<Class<?>> tokens,
+                                             final Map<Class<?>, ImplerException> failed) {
+        final Map<Class<?>, String> sources = runStage(tokens, token -> {
+            checkToken(token);
+            return compiler.requiresSource() ? generate(token) : "";
+        }, failed);
+        final Map<Class<?>, String> ordered = new LinkedHashMap<>();
+        for (final Class<?> token : tokens) {
+            if (sources.containsKey(token)) {
+                ordered.put(token, sources.get(token));
+            }
         }
+        return compiler.compileAll(ordered, failed);
     }
 
     /**
-     * Encodes text. Escapes all Unicode characters greater than or equal to 128.
-     *
-     * @param text the {@link String} to be converted
-     * @return Encoded {@link String}
+     * {@inheritDoc}
      */
-    private String encode(final String text) {
-        final StringBuilder sb = new StringBuilder();
-        final char[] charArray = text.toCharArray();
-        for (final char c : charArray) {
-            sb.append((c < 128) ? c : String.format("\\u%04x", (int) c));
-        }
-        return sb.toString();
+    @Override
+    public BatchResult implementAll(final Collection<Class<?>> tokens, final Path root) throws ImplerException {
+        final List<Class<?>> distinct = distinct(tokens, root);
+        final Map<Class<?>, ImplerException> failed = new ConcurrentHashMap<>();
+        final Map<Class<?>, Path> implemented = runStage(distinct, token -> {
+            implement(token, root);
+            return getPath(token, root, ".java");
+        }, failed);
+        return new BatchResult(distinct, implemented, failed);
     }
 
     /**
-     * Writes a string to a <var>writer</var>, Escaping all Unicode characters greater than or equal to 128.
-     *
-     * @param writer where to write
-     * @param string the {@link String} to be encoded and written to the <var>writer</var>
-     * @throws IOException if an error occurred trying to write with a given writer
-     * @see #encode(String)
+     * {@inheritDoc}
+     * All implementations are passed to a single {@link ClassCompiler#compileAll(Map, Map)} call of the compiler.
      */
-    private void write(final Writer writer, final String string) throws IOException {
-        writer.write(encode(string));
+    @Override
+    public BatchResult implementJarAll(final Collection<Class<?>> tokens, final Path root) throws ImplerException {
+        final List<Class<?>> distinct = distinct(tokens, root);
+        final Map<Class<?>, ImplerException> failed = new ConcurrentHashMap<>();
+        final Map<Class<?>, byte[]> classes = compileAll(distinct, failed);
+        final Map<Class<?>, Path> implemented = runStage(new ArrayList<>(classes.keySet()), token -> {
+            final Path jarFile = getPath(token, root, ".jar");
+            createJarFile(token, classes.get(token), jarFile);
+            return jarFile;
+        }, failed);
+        return new BatchResult(distinct, implemented, failed);
     }
 
     /**
-     * Create a <var>.jar</var> file containing <var>.class</var> files
-     * compiling by {@link #compileClass(Class, Path)}.
+     * Produces the contents of the <var>.jar</var> files implementing the tokens,
+     * the same as {@link #implementJarAll(Collection, Path)} writes, without writing them.
      *
-     * @param token   the {@link Class} object of a parent class or an interface that is being implemented
-     * @param tmpDir  where to get <var>.class</var> files
-     * @param jarFile where to save the <var>.jar</var> file
-     * @throws ImplerException if an error occurred trying to write in <var>.jar</var> file or to copy files
+     * @param tokens distinct tokens to implement
+     * @param failed where to put failures
+     * @return contents of the <var>.jar</var> files of the successfully implemented tokens
      */
-    private static void createJarFile(final Class<?> token, final Path tmpDir, final Path jarFile) throws ImplerException {
-        final Manifest manifest = new Manifest();
-        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
-
-        try (final JarOutputStream writer = new JarOutputStream(Files.newOutputStream(jarFile), manifest)) {
-            final String className = getPackageDir(token, "/") + String.format("/%s.class", getImplSimpleName(token));
-            writer.putNextEntry(new ZipEntry(className));
-            Files.copy(tmpDir.resolve(className), writer);
-        } catch (final IOException e) {
-            throw new ImplerException("Error during a jar file writing: " + e.getMessage(), e);
-        }
+    Map<Class<?>, byte[]> implementJarBytesAll(final List<Class<?>> tokens,
+                                               final Map<Class<?>, ImplerException> failed) {
+        final Map<Class<?>, byte[]> classes = compileAll(tokens, failed);
+        return runStage(new ArrayList<>(classes.keySet()), token -> {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                writeJarFile(token, classes.get(token), out);
+            } catch (final IOException e) {
+                throw new ImplerException("Error during a jar file writing: " + e.getMessage(), e);
+            }
+            return out.toByteArray();
+        }, failed);
     }
 
     /**
-     * Class is used to clean directory for temporary files, after creating <var>.jar</var>-file.
-     * Recursively deletes directory, all its subdirectories and files inside.
-     *
-     * @see Files#walkFileTree(Path, FileVisitor)
+     * {@inheritDoc}
+     * All implementations are passed to a single {@link ClassCompiler#compileAll(Map, Map)} call of the compiler.
      */
-    private static class TmpDirCleaner extends SimpleFileVisitor<Path> {
-
-        /**
-         * Deletes file
-         *
-         * @param file file to delete
-         * @see Files#delete(Path)
-         */
-        @Override
-        public FileVisitResult visitFile(final Path file, final BasicFileAttributes avarrs) throws IOException {
-            Files.delete(file);
-            return FileVisitResult.CONTINUE;
-        }
-
-        /**
-         * Deletes directory after all of files inside it and subdirectories are already deleted.
-         *
-         * @param dir directory to delete
-         * @param exc thrown exception during deleting
-         * @return value indicating continuation of walking
-         * @throws IOException if an error occurred trying to create directories
-         */
-        @Override
-        public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
-            Files.delete(dir);
-            return FileVisitResult.CONTINUE;
+    @Override
+    public BatchResult implementCombinedJar(final Collection<Class<?>> tokens, final Path jarFile)
+            throws ImplerException {
+        final List<Class<?>> distinct = distinct(tokens, jarFile);
+        final Map<Class<?>, ImplerException> failed = new ConcurrentHashMap<>();
+        final Map<Class<?>, byte[]> classes = compileAll(distinct, failed);
+        final Map<Class<?>, Path> implemented = new HashMap<>();
+        createDirectories(jarFile);
+        try (final JarOutputStream writer = openJarFile(Files.newOutputStream(jarFile))) {
+            for (final Class<?> token : distinct) {
+                if (classes.containsKey(token)) {
+                    try {
+                        writer.putNextEntry(newJarEntry(getClassEntryName(token)));
+                        writer.write(classes.get(token));
+                        implemented.put(token, jarFile);
+                    } catch (final ZipException e) {
+                        failed.put(token, new ImplerException("Error during a jar file writing: " + e.getMessage(), e));
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            final ImplerException exception = new ImplerException("Error during a jar file writing: " + e.getMessage(), e);
+            for (final Class<?> token : classes.keySet()) {
+                failed.put(token, exception);
+            }
+            implemented.clear();
         }
+        return new BatchResult(distinct, implemented, failed);
     }
 
     /**
-     * Static object of {@link TmpDirCleaner} class.
-     */
-    private static final FileVisitor<Path> TMP_DIR_CLEANER = new TmpDirCleaner();
-
-    /**
-     * {@inheritDoc}
+     * Checks that the implementations of the given classes are reproducible and prints their digests.
+     *
+     * @param classNames names of the classes to check
+     * @param classPath  class path to load the classes from, see {@link Util#getClassLoader(List)}
+     * @see #checkReproducible(Class)
      */
-    @Override
-    public void implementJar(final Class<?> token, final Path jarFile) throws ImplerException {
-        nullAssertion(token, jarFile);
-        createDirectories(jarFile);
-        final Path tmpDir = createTempDirectory(jarFile);
-
-        try {
-            implement(token, tmpDir);
-            compileClass(token, tmpDir);
-            createJarFile(token, tmpDir, jarFile);
-        } finally {
+    private static void check(final List<String> classNames, final List<Path> classPath) {
+        if (classNames.isEmpty()) {
+            System.err.println("Expected [-cp classpath] -check class [class...]");
+            return;
+        }
+        final Implementor implementor = new Implementor();
+        for (final String className : classNames) {
             try {
-                Files.walkFileTree(tmpDir, TMP_DIR_CLEANER);
-            } catch (final IOException e) {
-                System.err.println(String.format("Error during deleting temporary files in '%s' directory: %s",
-                        tmpDir, e.getMessage()));
+                System.out.println(implementor.checkReproducible(Util.loadClass(className, classPath)) + " " + className);
+            } catch (final ClassNotFoundException e) {
+                System.err.println("Invalid class name: " + e.getMessage());
+            } catch (final ImplerException e) {
+                System.err.println(String.format("%s: %s", className, e.getMessage()));
             }
         }
     }
 
     /**
      * The main function for implementing the class.
-     * Supports two operating modes.
+     * Supports four operating modes.
      * <ul>
-     *     <li>2 arguments. <br>
-     *          The first argument is a class object that needs to be expanded or implemented.
-     *          The second argument is the path where you need to put the implementation class.
+     *     <li>Class mode. <br>
+     *          The first arguments are class objects that needs to be expanded or implemented.
+     *          The last argument is the path where you need to put the implementation classes.
      *     </li>
      *
      *     <li>
      *         Jar mode. <br>
      *         The first argument is the <var>-jar</var> key.
-     *         The first argument is a class object that needs to be expanded or implemented and archived.
-     *         The second argument is the path where you need to put the <var>.jar</var>.
+     *         The next arguments are class objects that needs to be expanded or implemented and archived.
+     *         The last argument is the path where you need to put the <var>.jar</var>.
+     *         If several classes are given, the path is a directory to put a <var>.jar</var> for each class to.
+     *     </li>
+     *
+     *     <li>
+     *         Class file mode. <br>
+     *         The first argument is the <var>-classfile</var> key.
+     *         The next arguments are binary names of the classes that need to be expanded or implemented.
+     *         The last argument is the path where you need to put the implementation classes.
+     *         The classes are resolved from their <var>.class</var> files and never loaded,
+     *         see {@link #implementClassFiles(List, List, Path)}.
+     *     </li>
+     *
+     *     <li>
+     *         Check mode. <br>
+     *         The first argument is the <var>-check</var> key.
+     *         The next arguments are class objects whose implementations are checked to be reproducible.
+     *         The SHA-256 digest of the <var>.jar</var> file is printed for each class,
+     *         so the output of different runs can be compared.
      *     </li>
      * </ul>
+     * Several classes are implemented as a batch: a class that cannot be implemented is reported
+     * and does not prevent others from being implemented.
+     * <p>
+     * Every mode may be preceded by the <var>-cp</var> key and a class path to load the classes from
+     * by an isolated class loader, instead of the class path of the running application.
+     * Classes are loaded without initialization, so none of their code is run.
      *
-     * @param args command line arguments {@code [-jar] class path}
+     * @param args command line arguments {@code [-cp classpath] [-jar | -classfile] class [class...] path}
+     *             or {@code [-cp classpath] -check class [class...]}
      * @see #implement(Class, Path)
      * @see #implementJar(Class, Path)
+     * @see #implementAll(Collection, Path)
+     * @see #implementJarAll(Collection, Path)
+     * @see #checkReproducible(Class)
      */
     public static void main(final String[] args) {
         Objects.requireNonNull(args, "Expected non null arguments");
-        if (args.length != 2 && args.length != 3) {
-            System.err.println("Expected 2 arguments for class implementing or 3 arguments for jar implementing");
-            return;
-        }
         for (int i = 0; i < args.length; i++) {
             Objects.requireNonNull(args[i], i + " argument is null");
         }
+        final boolean isolated = args.length > 1 && args[0].equals("-cp");
+        final int options = isolated ? 2 : 0;
+        final List<Path> classPath;
         try {
-            if (args.length == 2) {
-                new Implementor().implement(Class.forName(args[0]), Paths.get(args[1]));
-            } else if (args[0].equals("-jar")) {
-                new Implementor().implementJar(Class.forName(args[1]), Paths.get(args[2]));
-            } else {
-                System.err.println("Use '-jar' as first argument for jar implementing");
+            classPath = isolated ? Util.parseClassPath(args[1]) : List.of();
+        } catch (final InvalidPathException e) {
+            System.err.println("Invalid class path: " + e.getMessage());
+            return;
+        }
+        if (args.length > options && args[options].equals("-check")) {
+            check(Arrays.asList(args).subList(options + 1, args.length), classPath);
+            return;
+        }
+        if (args.length > options && args[options].equals("-classfile")) {
+            if (args.length - options < 3) {
+                System.err.println("Expected [-cp classpath] -classfile class [class...] path");
+                return;
+            }
+            try {
+                final Path path = Paths.get(args[args.length - 1]);
+                implementClassFiles(Arrays.asList(args).subList(options + 1, args.length - 1), classPath, path)
+                        .forEach((className, e) ->
+                                System.err.println(String.format("%s: %s", className, e.getMessage())));
+            } catch (final InvalidPathException e) {
+                System.err.println("Invalid path: " + e.getMessage());
+            }
+            return;
+        }
+        final boolean jar = args.length > options && args[options].equals("-jar");
+        final int first = jar ? options + 1 : options;
+        if (args.length - first < 2) {
+            System.err.println("Expected [-cp classpath] [-jar] class [class...] path");
+            return;
+        }
+        try {
+            final Path path = Paths.get(args[args.length - 1]);
+            final Implementor implementor = new Implementor();
+            if (args.length - first == 2) {
+                final Class<?> token = Util.loadClass(args[first], classPath);
+                if (jar) {
+                    implementor.implementJar(token, path);
+                } else {
+                    implementor.implement(token, path);
+                }
+                return;
+            }
+            final List<Class<?>> tokens = new ArrayList<>();
+            for (int i = first; i < args.length - 1; i++) {
+                try {
+                    tokens.add(Util.loadClass(args[i], classPath));
+                } catch (final ClassNotFoundException e) {
+                    System.err.println("Invalid class name: " + e.getMessage());
+                }
             }
+            final BatchResult result = jar
+                    ? implementor.implementJarAll(tokens, path)
+                    : implementor.implementAll(tokens, path);
+            result.getFailed().forEach((token, e) ->
+                    System.err.println(String.format("%s: %s", token.getName(), e.getMessage())));
         } catch (final ClassNotFoundException e) {
             System.err.println("Invalid class name: " + e.getMessage());
         } catch (final ImplerException e) {
@@ -0,0 +1,259 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * {@link ClassCompiler} compiling generated sources without touching the file system.
+ * The source is passed to the java compiler as an in-memory {@link JavaFileObject}
+ * and the contents of the <var>.class</var> file are captured by a {@link JavaFileManager}
+ * that keeps the compiler output in memory.
+ * Compilations are run in warm {@link CompilerContext compiler contexts} shared by the whole process.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class InMemoryCompiler implements ClassCompiler {
+    /**
+     * Source file of the implementation class held in memory.
+     */
+    static class SourceFile extends SimpleJavaFileObject {
+        /**
+         * Binary name of the class.
+         */
+        private final String className;
+
+        /**
+         * Source code of the class.
+         */
+        private final String source;
+
+        /**
+         * Constructs a source file of the class with the given binary name.
+         *
+         * @param className binary name of the class
+         * @param source    source code of the class
+         */
+        SourceFile(final String className, final String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.className = className;
+            this.source = source;
+        }
+
+        /**
+         * Returns the binary name of the class.
+         *
+         * @return the binary name of the class
+         */
+        String getClassName() {
+            return className;
+        }
+
+        /**
+         * Returns the source code of the class.
+         *
+         * @param ignoreEncodingErrors ignored, the source is already decoded
+         * @return the source code
+         */
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    /**
+     * Class file produced by the compiler and held in memory.
+     */
+    static class ClassFile extends SimpleJavaFileObject {
+        /**
+         * Contents of the class file.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Constructs a class file of the class with the given binary name.
+         *
+         * @param className binary name of the class
+         */
+        ClassFile(final String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        /**
+         * Returns a stream the compiler writes the class file to.
+         *
+         * @return stream collecting the contents of the class file
+         */
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+
+        /**
+         * Returns the contents of the class file written by the compiler.
+         *
+         * @return the contents of the class file
+         */
+        byte[] getBytes() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * File manager keeping the compiler output in memory.
+     * Everything else, like looking up the class path, is delegated to the standard file manager.
+     */
+    static class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        /**
+         * Class files written by the compiler by binary class names.
+         */
+        private final Map<String, ClassFile> classFiles = new ConcurrentHashMap<>();
+
+        /**
+         * Constructs a file manager delegating to the given one.
+         *
+         * @param fileManager file manager to delegate everything but output to
+         */
+        MemoryFileManager(final JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        /**
+         * Returns an in-memory class file for the compiler output.
+         *
+         * @param location  ignored, all output is kept in memory
+         * @param className binary name of the class
+         * @param kind      ignored, only class files are produced
+         * @param sibling   ignored, all output is kept in memory
+         * @return the in-memory class file
+         */
+        @Override
+        public JavaFileObject getJavaFileForOutput(final Location location, final String className,
+                                                   final JavaFileObject.Kind kind, final FileObject sibling) {
+            final ClassFile classFile = new ClassFile(className);
+            classFiles.put(className, classFile);
+            return classFile;
+        }
+
+        /**
+         * Returns the contents of the class file written by the compiler.
+         *
+         * @param className binary name of the class
+         * @return the contents of the class file, or {@code null} if the class was not compiled
+         */
+        byte[] getClassBytes(final String className) {
+            final ClassFile classFile = classFiles.get(className);
+            return classFile == null ? null : classFile.getBytes();
+        }
+
+        /**
+         * Does nothing: the delegate may be shared, so it is closed by its owner.
+         */
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Includes the {@link CompilerContext#getIdentity() identity} of the java compiler runs.
+     */
+    @Override
+    public String getIdentity() {
+        return getClass().getName() + " " + CompilerContext.getIdentity();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The compilation is run in a warm {@link CompilerContext} for the class path of the <var>token</var>.
+     */
+    @Override
+    public byte[] compile(final Class<?> token, final String source) throws ImplerException {
+        try (final CompilerContext context = CompilerContext.acquire(getClassPath(token))) {
+            return context.compile(getImplName(token), source);
+        }
+    }
+
+    /**
+     * Groups the tokens by their class paths for compilation, splitting every group into chunks
+     * in which the implementation class names are distinct.
+     *
+     * @param tokens tokens to compile
+     * @param failed where to put the tokens whose class path cannot be determined
+     * @return chunks of tokens by implementation class names, by class paths
+     */
+    static Map<List<Path>, List<Map<String, Class<?>>>> group(final Collection<Class<?>> tokens,
+                                                             final Map<Class<?>, ImplerException> failed) {
+        final Map<List<Path>, List<Map<String, Class<?>>>> groups = new LinkedHashMap<>();
+        for (final Class<?> token : tokens) {
+            try {
+                final List<Map<String, Class<?>>> chunks = groups.computeIfAbsent(getClassPath(token),
+                        classPath -> new ArrayList<>());
+                final String className = getImplName(token);
+                chunks.stream()
+                        .filter(chunk -> !chunk.containsKey(className))
+                        .findFirst()
+                        .orElseGet(() -> {
+                            final Map<String, Class<?>> chunk = new LinkedHashMap<>();
+                            chunks.add(chunk);
+                            return chunk;
+                        })
+                        .put(className, token);
+            } catch (final ImplerException e) {
+                failed.put(token, e);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tokens are grouped by their class paths, and every group is compiled by a single compiler run
+     * in a warm {@link CompilerContext}. Tokens with the same implementation class name are put into
+     * different groups. Compilation errors are mapped back to the tokens they were reported for,
+     * see {@link CompilerContext#compile(Map, Map)}.
+     */
+    @Override
+    public Map<Class<?>, byte[]> compileAll(final Map<Class<?>, String> sources,
+                                            final Map<Class<?>, ImplerException> failed) {
+        return compileGroups(sources, failed);
+    }
+
+    /**
+     * Compiles the implementations of several tokens in memory, a compiler run per {@link #group group}
+     * in a warm {@link CompilerContext}.
+     *
+     * @param sources source code of the implementation classes by tokens
+     * @param failed  where to put the causes of failure of the tokens that cannot be compiled
+     * @return contents of the <var>.class</var> files of the successfully compiled tokens
+     */
+    static Map<Class<?>, byte[]> compileGroups(final Map<Class<?>, String> sources,
+                                               final Map<Class<?>, ImplerException> failed) {
+        final Map<List<Path>, List<Map<String, Class<?>>>> groups = group(sources.keySet(), failed);
+        final Map<Class<?>, byte[]> classes = new LinkedHashMap<>();
+        for (final Map.Entry<List<Path>, List<Map<String, Class<?>>>> group : groups.entrySet()) {
+            for (final Map<String, Class<?>> chunk : group.getValue()) {
+                final Map<String, String> chunkSources = new LinkedHashMap<>();
+                chunk.forEach((className, token) -> chunkSources.put(className, sources.get(token)));
+                final Map<String, String> errors = new HashMap<>();
+                try (final CompilerContext context = CompilerContext.acquire(group.getKey())) {
+                    context.compile(chunkSources, errors).forEach((className, bytes) ->
+                            classes.put(chunk.get(className), bytes));
+                    errors.forEach((className, message) -> failed.put(chunk.get(className),
+                            new ImplerException("Error during compiling classes: " + message)));
+                } catch (final ImplerException e) {
+                    chunk.values().forEach(token -> failed.put(token, e));
+                }
+            }
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,84 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Cache of generated <var>.jar</var> files.
+ * Entries are looked up by keys describing everything the contents of a <var>.jar</var> file depend on,
+ * so an entry found for a key can be used instead of generating and compiling the implementation again.
+ *
+ * @author Boris Shaposhnikov
+ * @see CachingJarImplementor
+ * @see LocalJarCache
+ * @see RemoteJarCache
+ */
+public interface JarCache {
+    /**
+     * Writes the cached <var>.jar</var> file to the <var>target</var>, if there is one for the <var>key</var>.
+     *
+     * @param key    key of the entry
+     * @param target where to write the <var>.jar</var> file
+     * @return {@code true} if the <var>.jar</var> file was found and written, {@code false} otherwise
+     * @throws ImplerException if an error occurred trying to write the <var>target</var>
+     */
+    boolean get(String key, Path target) throws ImplerException;
+
+    /**
+     * Tells whether there is a <var>.jar</var> file cached for the <var>key</var>.
+     *
+     * @param key key of the entry
+     * @return {@code true} if the entry is cached, {@code false} otherwise
+     * @throws ImplerException if an error occurred trying to look the entry up
+     */
+    boolean contains(String key) throws ImplerException;
+
+    /**
+     * Stores the <var>.jar</var> file for the <var>key</var>, replacing the previous entry for it.
+     *
+     * @param key     key of the entry
+     * @param jarFile the <var>.jar</var> file to store
+     * @throws ImplerException if an error occurred trying to read the <var>.jar</var> file or to store it
+     */
+    void put(String key, Path jarFile) throws ImplerException;
+
+    /**
+     * Fetches the entries for the <var>keys</var> in advance, so that their {@link #get(String, Path) gets}
+     * do not wait for a slow storage one by one. Entries that cannot be fetched are skipped.
+     * By default, nothing is fetched.
+     *
+     * @param keys keys of the entries that are going to be requested
+     * @throws ImplerException if <var>keys</var> is {@code null} or the entries cannot be fetched at all
+     */
+    default void prefetch(final Collection<String> keys) throws ImplerException {
+    }
+
+    /**
+     * Acquires the exclusive right to produce the entry for the <var>key</var>.
+     * Callers missing the same key wait for the holder of the lease,
+     * so they find the produced entry instead of producing it again.
+     * By default, producers are not coordinated.
+     *
+     * @param key key of the entry
+     * @return the lease to be closed once the entry is produced and {@link #put(String, Path) put}
+     * @throws ImplerException if an error occurred trying to acquire the lease
+     */
+    default Lease lease(final String key) throws ImplerException {
+        return () -> {
+        };
+    }
+
+    /**
+     * Exclusive right to produce an entry, see {@link #lease(String)}.
+     */
+    @FunctionalInterface
+    interface Lease extends AutoCloseable {
+        /**
+         * Releases the lease.
+         */
+        @Override
+        void close();
+    }
+}
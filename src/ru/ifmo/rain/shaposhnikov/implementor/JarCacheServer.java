@@ -0,0 +1,252 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reference server of the {@link RemoteJarCache} protocol, storing the entries in a local directory.
+ * <ul>
+ *     <li>{@code GET} and {@code HEAD} of <var>cas/&lt;digest&gt;</var> return the <var>.jar</var> file
+ *     with the given SHA-256 digest, {@code PUT} stores it, checking the digest of the contents.</li>
+ *     <li>{@code GET} and {@code HEAD} of <var>ac/&lt;digest&gt;</var> return the digest of the <var>.jar</var> file
+ *     cached for the key with the given digest, {@code PUT} stores it, checking that the file is stored.</li>
+ * </ul>
+ * Missing entries are reported with {@code 404 Not Found}. Files are written to temporary files first
+ * and then moved, so incomplete entries are never served. Nothing is evicted.
+ * <p>
+ * Usage: {@code JarCacheServer directory [port]}. The server listens to the loopback address
+ * and runs until the process is terminated.
+ * <p>
+ * Responses are written as separate header and body segments, so with Nagle's algorithm
+ * every small response waits for the delayed acknowledgement of the client, tens of milliseconds.
+ * Processes embedding the server should be launched with {@code -Dsun.net.httpserver.nodelay=true},
+ * as the property is read once, when the first server of the process is created;
+ * {@link #main(String[])} sets it unless it is given.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class JarCacheServer implements Closeable {
+    /**
+     * Default port of the server.
+     */
+    public static final int DEFAULT_PORT = 8780;
+
+    /**
+     * Maximal size of a stored file, in bytes.
+     */
+    private static final int MAX_SIZE = 64 << 20;
+
+    /**
+     * Directory of the entries.
+     */
+    private final Path root;
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * Threads handling the requests.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Starts the server storing the entries in the <var>root</var> directory.
+     *
+     * @param root    directory of the entries
+     * @param address address to listen to, port {@code 0} for any free port
+     * @param threads number of threads handling the requests
+     * @throws IOException if the directory cannot be created or the server cannot be started
+     */
+    public JarCacheServer(final Path root, final InetSocketAddress address, final int threads) throws IOException {
+        this.root = root;
+        Files.createDirectories(root.resolve("ac"));
+        Files.createDirectories(root.resolve("cas"));
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Returns the base URI of the server, to be given to a {@link RemoteJarCache}.
+     *
+     * @return the URI
+     */
+    public URI getUri() {
+        final InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/");
+    }
+
+    /**
+     * Returns the file of the entry addressed by the request path.
+     *
+     * @param path the request path
+     * @return the file, or {@code null} if the path does not address an entry
+     */
+    private Path getEntry(final String path) {
+        final String[] parts = path.split("/");
+        if (parts.length != 3 || !parts[0].isEmpty() || !RemoteJarCache.isDigest(parts[2])) {
+            return null;
+        }
+        switch (parts[1]) {
+            case "ac":
+                return root.resolve("ac").resolve(parts[2]);
+            case "cas":
+                return root.resolve("cas").resolve(parts[2].substring(0, 2)).resolve(parts[2]);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Handles a request, reporting errors by the status.
+     *
+     * @param exchange the request and the response
+     */
+    private void handle(final HttpExchange exchange) {
+        try {
+            try {
+                final Path entry = getEntry(exchange.getRequestURI().getPath());
+                if (entry == null) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                    return;
+                }
+                switch (exchange.getRequestMethod()) {
+                    case "GET":
+                    case "HEAD":
+                        read(exchange, entry);
+                        break;
+                    case "PUT":
+                        write(exchange, entry);
+                        break;
+                    default:
+                        exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+                }
+            } finally {
+                exchange.close();
+            }
+        } catch (final IOException e) {
+            System.err.println("Error during handling a request: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the entry.
+     *
+     * @param exchange the request and the response
+     * @param entry    file of the entry
+     * @throws IOException if an error occurred trying to read the entry or to send it
+     */
+    private static void read(final HttpExchange exchange, final Path entry) throws IOException {
+        if (!Files.exists(entry)) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            return;
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", Long.toString(Files.size(entry)));
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            return;
+        }
+        final byte[] bytes = Files.readAllBytes(entry);
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Stores the entry, checking that it is valid: the contents of a <var>.jar</var> file match its digest,
+     * and the <var>.jar</var> file an action entry refers to is stored.
+     *
+     * @param exchange the request and the response
+     * @param entry    file of the entry
+     * @throws IOException if an error occurred trying to receive the entry or to write it
+     */
+    private void write(final HttpExchange exchange, final Path entry) throws IOException {
+        final byte[] bytes;
+        try (final InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_SIZE + 1);
+        }
+        if (bytes.length > MAX_SIZE) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, -1);
+            return;
+        }
+        final boolean valid;
+        if (entry.getParent().getFileName().toString().equals("ac")) {
+            final String blob = new String(bytes, StandardCharsets.UTF_8).trim();
+            valid = RemoteJarCache.isDigest(blob) && Files.exists(getEntry("/cas/" + blob));
+        } else {
+            valid = RemoteJarCache.digest(bytes).equals(entry.getFileName().toString());
+        }
+        if (!valid) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, -1);
+            return;
+        }
+        Files.createDirectories(entry.getParent());
+        final Path temp = Files.createTempFile(entry.getParent(), "entry", ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+    }
+
+    /**
+     * Stops the server, letting the running requests complete for a second.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts the server on the loopback address, with Nagle's algorithm disabled unless configured otherwise.
+     *
+     * @param args command line arguments {@code directory [port]}
+     */
+    public static void main(final String[] args) {
+        if (args == null || args.length < 1 || args.length > 2 || args[0] == null) {
+            System.err.println("Expected directory [port]");
+            return;
+        }
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        try {
+            final int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            final JarCacheServer server = new JarCacheServer(Paths.get(args[0]),
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                    Runtime.getRuntime().availableProcessors());
+            System.out.println("Serving " + args[0] + " at " + server.getUri());
+        } catch (final NumberFormatException e) {
+            System.err.println("Invalid port: " + e.getMessage());
+        } catch (final InvalidPathException e) {
+            System.err.println("Invalid path: " + e.getMessage());
+        } catch (final IOException e) {
+            System.err.println("Error during starting a server: " + e.getMessage());
+        }
+    }
+}
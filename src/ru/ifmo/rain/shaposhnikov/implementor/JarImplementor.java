@@ -4,18 +4,12 @@ import info.kgeorgiy.java.advanced.implementor.Impler;
 import info.kgeorgiy.java.advanced.implementor.ImplerException;
 import info.kgeorgiy.java.advanced.implementor.JarImpler;
 
-import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
-import java.io.File;
 import java.io.IOException;
-import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
 import java.util.Objects;
-import java.util.jar.Attributes;
 import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
 
 import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
 
@@ -34,30 +28,15 @@ public class JarImplementor implements JarImpler {
 
     /**
      * Compiles implementation class and stores <var>.class</var> file in given <var>path</var>.
+     * The compilation is run in a warm {@link CompilerContext} for the class path of the <var>token</var>.
      *
      * @param token the {@link Class} object of a parent class or an interface that is being implemented
      * @param path  where to save <var>.class</var> files
      * @throws ImplerException if the java compiler wasn't found or an error occurred trying to compile classes
      */
     private void compileClass(final Class<?> token, final Path path) throws ImplerException {
-        final JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
-        final String codeSource;
-        try {
-            codeSource = Path.of(token.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
-        } catch (final URISyntaxException e) {
-            throw new ImplerException("Error during getting source code uri: " + e.getMessage(), e);
-        }
-        final String[] args = new String[]{
-                "-cp",
-                path + File.pathSeparator + codeSource,
-                getPath(token, path, ".java").toString()
-        };
-
-        if (javaCompiler == null) {
-            throw new ImplerException("No java compiler found");
-        }
-        if (javaCompiler.run(null, null, null, args) != 0) {
-            throw new ImplerException("Error during compiling classes");
+        try (final CompilerContext context = CompilerContext.acquire(getClassPath(token))) {
+            context.compile(List.of(getPath(token, path, ".java")), path);
         }
     }
 
@@ -71,12 +50,9 @@ public class JarImplementor implements JarImpler {
      * @throws ImplerException if an error occurred trying to write in <var>.jar</var> file or to copy files
      */
     private void createJarFile(final Class<?> token, final Path tmpDir, final Path jarFile) throws ImplerException {
-        final Manifest manifest = new Manifest();
-        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
-
-        try (final JarOutputStream writer = new JarOutputStream(Files.newOutputStream(jarFile), manifest)) {
+        try (final JarOutputStream writer = openJarFile(Files.newOutputStream(jarFile))) {
             final String className = getPackageDir(token, "/") + String.format("/%s.class", getImplSimpleName(token));
-            writer.putNextEntry(new ZipEntry(className));
+            writer.putNextEntry(newJarEntry(className));
             Files.copy(tmpDir.resolve(className), writer);
         } catch (final IOException e) {
             throw new ImplerException("Error during a jar file writing: " + e.getMessage(), e);
@@ -160,25 +136,30 @@ public class JarImplementor implements JarImpler {
      *         The second argument is the path where you need to put the <var>.jar</var>.
      *     </li>
      * </ul>
+     * Both modes may be preceded by the <var>-cp</var> key and a class path to load the class from
+     * by an isolated class loader, instead of the class path of the running application.
+     * The class is loaded without initialization, so none of its code is run.
      *
-     * @param args command line arguments {@code [-jar] class path}
+     * @param args command line arguments {@code [-cp classpath] [-jar] class path}
      * @see #implement(Class, Path)
      * @see #implementJar(Class, Path)
      */
     public static void main(final String[] args) {
         Objects.requireNonNull(args, "Expected non null arguments");
-        if (args.length != 2 && args.length != 3) {
-            System.err.println("Expected 2 arguments for class implementing or 3 arguments for jar implementing");
-            return;
-        }
         for (int i = 0; i < args.length; i++) {
             Objects.requireNonNull(args[i], i + " argument is null");
         }
+        final int first = args.length > 1 && args[0].equals("-cp") ? 2 : 0;
+        if (args.length - first != 2 && args.length - first != 3) {
+            System.err.println("Expected 2 arguments for class implementing or 3 arguments for jar implementing");
+            return;
+        }
         try {
-            if (args.length == 2) {
-                new JarImplementor().implement(Class.forName(args[0]), Paths.get(args[1]));
-            } else if (args[0].equals("-jar")) {
-                new JarImplementor().implementJar(Class.forName(args[1]), Paths.get(args[2]));
+            final List<Path> classPath = first == 0 ? List.of() : parseClassPath(args[1]);
+            if (args.length - first == 2) {
+                new JarImplementor().implement(loadClass(args[first], classPath), Paths.get(args[first + 1]));
+            } else if (args[first].equals("-jar")) {
+                new JarImplementor().implementJar(loadClass(args[first + 1], classPath), Paths.get(args[first + 2]));
             } else {
                 System.err.println("Use '-jar' as first argument for jar implementing");
             }
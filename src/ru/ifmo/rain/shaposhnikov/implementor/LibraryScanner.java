@@ -0,0 +1,591 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Implements every abstract class and interface of libraries in a single process.
+ * <p>
+ * A source is a <var>.jar</var> file, a directory of <var>.class</var> files or a package prefix.
+ * A prefix stands for the package and its subpackages in the class path and in the exported packages
+ * of the modules of the runtime image. The <var>.class</var> files of the sources are read and checked in parallel,
+ * and the abstract classes and interfaces that can be implemented by the rules of
+ * {@link Implementor#checkToken(Class)} are implemented together: the sources are written
+ * from the <var>.class</var> files by {@link Implementor#implementClassFiles(List, List, Path)},
+ * the <var>.jar</var> files by the {@link StreamingImplementor} pipeline.
+ * The <var>.class</var> files are only parsed during the scan, and the classes are not loaded.
+ * <p>
+ * <var>.jar</var> files are memory-mapped, their entries are found by the central directory
+ * and inflated straight from the mapping, so nothing but the <var>.class</var> entries is read.
+ * <var>.jar</var> files that cannot be mapped, such as the ZIP64 ones, are read through {@link JarFile}.
+ * Versioned entries of multi-release <var>.jar</var> files are ignored.
+ * Malformed <var>.class</var> files and entries that cannot be read are reported and skipped.
+ * <p>
+ * Usage: {@code LibraryScanner [-cp classpath] [-jar] source [source...] path}.
+ * The <var>.jar</var> files and directories given as sources are appended to the class path.
+ *
+ * @author Boris Shaposhnikov
+ */
+public final class LibraryScanner {
+    /**
+     * Signatures of the end of central directory record, a central directory header and a local file header.
+     */
+    private static final int END_SIGNATURE = 0x06054B50, CENTRAL_SIGNATURE = 0x02014B50, LOCAL_SIGNATURE = 0x04034B50;
+
+    /**
+     * Sizes of the end of central directory record, a central directory header and a local file header,
+     * without the variable parts.
+     */
+    private static final int END_SIZE = 22, CENTRAL_SIZE = 46, LOCAL_SIZE = 30;
+
+    /**
+     * Maximal length of the comment of a <var>.zip</var> file.
+     */
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    /**
+     * Compression methods of the <var>.zip</var> entries.
+     */
+    private static final int STORED = 0, DEFLATED = 8;
+
+    /**
+     * Suffix of the <var>.class</var> files.
+     */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * Utility class.
+     */
+    private LibraryScanner() {
+    }
+
+    /**
+     * Entry of a <var>.zip</var> file, as described by the central directory.
+     */
+    private static final class Entry {
+        /**
+         * Name of the entry.
+         */
+        final String name;
+
+        /**
+         * Compression method.
+         */
+        final int method;
+
+        /**
+         * Size of the compressed data.
+         */
+        final int compressedSize;
+
+        /**
+         * Size of the contents.
+         */
+        final int size;
+
+        /**
+         * Offset of the local file header.
+         */
+        final int offset;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param name           name of the entry
+         * @param method         compression method
+         * @param compressedSize size of the compressed data
+         * @param size           size of the contents
+         * @param offset         offset of the local file header
+         */
+        Entry(final String name, final int method, final int compressedSize, final int size, final int offset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the name of the entry.
+         *
+         * @return the name
+         */
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Returns the class path the classes of the sources are resolved and loaded from:
+     * the given class path followed by the sources that are <var>.jar</var> files or directories.
+     *
+     * @param sources   the sources
+     * @param classPath entries of the class path
+     * @return entries of the class path, empty for the class path of the running application
+     * @see Util#getClassLoader(List)
+     */
+    static List<Path> getClassPath(final Collection<String> sources, final List<Path> classPath) {
+        final List<Path> entries = new ArrayList<>(classPath);
+        for (final String source : sources) {
+            final Path path = toPath(source);
+            if (path != null && !entries.contains(path)) {
+                entries.add(path);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the path of a source that is an existing <var>.jar</var> file or directory.
+     *
+     * @param source the source
+     * @return the path, or {@code null} if the source is a package prefix
+     */
+    private static Path toPath(final String source) {
+        try {
+            final Path path = Paths.get(source);
+            return Files.exists(path) ? path : null;
+        } catch (final InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the abstract classes and interfaces of the sources that can be implemented.
+     *
+     * @param sources   <var>.jar</var> files, directories or package prefixes
+     * @param classPath class path to find the package prefixes in, see {@link #getClassPath(Collection, List)}
+     * @return binary names of the classes, sorted
+     * @throws ImplerException if a source contains no classes or cannot be read
+     */
+    public static List<String> scan(final Collection<String> sources, final List<Path> classPath)
+            throws ImplerException {
+        final List<Path> effective = getClassPath(sources, classPath);
+        final List<Path> entries = effective.isEmpty()
+                ? Util.parseClassPath(System.getProperty("java.class.path", ""))
+                : effective;
+        final Set<String> names = ConcurrentHashMap.newKeySet();
+        try {
+            for (final String source : sources) {
+                final AtomicInteger found = new AtomicInteger();
+                final Path path = toPath(source);
+                if (path != null) {
+                    scanEntry(path, "", names, found);
+                } else {
+                    final String prefix = source.replace('.', '/') + '/';
+                    for (final Path entry : entries) {
+                        scanEntry(entry, prefix, names, found);
+                    }
+                    scanRuntimeImage(source, effective.isEmpty(), names, found);
+                }
+                if (found.get() == 0) {
+                    throw new ImplerException("No classes found in " + source);
+                }
+            }
+        } catch (final IOException | UncheckedIOException e) {
+            throw new ImplerException("Error during scanning: " + e.getMessage(), e);
+        }
+        return List.copyOf(new TreeSet<>(names));
+    }
+
+    /**
+     * Scans the classes of a class path entry under the <var>prefix</var>.
+     *
+     * @param entry  the <var>.jar</var> file or the directory
+     * @param prefix directory of the package prefix, ending with a slash, or an empty string for all the classes
+     * @param names  where to add the names of the implementable classes to
+     * @param found  counter of the <var>.class</var> files found
+     * @throws IOException if an error occurred trying to read the entry
+     */
+    private static void scanEntry(final Path entry, final String prefix, final Set<String> names,
+                                  final AtomicInteger found) throws IOException {
+        if (Files.isDirectory(entry)) {
+            final Path root = entry.resolve(prefix);
+            if (Files.isDirectory(root)) {
+                final List<Path> files;
+                try (final Stream<Path> walk = Files.walk(root)) {
+                    files = walk.filter(file -> isClassFile(entry.relativize(file).toString()))
+                            .collect(Collectors.toList());
+                }
+                check(files, LibraryScanner::readFile, names, found);
+            }
+        } else if (Files.isRegularFile(entry)) {
+            final ByteBuffer zip;
+            final List<Entry> entries;
+            try (final FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+                zip = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+                entries = readCentralDirectory(zip);
+            } catch (final IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                scanJar(entry, prefix, names, found);
+                return;
+            }
+            entries.removeIf(zipEntry -> !zipEntry.name.startsWith(prefix) || !isClassFile(zipEntry.name));
+            check(entries, zipEntry -> readEntry(zip, zipEntry), names, found);
+        }
+    }
+
+    /**
+     * Scans the classes of a <var>.jar</var> file that cannot be mapped under the <var>prefix</var>.
+     *
+     * @param jar    the <var>.jar</var> file
+     * @param prefix directory of the package prefix, ending with a slash, or an empty string for all the classes
+     * @param names  where to add the names of the implementable classes to
+     * @param found  counter of the <var>.class</var> files found
+     * @throws IOException if an error occurred trying to read the file
+     */
+    private static void scanJar(final Path jar, final String prefix, final Set<String> names,
+                                final AtomicInteger found) throws IOException {
+        try (final JarFile file = new JarFile(jar.toFile())) {
+            final List<JarEntry> entries = file.stream()
+                    .filter(entry -> entry.getName().startsWith(prefix) && isClassFile(entry.getName()))
+                    .collect(Collectors.toList());
+            check(entries, entry -> {
+                try (final InputStream in = file.getInputStream(entry)) {
+                    return in.readAllBytes();
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(new IOException(
+                            "Error during reading an entry " + entry.getName() + ": " + e.getMessage(), e));
+                }
+            }, names, found);
+        }
+    }
+
+    /**
+     * Scans the classes of the exported packages of the modules of the runtime image
+     * that are the package of the <var>prefix</var> or its subpackages.
+     *
+     * @param prefix             the package prefix
+     * @param applicationModules whether the modules defined to the application class loader are scanned too
+     * @param names              where to add the names of the implementable classes to
+     * @param found              counter of the <var>.class</var> files found
+     * @throws IOException if an error occurred trying to read the runtime image
+     */
+    private static void scanRuntimeImage(final String prefix, final boolean applicationModules,
+                                         final Set<String> names, final AtomicInteger found) throws IOException {
+        final FileSystem runtimeImage = FileSystems.getFileSystem(URI.create("jrt:/"));
+        final List<Path> files = new ArrayList<>();
+        for (final Module module : ModuleLayer.boot().modules()) {
+            final ClassLoader loader = module.getClassLoader();
+            if (!applicationModules && loader != null && loader != ClassLoader.getPlatformClassLoader()) {
+                continue;
+            }
+            for (final String packageName : module.getPackages()) {
+                if ((packageName.equals(prefix) || packageName.startsWith(prefix + "."))
+                        && module.isExported(packageName)) {
+                    final Path directory = runtimeImage.getPath("/modules", module.getName(),
+                            packageName.replace('.', '/'));
+                    try (final Stream<Path> list = Files.list(directory)) {
+                        list.filter(file -> isClassFile(file.getFileName().toString())).forEach(files::add);
+                    }
+                }
+            }
+        }
+        check(files, LibraryScanner::readFile, names, found);
+    }
+
+    /**
+     * Tells whether the entry is a <var>.class</var> file of a class or an interface:
+     * neither a module or package descriptor nor a versioned or other entry of <var>META-INF</var>.
+     *
+     * @param name name of the entry, with slashes as separators
+     * @return {@code true} for the <var>.class</var> files of classes, {@code false} otherwise
+     */
+    private static boolean isClassFile(final String name) {
+        return name.endsWith(CLASS_SUFFIX)
+                && !name.endsWith("module-info" + CLASS_SUFFIX)
+                && !name.endsWith("package-info" + CLASS_SUFFIX)
+                && !name.startsWith("META-INF");
+    }
+
+    /**
+     * Reads and checks the <var>.class</var> files in parallel.
+     * Files that cannot be read or parsed are reported and skipped.
+     *
+     * @param items  the <var>.class</var> files
+     * @param reader reads the contents of a file, throwing {@link UncheckedIOException} on errors
+     * @param names  where to add the names of the implementable classes to
+     * @param found  counter of the <var>.class</var> files found
+     * @param <T>    type of the files
+     */
+    private static <T> void check(final List<T> items, final Function<T, byte[]> reader,
+                                  final Set<String> names, final AtomicInteger found) {
+        found.addAndGet(items.size());
+        items.parallelStream()
+                .map(item -> {
+                    try {
+                        return ClassFileResolver.getImplementableName(reader.apply(item));
+                    } catch (final UncheckedIOException e) {
+                        System.err.println("Skipped a class file: " + e.getCause().getMessage());
+                        return null;
+                    } catch (final ImplerException e) {
+                        System.err.println("Skipped a class file: " + item + ": " + e.getMessage());
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .forEach(names::add);
+    }
+
+    /**
+     * Reads a file.
+     *
+     * @param file the file
+     * @return contents of the file
+     * @throws UncheckedIOException if an error occurred trying to read the file
+     */
+    private static byte[] readFile(final Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(new IOException("Error during reading " + file + ": " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Reads the central directory of a mapped <var>.zip</var> file.
+     *
+     * @param zip the mapped file, in little-endian order
+     * @return the entries, in the order of the directory
+     * @throws IOException if the file is not a <var>.zip</var> file, is a ZIP64 one or has ZIP64 entries
+     */
+    private static List<Entry> readCentralDirectory(final ByteBuffer zip) throws IOException {
+        int end = -1;
+        for (int i = zip.limit() - END_SIZE; i >= Math.max(0, zip.limit() - END_SIZE - MAX_COMMENT); i--) {
+            if (zip.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("Not a zip file");
+        }
+        final int count = zip.getShort(end + 10) & 0xFFFF;
+        final long directory = zip.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || directory == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 files are not supported");
+        }
+        final List<Entry> entries = new ArrayList<>(count);
+        int position = (int) directory;
+        for (int i = 0; i < count; i++) {
+            if (zip.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new IOException("Corrupted central directory");
+            }
+            final int nameLength = zip.getShort(position + 28) & 0xFFFF;
+            final byte[] name = new byte[nameLength];
+            zip.get(position + CENTRAL_SIZE, name);
+            final int compressedSize = zip.getInt(position + 20);
+            final int size = zip.getInt(position + 24);
+            final int offset = zip.getInt(position + 42);
+            if (compressedSize < 0 || size < 0 || offset < 0) {
+                // 0xFFFFFFFF stands for a size or an offset in the ZIP64 extra field.
+                throw new IOException("ZIP64 entries are not supported");
+            }
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8),
+                    zip.getShort(position + 10) & 0xFFFF, compressedSize, size, offset));
+            position += CENTRAL_SIZE + nameLength
+                    + (zip.getShort(position + 30) & 0xFFFF)
+                    + (zip.getShort(position + 32) & 0xFFFF);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the contents of an entry from a mapped <var>.zip</var> file, inflating them if needed.
+     *
+     * @param zip   the mapped file, in little-endian order
+     * @param entry the entry
+     * @return contents of the entry
+     * @throws UncheckedIOException if the entry is corrupted or compressed by an unsupported method
+     */
+    private static byte[] readEntry(final ByteBuffer zip, final Entry entry) {
+        try {
+            if (zip.getInt(entry.offset) != LOCAL_SIGNATURE) {
+                throw new IOException("Corrupted entry");
+            }
+            final int data = entry.offset + LOCAL_SIZE
+                    + (zip.getShort(entry.offset + 26) & 0xFFFF)
+                    + (zip.getShort(entry.offset + 28) & 0xFFFF);
+            final ByteBuffer input = zip.slice(data, entry.compressedSize);
+            final byte[] bytes = new byte[entry.size];
+            if (entry.method == STORED) {
+                input.get(bytes);
+                return bytes;
+            }
+            if (entry.method != DEFLATED) {
+                throw new IOException("Unsupported compression method " + entry.method);
+            }
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(input);
+                int length = 0;
+                while (length < bytes.length) {
+                    final int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                if (length != bytes.length) {
+                    throw new IOException("Truncated entry");
+                }
+                return bytes;
+            } finally {
+                inflater.end();
+            }
+        } catch (final IOException | DataFormatException | IndexOutOfBoundsException e) {
+            throw new UncheckedIOException(new IOException(
+                    "Error during reading an entry " + entry.name + ": " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Writes the sources of the implementations of the abstract classes and interfaces of the sources.
+     *
+     * @param sources   <var>.jar</var> files, directories or package prefixes
+     * @param classPath class path to resolve the classes from, see {@link #getClassPath(Collection, List)}
+     * @param root      the path to the directory where the source files should be
+     * @return errors by the names of the classes that are not implemented
+     * @throws ImplerException if a source contains no classes or cannot be read
+     */
+    public static Map<String, ImplerException> implementAll(final Collection<String> sources,
+                                                            final List<Path> classPath, final Path root)
+            throws ImplerException {
+        return Implementor.implementClassFiles(scan(sources, classPath), getClassPath(sources, classPath), root);
+    }
+
+    /**
+     * Writes the <var>.jar</var> files of the implementations of the abstract classes and interfaces of the sources,
+     * one per class, by a {@link StreamingImplementor}. The classes are loaded without initialization
+     * as the pipeline takes them, so loading overlaps with the implementation of the previous classes.
+     *
+     * @param sources   <var>.jar</var> files, directories or package prefixes
+     * @param classPath class path to load the classes from, see {@link #getClassPath(Collection, List)}
+     * @param root      the directory to put the <var>.jar</var> files to
+     * @return errors by the names of the classes that are not implemented, in the order of the names
+     * @throws ImplerException if a source contains no classes or cannot be read, or the thread is interrupted
+     * @see Util#loadClass(String, List)
+     */
+    public static Map<String, ImplerException> implementJarAll(final Collection<String> sources,
+                                                               final List<Path> classPath, final Path root)
+            throws ImplerException {
+        final List<Path> effective = getClassPath(sources, classPath);
+        final List<String> names = scan(sources, classPath);
+        final Map<String, ImplerException> errors = new ConcurrentHashMap<>();
+        final Iterator<String> remaining = names.iterator();
+        final Iterator<Class<?>> tokens = new Iterator<>() {
+            /**
+             * Next loaded class, {@code null} if not loaded yet.
+             */
+            private Class<?> next;
+
+            /**
+             * {@inheritDoc}
+             * Loads the next class that can be loaded, reporting the ones that cannot.
+             */
+            @Override
+            public boolean hasNext() {
+                while (next == null && remaining.hasNext()) {
+                    final String name = remaining.next();
+                    try {
+                        next = Util.loadClass(name, effective);
+                    } catch (final ClassNotFoundException e) {
+                        errors.put(name, new ImplerException("Error during loading a class: " + e.getMessage(), e));
+                    }
+                }
+                return next != null;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Class<?> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Class<?> token = next;
+                next = null;
+                return token;
+            }
+        };
+        new StreamingImplementor(new TempDirectoryCompiler()).implementJarAll(tokens, root, (token, jarFile) -> {
+        }, (token, e) -> errors.put(token.getName(), e));
+        final Map<String, ImplerException> failed = new LinkedHashMap<>();
+        for (final String name : names) {
+            if (errors.containsKey(name)) {
+                failed.put(name, errors.get(name));
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Implements the abstract classes and interfaces of the sources, reporting the failures.
+     *
+     * @param args command line arguments {@code [-cp classpath] [-jar] source [source...] path}
+     * @see #implementAll(Collection, List, Path)
+     * @see #implementJarAll(Collection, List, Path)
+     */
+    public static void main(final String[] args) {
+        if (args == null || Arrays.asList(args).contains(null)) {
+            System.err.println("Expected non null arguments");
+            return;
+        }
+        final int options = args.length > 1 && args[0].equals("-cp") ? 2 : 0;
+        final boolean jar = args.length > options && args[options].equals("-jar");
+        final int first = jar ? options + 1 : options;
+        if (args.length - first < 2) {
+            System.err.println("Expected [-cp classpath] [-jar] source [source...] path");
+            return;
+        }
+        try {
+            final List<Path> classPath = options == 0 ? List.of() : Util.parseClassPath(args[1]);
+            final List<String> sources = Arrays.asList(args).subList(first, args.length - 1);
+            final Path root = Paths.get(args[args.length - 1]);
+            final Map<String, ImplerException> failed = jar
+                    ? implementJarAll(sources, classPath, root)
+                    : implementAll(sources, classPath, root);
+            failed.forEach((name, e) -> System.err.println(String.format("%s: %s", name, e.getMessage())));
+        } catch (final ImplerException e) {
+            System.err.println(e.getMessage());
+        } catch (final InvalidPathException e) {
+            System.err.println("Invalid path: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,800 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * {@link JarCache} stored in a local directory.
+ * <p>
+ * The <var>.jar</var> files are stored once per content in the <var>blobs</var> subdirectory,
+ * named by the SHA-256 digests of their contents. Keys are mapped to blobs by the <var>index</var> file,
+ * a hash table with linear probing that is memory-mapped, so a lookup reads a few slots of the mapping only.
+ * A slot holds the SHA-256 digest of the key, the digest of the blob, the size of the blob
+ * and the logical time of the last access.
+ * <p>
+ * The total size of the entries is bounded: once it is exceeded, or the index is three quarters full,
+ * the least recently used entries are evicted, and the blobs no entry refers to are deleted.
+ * <p>
+ * Threads of a process using the same cache directory are synchronized on a monitor shared by the directory.
+ * A cache is used by one process at a time, unless it is opened {@link SharedJarCache shared}:
+ * then the index is also guarded by a lock on the index file, and every process sees the updates of the others
+ * through the memory mapping. Blobs are published by atomic rename, and slots are published by writing
+ * their blob sizes last, so a slot is never seen with the key of one entry and the blob of another.
+ * Updates that rewrite several slots, as removals shifting the slots after the removed one back, are not atomic:
+ * the index is marked dirty for their duration, and an index left dirty by a crashed process is rebuilt
+ * from its non-empty slots the next time it is locked. A crash may thus lose entries, but never makes
+ * a key refer to the wrong blob.
+ * <p>
+ * Blobs are copied out of the cache without holding the index. A blob deleted by an eviction meanwhile
+ * stays readable by the copy on systems allowing to delete open files, and is reported as a miss otherwise.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class LocalJarCache implements JarCache, Closeable {
+    /**
+     * Default maximal total size of the entries, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    /**
+     * Magic number of the index file.
+     */
+    private static final int MAGIC = 0x4A434958;
+
+    /**
+     * Version of the index file format.
+     */
+    private static final int FORMAT = 2;
+
+    /**
+     * Number of slots of the index, a power of two.
+     */
+    private static final int CAPACITY = 1 << 14;
+
+    /**
+     * Size of a SHA-256 digest, in bytes.
+     */
+    private static final int DIGEST_SIZE = 32;
+
+    /**
+     * Offsets of the header fields: magic number, format, capacity, number of entries,
+     * logical time, total size of the entries and the flag of an update in progress.
+     */
+    private static final int MAGIC_OFFSET = 0, FORMAT_OFFSET = 4, CAPACITY_OFFSET = 8, SIZE_OFFSET = 12,
+            CLOCK_OFFSET = 16, BYTES_OFFSET = 24, DIRTY_OFFSET = 32, HEADER_SIZE = 40;
+
+    /**
+     * Offsets of the slot fields: key digest, blob digest, blob size and time of the last access.
+     * A slot is empty if its blob size is zero.
+     */
+    private static final int KEY_OFFSET = 0, BLOB_OFFSET = DIGEST_SIZE, LENGTH_OFFSET = 2 * DIGEST_SIZE,
+            ACCESS_OFFSET = 2 * DIGEST_SIZE + 8, SLOT_SIZE = 2 * DIGEST_SIZE + 16;
+
+    /**
+     * Maximal pause between attempts to lock a file, in milliseconds.
+     */
+    private static final long MAX_LOCK_PAUSE = 16;
+
+    /**
+     * Monitors by real paths of the cache directories.
+     */
+    private static final ConcurrentMap<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    /**
+     * Directory of the blobs.
+     */
+    private final Path blobs;
+
+    /**
+     * Maximal total size of the entries, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * Channel of the index file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Memory mapping of the index file.
+     */
+    private final MappedByteBuffer index;
+
+    /**
+     * Monitor guarding the index in this process.
+     */
+    private final Object monitor;
+
+    /**
+     * Whether the index is also guarded by a lock on the index file.
+     */
+    private final boolean shared;
+
+    /**
+     * Opens the cache in the <var>root</var> directory, creating it if needed.
+     *
+     * @param root     directory of the cache
+     * @param maxBytes maximal total size of the entries, in bytes
+     * @throws ImplerException if the cache directory or the index cannot be opened
+     */
+    public LocalJarCache(final Path root, final long maxBytes) throws ImplerException {
+        this(root, maxBytes, false);
+    }
+
+    /**
+     * Opens the cache in the <var>root</var> directory, creating it if needed.
+     *
+     * @param root     directory of the cache
+     * @param maxBytes maximal total size of the entries, in bytes
+     * @param shared   whether the index is to be guarded by a lock on the index file
+     * @throws ImplerException if the cache directory or the index cannot be opened
+     */
+    protected LocalJarCache(final Path root, final long maxBytes, final boolean shared) throws ImplerException {
+        nullAssertion(root);
+        if (maxBytes <= 0) {
+            throw new ImplerException("Positive cache size expected");
+        }
+        this.blobs = root.resolve("blobs");
+        this.maxBytes = maxBytes;
+        this.shared = shared;
+        try {
+            Files.createDirectories(blobs);
+            this.monitor = MONITORS.computeIfAbsent(root.toRealPath(), path -> new Object());
+            this.channel = FileChannel.open(root.resolve("index"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (final IOException e) {
+            throw new ImplerException("Error during opening a cache: " + e.getMessage(), e);
+        }
+        try {
+            final long length = HEADER_SIZE + (long) CAPACITY * SLOT_SIZE;
+            synchronized (monitor) {
+                final FileLock lock = lockIndex();
+                try {
+                    final boolean valid = channel.size() == length;
+                    this.index = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                    if (!valid || index.getInt(MAGIC_OFFSET) != MAGIC || index.getInt(FORMAT_OFFSET) != FORMAT
+                            || index.getInt(CAPACITY_OFFSET) != CAPACITY) {
+                        clear();
+                    }
+                } finally {
+                    unlock(lock);
+                }
+            }
+        } catch (final IOException e) {
+            closeChannel();
+            throw new ImplerException("Error during mapping a cache index: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Locks the index file, if the cache is shared.
+     * The first byte of the file is locked, which does not prevent the other processes from mapping it.
+     *
+     * @return the lock, or {@code null} if the cache is not shared
+     * @throws IOException if an error occurred trying to lock the file
+     */
+    private FileLock lockIndex() throws IOException {
+        return shared ? lock(channel, 0) : null;
+    }
+
+    /**
+     * Locks a byte of the file, waiting for the other processes holding it.
+     * The lock is polled with {@link FileChannel#tryLock(long, long, boolean)} with growing pauses
+     * rather than waited for with {@link FileChannel#lock(long, long, boolean)}:
+     * file locks are held by whole processes, so the deadlock detection of the operating system
+     * reports false deadlocks when several threads of a process wait for the locks of different bytes.
+     *
+     * @param channel  channel of the file
+     * @param position position of the byte
+     * @return the lock
+     * @throws IOException if an error occurred trying to lock the file or the thread was interrupted
+     */
+    static FileLock lock(final FileChannel channel, final long position) throws IOException {
+        for (long pause = 1; ; pause = Math.min(pause * 2, MAX_LOCK_PAUSE)) {
+            final FileLock lock = channel.tryLock(position, 1, false);
+            if (lock != null) {
+                return lock;
+            }
+            try {
+                Thread.sleep(pause);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a file lock");
+            }
+        }
+    }
+
+    /**
+     * Releases the lock of the index file, reporting errors.
+     *
+     * @param lock the lock, or {@code null} if the cache is not shared
+     */
+    private static void unlock(final FileLock lock) {
+        if (lock == null) {
+            return;
+        }
+        try {
+            lock.release();
+        } catch (final IOException e) {
+            System.err.println("Error during unlocking a cache index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Action on the index.
+     *
+     * @param <T> type of the result
+     */
+    @FunctionalInterface
+    private interface IndexAction<T> {
+        /**
+         * Runs the action.
+         *
+         * @return the result
+         * @throws ImplerException if the action failed
+         */
+        T run() throws ImplerException;
+    }
+
+    /**
+     * Runs the <var>action</var> holding the index: the monitor of the cache directory
+     * and, if the cache is shared, the lock of the index file.
+     * An index left dirty by an interrupted update is rebuilt first.
+     *
+     * @param action the action
+     * @param <T>    type of the result
+     * @return the result of the action
+     * @throws ImplerException if the index cannot be locked or the action failed
+     */
+    private <T> T withIndex(final IndexAction<T> action) throws ImplerException {
+        synchronized (monitor) {
+            final FileLock lock;
+            try {
+                lock = lockIndex();
+            } catch (final IOException e) {
+                throw new ImplerException("Error during locking a cache index: " + e.getMessage(), e);
+            }
+            try {
+                if (index.getInt(DIRTY_OFFSET) != 0) {
+                    rebuild();
+                }
+                return action.run();
+            } finally {
+                unlock(lock);
+            }
+        }
+    }
+
+    /**
+     * Opens the cache in the <var>root</var> directory with the {@link #DEFAULT_MAX_BYTES default size}.
+     *
+     * @param root directory of the cache
+     * @throws ImplerException if the cache directory or the index cannot be opened
+     */
+    public LocalJarCache(final Path root) throws ImplerException {
+        this(root, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Resets the index to an empty one. Blobs are left to be overwritten.
+     */
+    private void clear() {
+        for (int i = 0; i < index.capacity(); i++) {
+            index.put(i, (byte) 0);
+        }
+        index.putInt(MAGIC_OFFSET, MAGIC);
+        index.putInt(FORMAT_OFFSET, FORMAT);
+        index.putInt(CAPACITY_OFFSET, CAPACITY);
+    }
+
+    /**
+     * Returns the SHA-256 digest of the bytes.
+     *
+     * @param bytes the bytes
+     * @return the digest
+     */
+    static byte[] sha256(final byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is supported by every platform", e);
+        }
+    }
+
+    /**
+     * Returns the offset of the slot in the index.
+     *
+     * @param slot number of the slot
+     * @return the offset
+     */
+    private static int offset(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Returns the first slot of the probe sequence of the key digest.
+     * Digests are uniformly distributed, so their first bytes are used as is.
+     *
+     * @param key the key digest
+     * @return the slot
+     */
+    private static int home(final byte[] key) {
+        return ((key[0] & 0xff) << 24 | (key[1] & 0xff) << 16 | (key[2] & 0xff) << 8 | key[3] & 0xff)
+                & (CAPACITY - 1);
+    }
+
+    /**
+     * Reads a digest stored in the slot.
+     *
+     * @param slot   number of the slot
+     * @param offset offset of the digest in the slot
+     * @return the digest
+     */
+    private byte[] getDigest(final int slot, final int offset) {
+        final byte[] digest = new byte[DIGEST_SIZE];
+        index.get(offset(slot) + offset, digest);
+        return digest;
+    }
+
+    /**
+     * Tells whether the slot holds the digest.
+     *
+     * @param slot   number of the slot
+     * @param offset offset of the digest in the slot
+     * @param digest the digest
+     * @return {@code true} if the digests are equal, {@code false} otherwise
+     */
+    private boolean matches(final int slot, final int offset, final byte[] digest) {
+        final int start = offset(slot) + offset;
+        for (int i = 0; i < DIGEST_SIZE; i++) {
+            if (index.get(start + i) != digest[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether the slot is empty.
+     *
+     * @param slot number of the slot
+     * @return {@code true} if the slot is empty, {@code false} otherwise
+     */
+    private boolean isEmpty(final int slot) {
+        return index.getLong(offset(slot) + LENGTH_OFFSET) == 0;
+    }
+
+    /**
+     * Finds the slot of the key digest.
+     *
+     * @param key the key digest
+     * @return the slot holding the key, or {@code -(slot + 1)} of the empty slot the key is to be put to
+     */
+    private int find(final byte[] key) {
+        for (int slot = home(key); ; slot = (slot + 1) & (CAPACITY - 1)) {
+            if (isEmpty(slot)) {
+                return -(slot + 1);
+            }
+            if (matches(slot, KEY_OFFSET, key)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Returns the next logical time and stores it in the header.
+     *
+     * @return the logical time
+     */
+    private long tick() {
+        final long clock = index.getLong(CLOCK_OFFSET) + 1;
+        index.putLong(CLOCK_OFFSET, clock);
+        return clock;
+    }
+
+    /**
+     * Returns the path of the blob.
+     *
+     * @param blob digest of the blob contents
+     * @return the path of the blob
+     */
+    private Path getBlobPath(final byte[] blob) {
+        final String name = HexFormat.of().formatHex(blob);
+        return blobs.resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    @Override
+    public boolean get(final String key, final Path target) throws ImplerException {
+        nullAssertion(key, target);
+        final byte[] keyDigest = sha256(key.getBytes(StandardCharsets.UTF_8));
+        createDirectories(target);
+        final byte[] blob = withIndex(() -> access(keyDigest));
+        if (blob == null) {
+            return false;
+        }
+        try {
+            try (final FileChannel from = FileChannel.open(getBlobPath(blob), StandardOpenOption.READ);
+                 final FileChannel to = FileChannel.open(target, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final long size = from.size();
+                for (long position = 0; position < size; ) {
+                    position += from.transferTo(position, size - position, to);
+                }
+            }
+        } catch (final NoSuchFileException e) {
+            withIndex(() -> {
+                removeMissing(keyDigest, blob);
+                return null;
+            });
+            return false;
+        } catch (final IOException e) {
+            throw new ImplerException("Error during reading a cached jar file: " + e.getMessage(), e);
+        }
+        return true;
+    }
+
+    /**
+     * Marks the entry of the key digest as used now. The caller holds the index.
+     *
+     * @param keyDigest digest of the key
+     * @return digest of the blob of the entry, or {@code null} if there is none
+     */
+    private byte[] access(final byte[] keyDigest) {
+        final int slot = find(keyDigest);
+        if (slot < 0) {
+            return null;
+        }
+        index.putLong(offset(slot) + ACCESS_OFFSET, tick());
+        return getDigest(slot, BLOB_OFFSET);
+    }
+
+    /**
+     * Removes the entry of the key digest if it still refers to the blob and the blob is missing.
+     * The caller holds the index.
+     *
+     * @param keyDigest digest of the key
+     * @param blob      digest of the blob
+     */
+    private void removeMissing(final byte[] keyDigest, final byte[] blob) {
+        final int slot = find(keyDigest);
+        if (slot >= 0 && matches(slot, BLOB_OFFSET, blob) && !Files.exists(getBlobPath(blob))) {
+            beginUpdate();
+            remove(slot);
+            endUpdate();
+        }
+    }
+
+    /**
+     * Marks the index dirty before an update rewriting several slots.
+     * The fence keeps the mark from being reordered with the writes of the update.
+     */
+    private void beginUpdate() {
+        index.putInt(DIRTY_OFFSET, 1);
+        VarHandle.fullFence();
+    }
+
+    /**
+     * Marks the index clean after an update.
+     * The fence keeps the mark from being reordered with the writes of the update.
+     */
+    private void endUpdate() {
+        VarHandle.fullFence();
+        index.putInt(DIRTY_OFFSET, 0);
+    }
+
+    /**
+     * Rebuilds the index left dirty by an interrupted update from its non-empty slots.
+     * An entry whose key is in several slots keeps the most recently accessed one,
+     * and the entries whose blobs are missing are dropped. The caller holds the index.
+     */
+    private void rebuild() {
+        final List<byte[]> slots = new ArrayList<>();
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            if (!isEmpty(slot)) {
+                final byte[] contents = new byte[SLOT_SIZE];
+                index.get(offset(slot), contents);
+                slots.add(contents);
+            }
+        }
+        final long clock = index.getLong(CLOCK_OFFSET);
+        clear();
+        index.putLong(CLOCK_OFFSET, clock);
+        index.putInt(DIRTY_OFFSET, 1);
+        for (final byte[] contents : slots) {
+            final ByteBuffer entry = ByteBuffer.wrap(contents);
+            final byte[] key = new byte[DIGEST_SIZE];
+            final byte[] blob = new byte[DIGEST_SIZE];
+            entry.get(KEY_OFFSET, key).get(BLOB_OFFSET, blob);
+            final long length = entry.getLong(LENGTH_OFFSET);
+            final long access = entry.getLong(ACCESS_OFFSET);
+            if (!Files.exists(getBlobPath(blob))) {
+                continue;
+            }
+            int slot = find(key);
+            if (slot >= 0) {
+                if (index.getLong(offset(slot) + ACCESS_OFFSET) >= access) {
+                    continue;
+                }
+                addBytes(-index.getLong(offset(slot) + LENGTH_OFFSET));
+            } else {
+                slot = -slot - 1;
+                index.putInt(SIZE_OFFSET, index.getInt(SIZE_OFFSET) + 1);
+            }
+            index.put(offset(slot), contents);
+            addBytes(length);
+        }
+        index.putInt(DIRTY_OFFSET, 0);
+    }
+
+    @Override
+    public boolean contains(final String key) throws ImplerException {
+        nullAssertion(key);
+        final byte[] keyDigest = sha256(key.getBytes(StandardCharsets.UTF_8));
+        return withIndex(() -> find(keyDigest) >= 0);
+    }
+
+    @Override
+    public void put(final String key, final Path jarFile) throws ImplerException {
+        nullAssertion(key, jarFile);
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(jarFile);
+        } catch (final IOException e) {
+            throw new ImplerException("Error during reading a jar file: " + e.getMessage(), e);
+        }
+        put(key, bytes);
+    }
+
+    /**
+     * Stores the contents of a <var>.jar</var> file for the <var>key</var>, replacing the previous entry for it.
+     *
+     * @param key   key of the entry
+     * @param bytes contents of the <var>.jar</var> file
+     * @throws ImplerException if the contents are empty or an error occurred trying to store them
+     */
+    public void put(final String key, final byte[] bytes) throws ImplerException {
+        nullAssertion(key, bytes);
+        if (bytes.length == 0) {
+            throw new ImplerException("Empty jar file given");
+        }
+        final byte[] keyDigest = sha256(key.getBytes(StandardCharsets.UTF_8));
+        final byte[] blob = sha256(bytes);
+        withIndex(() -> {
+            storeBlob(blob, bytes);
+            beginUpdate();
+            put(keyDigest, blob, bytes.length);
+            endUpdate();
+            return null;
+        });
+    }
+
+    /**
+     * Maps the key digest to the stored blob. The caller holds the index and has marked it dirty.
+     * A slot is filled before its blob size is written, which makes it visible.
+     *
+     * @param keyDigest digest of the key
+     * @param blob      digest of the blob
+     * @param length    size of the blob
+     */
+    private void put(final byte[] keyDigest, final byte[] blob, final long length) {
+        int slot = find(keyDigest);
+        byte[] previous = null;
+        if (slot >= 0) {
+            addBytes(-index.getLong(offset(slot) + LENGTH_OFFSET));
+            previous = getDigest(slot, BLOB_OFFSET);
+            index.putLong(offset(slot) + LENGTH_OFFSET, 0);
+        } else {
+            slot = -slot - 1;
+            index.put(offset(slot) + KEY_OFFSET, keyDigest);
+            index.putInt(SIZE_OFFSET, index.getInt(SIZE_OFFSET) + 1);
+        }
+        index.put(offset(slot) + BLOB_OFFSET, blob);
+        index.putLong(offset(slot) + ACCESS_OFFSET, tick());
+        index.putLong(offset(slot) + LENGTH_OFFSET, length);
+        addBytes(length);
+        if (previous != null) {
+            deleteUnreferenced(List.of(previous));
+        }
+        evict();
+    }
+
+    /**
+     * Writes the blob, unless it is already stored.
+     * The blob is written to a temporary file first and then moved, so incomplete blobs are never seen.
+     *
+     * @param blob  digest of the contents
+     * @param bytes the contents
+     * @throws ImplerException if an error occurred trying to write the blob
+     */
+    private void storeBlob(final byte[] blob, final byte[] bytes) throws ImplerException {
+        final Path path = getBlobPath(blob);
+        if (Files.exists(path)) {
+            return;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            final Path temp = Files.createTempFile(path.getParent(), "blob", ".tmp");
+            try {
+                Files.write(temp, bytes);
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            throw new ImplerException("Error during writing a cached jar file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Changes the total size of the entries stored in the header.
+     *
+     * @param delta the change, in bytes
+     */
+    private void addBytes(final long delta) {
+        index.putLong(BYTES_OFFSET, index.getLong(BYTES_OFFSET) + delta);
+    }
+
+    /**
+     * Removes the entry in the slot and deletes its blob if no other entry refers to it.
+     * The caller has marked the index dirty.
+     *
+     * @param slot number of the slot
+     */
+    private void remove(final int slot) {
+        deleteUnreferenced(List.of(release(slot)));
+    }
+
+    /**
+     * Removes the entry in the slot, shifting the following slots of its cluster back.
+     * The caller has marked the index dirty.
+     *
+     * @param slot number of the slot
+     * @return digest of the blob of the removed entry, which may be unreferenced now
+     */
+    private byte[] release(final int slot) {
+        final byte[] blob = getDigest(slot, BLOB_OFFSET);
+        addBytes(-index.getLong(offset(slot) + LENGTH_OFFSET));
+        index.putInt(SIZE_OFFSET, index.getInt(SIZE_OFFSET) - 1);
+        int hole = slot;
+        for (int next = (slot + 1) & (CAPACITY - 1); !isEmpty(next); next = (next + 1) & (CAPACITY - 1)) {
+            final int home = home(getDigest(next, KEY_OFFSET));
+            if (((next - home) & (CAPACITY - 1)) >= ((next - hole) & (CAPACITY - 1))) {
+                copySlot(next, hole);
+                hole = next;
+            }
+        }
+        index.putLong(offset(hole) + LENGTH_OFFSET, 0);
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            index.put(offset(hole) + i, (byte) 0);
+        }
+        return blob;
+    }
+
+    /**
+     * Copies the contents of a slot to another one.
+     * The target is emptied first and gets its blob size last, so it is never seen half-copied.
+     *
+     * @param from number of the source slot
+     * @param to   number of the target slot
+     */
+    private void copySlot(final int from, final int to) {
+        index.putLong(offset(to) + LENGTH_OFFSET, 0);
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            if (i < LENGTH_OFFSET || i >= LENGTH_OFFSET + 8) {
+                index.put(offset(to) + i, index.get(offset(from) + i));
+            }
+        }
+        index.putLong(offset(to) + LENGTH_OFFSET, index.getLong(offset(from) + LENGTH_OFFSET));
+    }
+
+    /**
+     * Deletes the blobs no entry refers to, scanning the index once.
+     *
+     * @param candidates digests of the blobs that may be unreferenced
+     */
+    private void deleteUnreferenced(final List<byte[]> candidates) {
+        final Set<ByteBuffer> unreferenced = new HashSet<>();
+        for (final byte[] blob : candidates) {
+            unreferenced.add(ByteBuffer.wrap(blob));
+        }
+        for (int slot = 0; slot < CAPACITY && !unreferenced.isEmpty(); slot++) {
+            if (!isEmpty(slot)) {
+                unreferenced.remove(ByteBuffer.wrap(getDigest(slot, BLOB_OFFSET)));
+            }
+        }
+        for (final ByteBuffer blob : unreferenced) {
+            try {
+                Files.deleteIfExists(getBlobPath(blob.array()));
+            } catch (final IOException e) {
+                System.err.println("Error during deleting a cached jar file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries once the cache is over its size or the index is too full.
+     * Entries are evicted until nine tenths of the limits are reached, so the eviction is not repeated on every put,
+     * and the blobs left unreferenced are looked for once per eviction. The caller has marked the index dirty.
+     */
+    private void evict() {
+        if (!isOverfull(1)) {
+            return;
+        }
+        final List<long[]> entries = new ArrayList<>();
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            if (!isEmpty(slot)) {
+                entries.add(new long[]{index.getLong(offset(slot) + ACCESS_OFFSET), slot});
+            }
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry[0]));
+        final List<byte[]> keys = new ArrayList<>();
+        for (final long[] entry : entries) {
+            keys.add(getDigest((int) entry[1], KEY_OFFSET));
+        }
+        final List<byte[]> released = new ArrayList<>();
+        for (int i = 0; i < keys.size() - 1 && isOverfull(0.9); i++) {
+            released.add(release(find(keys.get(i))));
+        }
+        deleteUnreferenced(released);
+    }
+
+    /**
+     * Tells whether the cache is over the given fraction of its limits.
+     *
+     * @param fraction fraction of the limits
+     * @return {@code true} if the entries are over the fraction of the maximal size
+     * or the index is over the fraction of three quarters of its capacity
+     */
+    private boolean isOverfull(final double fraction) {
+        return index.getLong(BYTES_OFFSET) > maxBytes * fraction
+                || index.getInt(SIZE_OFFSET) > CAPACITY / 4 * 3 * fraction;
+    }
+
+    /**
+     * Closes the index channel, reporting errors.
+     */
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            System.err.println("Error during closing a cache index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the index to the disk and closes it. The cache must not be used after that.
+     */
+    @Override
+    public void close() {
+        synchronized (monitor) {
+            index.force();
+        }
+        closeChannel();
+    }
+}
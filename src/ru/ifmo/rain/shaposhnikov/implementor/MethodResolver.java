@@ -0,0 +1,407 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Memoized resolution of the methods an implementation class has to override.
+ * For every class, the abstract and final methods declared in it and its superclasses
+ * are collected into a {@link MethodTable} cached in a {@link ClassValue}.
+ * The table of a class is built from the cached table of its superclass,
+ * so classes sharing ancestors reflect on every ancestor only once.
+ * <p>
+ * Methods are matched by the ids their signatures get in a {@link SignatureTable},
+ * so resolution compares and hashes {@code int}s only. The signature table references the classes
+ * of all the signatures, so it is not kept for the lifetime of the process, which would keep every class loader
+ * and every token ever resolved from being unloaded: it lives while a {@link Session} is open,
+ * and batches keep a session open for their whole run to share it. When the last session is closed, the table
+ * is dropped, and method tables built with it are rebuilt on demand, as their ids are meaningless for the next one.
+ * The resolved methods of a class do not depend on ids and stay cached with the class.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class MethodResolver {
+    /**
+     * Guards {@link #signatures}, {@link #generation} and {@link #sessions}.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * Signatures of the methods resolved in the open sessions, {@code null} if there are none.
+     */
+    private static SignatureTable signatures;
+
+    /**
+     * Number of signature tables created, identifying the current one.
+     */
+    private static int generation;
+
+    /**
+     * Number of open sessions.
+     */
+    private static int sessions;
+
+    /**
+     * Resolution state by classes.
+     */
+    private static final ClassValue<ClassEntry> ENTRIES = new ClassValue<>() {
+        @Override
+        protected ClassEntry computeValue(final Class<?> type) {
+            return new ClassEntry();
+        }
+    };
+
+    /**
+     * Utility class.
+     */
+    private MethodResolver() {
+    }
+
+    /**
+     * Scope in which method tables share a signature table.
+     * Sessions may be nested and used by several threads; the table is dropped when all of them are closed.
+     */
+    static final class Session implements AutoCloseable {
+        /**
+         * The signature table of the session.
+         */
+        private final SignatureTable table;
+
+        /**
+         * Generation of the signature table.
+         */
+        private final int tableGeneration;
+
+        /**
+         * Whether the session is closed.
+         */
+        private boolean closed;
+
+        /**
+         * Constructs a session.
+         *
+         * @param table           the signature table of the session
+         * @param tableGeneration generation of the signature table
+         */
+        private Session(final SignatureTable table, final int tableGeneration) {
+            this.table = table;
+            this.tableGeneration = tableGeneration;
+        }
+
+        /**
+         * Closes the session, dropping the signature table and {@link ResolutionArchive#closeJars() closing}
+         * the <var>.jar</var> files read by the {@link ResolutionArchive} if it is the last open one.
+         * Closing a closed session has no effect.
+         */
+        @Override
+        public void close() {
+            synchronized (LOCK) {
+                if (!closed) {
+                    closed = true;
+                    if (--sessions == 0) {
+                        signatures = null;
+                        ResolutionArchive.closeJars();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a session, creating a signature table if there are no open sessions.
+     * The <var>.jar</var> files read by the {@link ResolutionArchive} are kept open while there are open sessions.
+     *
+     * @return the session, to be closed when the resolution is over
+     */
+    static Session openSession() {
+        synchronized (LOCK) {
+            if (sessions++ == 0) {
+                signatures = new SignatureTable();
+                generation++;
+                ResolutionArchive.openJars();
+            }
+            return new Session(signatures, generation);
+        }
+    }
+
+    /**
+     * Resolution state of a class.
+     */
+    private static final class ClassEntry {
+        /**
+         * The method table, possibly built with a dropped signature table.
+         */
+        volatile MethodTable table;
+
+        /**
+         * Methods an implementation of the class has to override, computed on demand.
+         */
+        volatile List<Method> implementedMethods;
+    }
+
+    /**
+     * Returns the method table of the class built with the signature table of the session.
+     *
+     * @param type    the class
+     * @param session the session
+     * @return the method table
+     */
+    private static MethodTable getTable(final Class<?> type, final Session session) {
+        final ClassEntry entry = ENTRIES.get(type);
+        MethodTable table = entry.table;
+        if (table == null || table.generation != session.tableGeneration) {
+            final Class<?> superclass = type.getSuperclass();
+            table = new MethodTable(type, superclass == null ? null : getTable(superclass, session), session);
+            entry.table = table;
+        }
+        return table;
+    }
+
+    /**
+     * Immutable table of the methods of a class.
+     */
+    private static final class MethodTable {
+        /**
+         * Generation of the signature table the ids of the table come from.
+         */
+        private final int generation;
+
+        /**
+         * Abstract methods declared in the class and its superclasses.
+         * Methods of subclasses come before methods of superclasses with the same signature.
+         */
+        private final MethodMap abstractMethods;
+
+        /**
+         * Final methods declared in the class and its superclasses.
+         */
+        private final MethodMap finalMethods;
+
+        /**
+         * Builds the table of a class from the table of its superclass.
+         *
+         * @param type    the class
+         * @param parent  the table of the superclass built in the same session,
+         *                or {@code null} if there is no superclass
+         * @param session the session
+         */
+        MethodTable(final Class<?> type, final MethodTable parent, final Session session) {
+            this.generation = session.tableGeneration;
+            final Method[] declared = type.getDeclaredMethods();
+            final MethodMap abstractMethods = new MethodMap(
+                    declared.length + (parent == null ? 0 : parent.abstractMethods.size()));
+            final MethodMap finalMethods = new MethodMap(
+                    declared.length + (parent == null ? 0 : parent.finalMethods.size()));
+            for (final Method method : declared) {
+                if (Modifier.isAbstract(method.getModifiers())) {
+                    abstractMethods.putIfAbsent(session.table.intern(method), method);
+                } else if (Modifier.isFinal(method.getModifiers())) {
+                    finalMethods.putIfAbsent(session.table.intern(method), method);
+                }
+            }
+            if (parent != null) {
+                abstractMethods.putAllAbsent(parent.abstractMethods);
+                finalMethods.putAllAbsent(parent.finalMethods);
+            }
+            this.abstractMethods = abstractMethods;
+            this.finalMethods = finalMethods;
+        }
+
+        /**
+         * Returns the methods an implementation of the class has to override.
+         * These are the abstract methods among the public methods of the class
+         * and the methods declared in the class and its superclasses, except for the ones
+         * having a final method with the same signature.
+         * Methods are sorted by their signatures, so the order does not depend
+         * on the order reflection returns methods in.
+         *
+         * @param type    the class of the table
+         * @param session the session the table is built in
+         * @return methods that need to be implemented
+         */
+        List<Method> getImplementedMethods(final Class<?> type, final Session session) {
+            final Method[] publicMethods = type.getMethods();
+            final MethodMap implemented = new MethodMap(publicMethods.length + abstractMethods.size());
+            final MethodMap removed = new MethodMap(publicMethods.length);
+            for (final Method method : publicMethods) {
+                if (Modifier.isAbstract(method.getModifiers())) {
+                    implemented.putIfAbsent(session.table.intern(method), method);
+                } else if (Modifier.isFinal(method.getModifiers())) {
+                    removed.putIfAbsent(session.table.intern(method), method);
+                }
+            }
+            implemented.putAllAbsent(abstractMethods);
+            final Map<String, Method> sorted = new TreeMap<>();
+            for (int i = 0; i < implemented.size(); i++) {
+                final int id = implemented.getId(i);
+                if (!finalMethods.contains(id) && !removed.contains(id)) {
+                    sorted.put(getSortKey(implemented.getMethod(i)), implemented.getMethod(i));
+                }
+            }
+            return List.copyOf(sorted.values());
+        }
+    }
+
+    /**
+     * Returns the key methods are sorted by.
+     * Keys of the methods with different signatures are different.
+     *
+     * @param method the method
+     * @return the name, binary names of the parameter types in parentheses and the binary name of the return type
+     */
+    private static String getSortKey(final Method method) {
+        final StringBuilder sb = new StringBuilder(method.getName()).append('(');
+        for (final Class<?> parameterType : method.getParameterTypes()) {
+            sb.append(parameterType.getName()).append(',');
+        }
+        return sb.append(')').append(method.getReturnType().getName()).toString();
+    }
+
+    /**
+     * Returns the methods an implementation class of the <var>token</var> has to override.
+     * Outside of an open session, the signature table is created for this call only.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return unmodifiable list of the methods that need to be implemented
+     */
+    static List<Method> getImplementedMethods(final Class<?> token) {
+        final ClassEntry entry = ENTRIES.get(token);
+        List<Method> methods = entry.implementedMethods;
+        if (methods == null) {
+            try (final Session session = openSession()) {
+                methods = getTable(token, session).getImplementedMethods(token, session);
+            }
+            entry.implementedMethods = methods;
+        }
+        return methods;
+    }
+
+    /**
+     * Insertion-ordered map from signature ids to methods.
+     * Entries are kept in parallel arrays in insertion order and are found
+     * through an open-addressed table of their positions with linear probing.
+     * The capacity is fixed at construction, which is possible as the number of entries is known in advance.
+     */
+    private static final class MethodMap {
+        /**
+         * Signature ids in insertion order.
+         */
+        private final int[] ids;
+
+        /**
+         * Methods in insertion order.
+         */
+        private final Method[] methods;
+
+        /**
+         * Open-addressed table of positions plus one, {@code 0} marks an empty slot.
+         */
+        private final int[] slots;
+
+        /**
+         * Number of entries.
+         */
+        private int size;
+
+        /**
+         * Constructs an empty map.
+         *
+         * @param capacity maximal number of entries
+         */
+        MethodMap(final int capacity) {
+            this.ids = new int[capacity];
+            this.methods = new Method[capacity];
+            this.slots = new int[Integer.highestOneBit(Math.max(capacity, 1)) * 4];
+        }
+
+        /**
+         * Returns the first slot of the probe sequence of the <var>id</var>.
+         *
+         * @param id signature id
+         * @return the slot
+         */
+        private int firstSlot(final int id) {
+            return (id * 0x9E3779B9) >>> 16 & (slots.length - 1);
+        }
+
+        /**
+         * Tells whether there is a method with the given signature.
+         *
+         * @param id signature id
+         * @return {@code true} if the map contains the <var>id</var>, {@code false} otherwise
+         */
+        boolean contains(final int id) {
+            final int mask = slots.length - 1;
+            for (int slot = firstSlot(id); slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (ids[slots[slot] - 1] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Puts the <var>method</var> unless there is a method with the same signature already.
+         *
+         * @param id     signature id of the method
+         * @param method the method
+         */
+        void putIfAbsent(final int id, final Method method) {
+            final int mask = slots.length - 1;
+            int slot = firstSlot(id);
+            while (slots[slot] != 0) {
+                if (ids[slots[slot] - 1] == id) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            ids[size] = id;
+            methods[size] = method;
+            slots[slot] = ++size;
+        }
+
+        /**
+         * Puts every method of the <var>other</var> map, in its order,
+         * unless there is a method with the same signature already.
+         *
+         * @param other the map to take methods from
+         */
+        void putAllAbsent(final MethodMap other) {
+            for (int i = 0; i < other.size; i++) {
+                putIfAbsent(other.ids[i], other.methods[i]);
+            }
+        }
+
+        /**
+         * Returns the number of entries.
+         *
+         * @return the number of entries
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the signature id of the entry at the given position.
+         *
+         * @param index position in insertion order
+         * @return the signature id
+         */
+        int getId(final int index) {
+            return ids[index];
+        }
+
+        /**
+         * Returns the method of the entry at the given position.
+         *
+         * @param index position in insertion order
+         * @return the method
+         */
+        Method getMethod(final int index) {
+            return methods[index];
+        }
+    }
+}
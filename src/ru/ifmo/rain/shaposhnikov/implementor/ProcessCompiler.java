@@ -0,0 +1,616 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ClassCompiler} compiling in a pool of long-lived child virtual machines.
+ * Every worker has its own heap, limited on construction, and its own metaspace, so compilations do not
+ * compete for the heap and the collector of the implementor, and a compiler crash or leak is confined to a worker.
+ * A worker is replaced after a given number of jobs and whenever it fails.
+ * <p>
+ * A batch passed to {@link #compileAll(Map, Map)} is grouped by class paths as {@link InMemoryCompiler} does,
+ * and the groups are split into as many jobs as there are workers, compiled in parallel.
+ * Workers compile in warm {@link CompilerContext compiler contexts}, and are started on demand.
+ * <p>
+ * Workers run {@link #main(String[])} and talk to the implementor over their standard input and output.
+ * Every message is a frame: its length as a big-endian {@code int} followed by the payload.
+ * Strings and byte arrays in the payloads are written as their length as an {@code int} followed by
+ * the UTF-8 encoded characters or the bytes.
+ * <ul>
+ *     <li>A job is the number of class path entries and the entries, followed by the number of classes
+ *     and the binary name and the source of every class.</li>
+ *     <li>A result is {@link #JOB_FAILED} and a message if the whole job failed, or {@link #JOB_DONE}
+ *     and the number of classes, followed by the binary name of every class and either {@link #CLASS_COMPILED}
+ *     and the contents of its <var>.class</var> file or {@link #CLASS_FAILED} and the errors.</li>
+ * </ul>
+ * A worker exits when its input is closed, so workers do not outlive the implementor.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class ProcessCompiler implements ClassCompiler, Closeable {
+    /**
+     * Default number of jobs a worker runs before it is replaced.
+     */
+    public static final int DEFAULT_MAX_JOBS = 256;
+
+    /**
+     * Default maximal heap size of a worker, in the format of the {@code -Xmx} option.
+     */
+    public static final String DEFAULT_HEAP = "512m";
+
+    /**
+     * Maximal accepted frame length.
+     */
+    private static final int MAX_FRAME = 1 << 30;
+
+    /**
+     * Result tag of a job that has been run.
+     */
+    private static final byte JOB_DONE = 0;
+
+    /**
+     * Result tag of a job that has failed as a whole.
+     */
+    private static final byte JOB_FAILED = 1;
+
+    /**
+     * Result tag of a compiled class.
+     */
+    private static final byte CLASS_COMPILED = 0;
+
+    /**
+     * Result tag of a class with compilation errors.
+     */
+    private static final byte CLASS_FAILED = 1;
+
+    /**
+     * Number of workers.
+     */
+    private final int workers;
+
+    /**
+     * Number of jobs a worker runs before it is replaced.
+     */
+    private final int maxJobs;
+
+    /**
+     * Command starting a worker.
+     */
+    private final List<String> command;
+
+    /**
+     * Slots of the workers: a worker ready to run a job, or {@code null} for a worker that is not started.
+     * A slot is taken for the time of a job, so at most {@link #workers} jobs run at once.
+     */
+    private final BlockingQueue<Slot> slots;
+
+    /**
+     * Threads waiting for the jobs of a batch.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Slot of a worker, holding the worker if it is started.
+     */
+    private static final class Slot {
+        /**
+         * The worker, {@code null} if it is not started.
+         */
+        Worker worker;
+    }
+
+    /**
+     * Child virtual machine compiling jobs.
+     */
+    private static final class Worker {
+        /**
+         * The process of the worker.
+         */
+        private final Process process;
+
+        /**
+         * Input of the worker.
+         */
+        private final DataOutputStream in;
+
+        /**
+         * Output of the worker.
+         */
+        private final DataInputStream out;
+
+        /**
+         * Number of jobs run by the worker.
+         */
+        private int jobs;
+
+        /**
+         * Starts a worker.
+         *
+         * @param command command starting the worker
+         * @throws IOException if the process cannot be started
+         */
+        Worker(final List<String> command) throws IOException {
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            in = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            out = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        /**
+         * Sends a job to the worker and waits for the result.
+         *
+         * @param job the job frame
+         * @return the result frame
+         * @throws IOException if the worker failed or exited
+         */
+        byte[] run(final byte[] job) throws IOException {
+            jobs++;
+            writeFrame(in, job);
+            in.flush();
+            final byte[] result = readFrame(out);
+            if (result == null) {
+                throw new EOFException("worker exited with code " + waitFor());
+            }
+            return result;
+        }
+
+        /**
+         * Closes the input of the worker, so it exits, and kills it if it does not exit in time.
+         */
+        void stop() {
+            try {
+                in.close();
+            } catch (final IOException ignored) {
+                // The worker is killed below if it does not exit.
+            }
+            waitFor();
+        }
+
+        /**
+         * Waits for the worker to exit for a while, killing it if it does not.
+         *
+         * @return the exit code, or {@code -1} if the worker was killed
+         */
+        private int waitFor() {
+            try {
+                if (process.waitFor(1, TimeUnit.SECONDS)) {
+                    return process.exitValue();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            process.destroyForcibly();
+            return -1;
+        }
+    }
+
+    /**
+     * Constructs a compiler with a worker per processor, each with a {@link #DEFAULT_HEAP default} heap
+     * and replaced after {@link #DEFAULT_MAX_JOBS default} number of jobs.
+     */
+    public ProcessCompiler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_JOBS, DEFAULT_HEAP);
+    }
+
+    /**
+     * Constructs a compiler.
+     *
+     * @param workers number of workers
+     * @param maxJobs number of jobs a worker runs before it is replaced
+     * @param maxHeap maximal heap size of a worker, in the format of the {@code -Xmx} option
+     * @throws IllegalArgumentException if a number is not positive
+     */
+    public ProcessCompiler(final int workers, final int maxJobs, final String maxHeap) {
+        this(workers, maxJobs, getCommand(maxHeap));
+    }
+
+    /**
+     * Constructs a compiler starting the workers with the given command.
+     *
+     * @param workers number of workers
+     * @param maxJobs number of jobs a worker runs before it is replaced
+     * @param command command starting a worker, running {@link #main(String[])}
+     * @throws IllegalArgumentException if a number is not positive
+     */
+    ProcessCompiler(final int workers, final int maxJobs, final List<String> command) {
+        if (workers <= 0 || maxJobs <= 0) {
+            throw new IllegalArgumentException("Invalid worker pool parameters");
+        }
+        this.workers = workers;
+        this.maxJobs = maxJobs;
+        this.command = List.copyOf(command);
+        this.slots = new ArrayBlockingQueue<>(workers);
+        for (int i = 0; i < workers; i++) {
+            slots.add(new Slot());
+        }
+        this.executor = Executors.newCachedThreadPool(body -> {
+            final Thread thread = new Thread(body, "process-compiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the command starting a worker in the way this virtual machine was started:
+     * from the module path if the compiler is in a named module, from the class path otherwise.
+     * A named module without a module path comes from the runtime image, where the worker finds it as well.
+     * Workers use the serial collector, as every worker compiles in a single thread.
+     *
+     * @param maxHeap maximal heap size of a worker
+     * @return the command
+     */
+    static List<String> getCommand(final String maxHeap) {
+        final List<String> command = new ArrayList<>(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + maxHeap,
+                "-XX:+UseSerialGC",
+                "-Dfile.encoding=UTF-8"
+        ));
+        final Module module = ProcessCompiler.class.getModule();
+        if (module.isNamed()) {
+            final String modulePath = System.getProperty("jdk.module.path");
+            if (modulePath != null) {
+                command.addAll(List.of("-p", modulePath));
+            }
+            command.addAll(List.of(
+                    "--add-modules", "jdk.compiler",
+                    "-m", module.getName() + "/" + ProcessCompiler.class.getName()
+            ));
+        } else {
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), ProcessCompiler.class.getName()));
+        }
+        return command;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Includes the {@link CompilerContext#getIdentity() identity} of the java compiler runs,
+     * as the workers run on the same platform.
+     */
+    @Override
+    public String getIdentity() {
+        return getClass().getName() + " " + CompilerContext.getIdentity();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The implementation is compiled by a worker.
+     */
+    @Override
+    public byte[] compile(final Class<?> token, final String source) throws ImplerException {
+        final Map<Class<?>, ImplerException> failed = new HashMap<>();
+        final byte[] bytes = compileAll(Map.of(token, source), failed).get(token);
+        if (bytes == null) {
+            throw failed.get(token);
+        }
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tokens are grouped by their class paths, see {@link InMemoryCompiler#compileAll(Map, Map)},
+     * and every group is split into up to as many jobs as there are workers, compiled in parallel.
+     * If a worker fails, the tokens of its job fail and the worker is replaced.
+     */
+    @Override
+    public Map<Class<?>, byte[]> compileAll(final Map<Class<?>, String> sources,
+                                            final Map<Class<?>, ImplerException> failed) {
+        final List<Callable<Map<Class<?>, byte[]>>> jobs = new ArrayList<>();
+        final Map<Class<?>, ImplerException> errors = new ConcurrentHashMap<>();
+        InMemoryCompiler.group(sources.keySet(), failed).forEach((classPath, chunks) -> {
+            for (final Map<String, Class<?>> chunk : chunks) {
+                final List<Map.Entry<String, Class<?>>> entries = new ArrayList<>(chunk.entrySet());
+                final int parts = Math.min(workers, entries.size());
+                for (int i = 0; i < parts; i++) {
+                    final Map<String, Class<?>> part = new LinkedHashMap<>();
+                    for (final Map.Entry<String, Class<?>> entry :
+                            entries.subList(i * entries.size() / parts, (i + 1) * entries.size() / parts)) {
+                        part.put(entry.getKey(), entry.getValue());
+                    }
+                    jobs.add(() -> runJob(classPath, part, sources, errors));
+                }
+            }
+        });
+
+        final Map<Class<?>, byte[]> compiled = new HashMap<>();
+        try {
+            for (final Future<Map<Class<?>, byte[]>> future : executor.invokeAll(jobs)) {
+                compiled.putAll(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final ImplerException exception = new ImplerException("Error during compiling classes: interrupted", e);
+            sources.keySet().forEach(token -> errors.putIfAbsent(token, exception));
+        } catch (final ExecutionException e) {
+            final ImplerException exception = new ImplerException(
+                    "Error during compiling classes: " + e.getCause().getMessage(), e.getCause());
+            sources.keySet().forEach(token -> errors.putIfAbsent(token, exception));
+        }
+        failed.putAll(errors);
+
+        final Map<Class<?>, byte[]> classes = new LinkedHashMap<>();
+        for (final Class<?> token : sources.keySet()) {
+            if (compiled.containsKey(token) && !errors.containsKey(token)) {
+                classes.put(token, compiled.get(token));
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Compiles a job in a worker, starting or replacing the worker if necessary.
+     *
+     * @param classPath class path of the job
+     * @param chunk     tokens of the job by implementation class names
+     * @param sources   source code of the implementation classes by tokens
+     * @param failed    where to put the causes of failure of the tokens that cannot be compiled
+     * @return contents of the <var>.class</var> files of the successfully compiled tokens
+     * @throws InterruptedException if the thread is interrupted while waiting for a worker
+     */
+    private Map<Class<?>, byte[]> runJob(final List<Path> classPath, final Map<String, Class<?>> chunk,
+                                         final Map<Class<?>, String> sources,
+                                         final Map<Class<?>, ImplerException> failed)
+            throws InterruptedException {
+        final Map<Class<?>, byte[]> classes = new HashMap<>();
+        final Slot slot = slots.take();
+        try {
+            if (slot.worker == null) {
+                slot.worker = new Worker(command);
+            }
+            final byte[] result = slot.worker.run(encodeJob(classPath, chunk, sources));
+            if (slot.worker.jobs >= maxJobs) {
+                slot.worker.stop();
+                slot.worker = null;
+            }
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(result));
+            if (in.readByte() == JOB_FAILED) {
+                final ImplerException exception = new ImplerException(readString(in));
+                chunk.values().forEach(token -> failed.put(token, exception));
+                return classes;
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                final Class<?> token = chunk.get(readString(in));
+                if (in.readByte() == CLASS_COMPILED) {
+                    classes.put(token, readBytes(in));
+                } else {
+                    failed.put(token, new ImplerException("Error during compiling classes: " + readString(in)));
+                }
+            }
+        } catch (final IOException e) {
+            if (slot.worker != null) {
+                slot.worker.stop();
+                slot.worker = null;
+            }
+            final ImplerException exception = new ImplerException(
+                    "Error during compiling classes: compile worker failed: " + e.getMessage(), e);
+            chunk.values().forEach(token -> failed.put(token, exception));
+        } finally {
+            slots.add(slot);
+        }
+        return classes;
+    }
+
+    /**
+     * Encodes a job.
+     *
+     * @param classPath class path of the job
+     * @param chunk     tokens of the job by implementation class names
+     * @param sources   source code of the implementation classes by tokens
+     * @return the job frame
+     * @throws IOException never, as the frame is written to memory
+     */
+    private static byte[] encodeJob(final List<Path> classPath, final Map<String, Class<?>> chunk,
+                                    final Map<Class<?>, String> sources) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(classPath.size());
+        for (final Path entry : classPath) {
+            writeString(out, entry.toString());
+        }
+        out.writeInt(chunk.size());
+        for (final Map.Entry<String, Class<?>> entry : chunk.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, sources.get(entry.getValue()));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Stops all the workers. Must not be called while compilations are running,
+     * and compilations must not be run after that.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (final Slot slot : slots) {
+            if (slot.worker != null) {
+                slot.worker.stop();
+                slot.worker = null;
+            }
+        }
+    }
+
+    /**
+     * Writes a frame.
+     *
+     * @param out     where to write the frame
+     * @param payload the payload
+     * @throws IOException if an error occurred trying to write the frame
+     */
+    private static void writeFrame(final DataOutputStream out, final byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Reads a frame.
+     *
+     * @param in where to read the frame from
+     * @return the payload, or {@code null} if the stream has ended before the frame
+     * @throws IOException if an error occurred trying to read the frame or the frame is malformed
+     */
+    private static byte[] readFrame(final DataInputStream in) throws IOException {
+        final int length;
+        try {
+            length = in.readInt();
+        } catch (final EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        final byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Writes a string as its length followed by its UTF-8 encoded characters.
+     *
+     * @param out    where to write the string
+     * @param string the string
+     * @throws IOException if an error occurred trying to write the string
+     */
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in where to read the string from
+     * @return the string
+     * @throws IOException if an error occurred trying to read the string
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a byte array as its length followed by the bytes.
+     *
+     * @param out   where to write the array
+     * @param bytes the array
+     * @throws IOException if an error occurred trying to write the array
+     */
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a byte array written by {@link #writeBytes(DataOutputStream, byte[])}.
+     *
+     * @param in where to read the array from
+     * @return the array
+     * @throws IOException if an error occurred trying to read the array or its length is invalid
+     */
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length: " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Runs a worker: reads jobs from the standard input and writes their results to the standard output
+     * until the input is closed. Anything else printed to the standard output goes to the standard error,
+     * so it does not break the frames.
+     *
+     * @param args ignored
+     */
+    public static void main(final String[] args) {
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        try {
+            for (byte[] job = readFrame(in); job != null; job = readFrame(in)) {
+                writeFrame(out, compileJob(job));
+                out.flush();
+            }
+        } catch (final IOException e) {
+            System.err.println("Error during running a compile worker: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs a job in the worker.
+     *
+     * @param job the job frame
+     * @return the result frame
+     * @throws IOException if the job is malformed
+     */
+    private static byte[] compileJob(final byte[] job) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(job));
+        final List<Path> classPath = new ArrayList<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            classPath.add(Paths.get(readString(in)));
+        }
+        final Map<String, String> sources = new LinkedHashMap<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            sources.put(readString(in), readString(in));
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final Map<String, String> errors = new LinkedHashMap<>();
+        final Map<String, byte[]> classes;
+        try (final CompilerContext context = CompilerContext.acquire(classPath)) {
+            classes = context.compile(sources, errors);
+        } catch (final ImplerException e) {
+            out.writeByte(JOB_FAILED);
+            writeString(out, e.getMessage());
+            return bytes.toByteArray();
+        } catch (final RuntimeException | LinkageError e) {
+            out.writeByte(JOB_FAILED);
+            writeString(out, "Unexpected error: " + e.getMessage());
+            return bytes.toByteArray();
+        }
+        out.writeByte(JOB_DONE);
+        out.writeInt(classes.size() + errors.size());
+        for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeByte(CLASS_COMPILED);
+            writeBytes(out, entry.getValue());
+        }
+        for (final Map.Entry<String, String> entry : errors.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeByte(CLASS_FAILED);
+            writeString(out, entry.getValue());
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,416 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * {@link JarCache} tier in front of a remote cache server, such as {@link JarCacheServer}.
+ * Entries found on the server are put into the local cache, and entries put are stored both locally and on the server,
+ * so a node downloads an entry once and shares the entries it produces with the other nodes.
+ * <p>
+ * The server is accessed with plain HTTP {@code GET} and {@code PUT} requests. The <var>.jar</var> files are
+ * content-addressed: <var>cas/&lt;digest&gt;</var> is the file with the given SHA-256 digest,
+ * and <var>ac/&lt;digest&gt;</var> is the digest of the file cached for the key with the given digest.
+ * Downloaded files are checked against their digests, so a corrupted or truncated response is never cached.
+ * <p>
+ * The number of entries transferred at once is bounded. {@link #prefetch(Collection) Prefetching} a batch
+ * runs its transfers in parallel up to this bound and waits for the free ones otherwise.
+ * Leases are taken from the local cache, so producers are coordinated within a node only.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class RemoteJarCache implements JarCache {
+    /**
+     * Default maximal number of entries transferred at once.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    /**
+     * Timeout of connecting to the server and of a single request.
+     */
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Lowercase hexadecimal SHA-256 digest.
+     */
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * Base URI of the server, ending with a slash.
+     */
+    private final URI server;
+
+    /**
+     * Local tier of the cache.
+     */
+    private final JarCache local;
+
+    /**
+     * Client of the server.
+     */
+    private final HttpClient client;
+
+    /**
+     * Permits to transfer an entry.
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * Constructs a cache using the <var>server</var> behind the <var>local</var> cache.
+     *
+     * @param server      base URI of the server
+     * @param local       local tier of the cache
+     * @param maxInFlight maximal number of entries transferred at once
+     * @throws IllegalArgumentException if <var>maxInFlight</var> is not positive
+     */
+    public RemoteJarCache(final URI server, final JarCache local, final int maxInFlight) {
+        Objects.requireNonNull(server, "Expected non null server");
+        this.server = server.getPath().endsWith("/") ? server : URI.create(server + "/");
+        this.local = Objects.requireNonNull(local, "Expected non null local cache");
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Expected positive number of transfers, found " + maxInFlight);
+        }
+        this.inFlight = new Semaphore(maxInFlight);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .build();
+    }
+
+    /**
+     * Constructs a cache using the <var>server</var> behind the <var>local</var> cache
+     * with the {@link #DEFAULT_MAX_IN_FLIGHT default number} of transfers at once.
+     *
+     * @param server base URI of the server
+     * @param local  local tier of the cache
+     */
+    public RemoteJarCache(final URI server, final JarCache local) {
+        this(server, local, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Tells whether the string is a lowercase hexadecimal SHA-256 digest.
+     *
+     * @param name the string
+     * @return {@code true} if the string is a digest, {@code false} otherwise
+     */
+    static boolean isDigest(final String name) {
+        return DIGEST.matcher(name).matches();
+    }
+
+    /**
+     * Returns the lowercase hexadecimal SHA-256 digest of the bytes.
+     *
+     * @param bytes the bytes
+     * @return the digest
+     */
+    static String digest(final byte[] bytes) {
+        return HexFormat.of().formatHex(LocalJarCache.sha256(bytes));
+    }
+
+    /**
+     * Returns the name of the action cache entry of the <var>key</var>.
+     *
+     * @param key key of the entry
+     * @return the path of the entry relative to the server
+     */
+    private static String getActionPath(final String key) {
+        return "ac/" + digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a request builder for the path relative to the server.
+     *
+     * @param path the path
+     * @return the request builder
+     */
+    private HttpRequest.Builder request(final String path) {
+        return HttpRequest.newBuilder(server.resolve(path)).timeout(TIMEOUT);
+    }
+
+    /**
+     * Checks that the response is successful.
+     *
+     * @param response the response
+     * @param <T>      type of the response body
+     * @return the response
+     * @throws CompletionException wrapping an {@link IOException} if the response is not successful
+     */
+    private static <T> HttpResponse<T> checkStatus(final HttpResponse<T> response) {
+        if (response.statusCode() / 100 != 2) {
+            throw new CompletionException(new IOException(
+                    "Unexpected response " + response.statusCode() + " to " + response.request().uri()));
+        }
+        return response;
+    }
+
+    /**
+     * Waits for a transfer to complete.
+     *
+     * @param transfer the transfer
+     * @param action   description of the transfer for the error messages
+     * @param <T>      type of the result
+     * @return the result of the transfer
+     * @throws ImplerException if the transfer failed or the thread was interrupted
+     */
+    private static <T> T await(final CompletableFuture<T> transfer, final String action) throws ImplerException {
+        try {
+            return transfer.get();
+        } catch (final InterruptedException e) {
+            transfer.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ImplerException("Interrupted during " + action, e);
+        } catch (final ExecutionException e) {
+            throw new ImplerException("Error during " + action + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Takes a permit to transfer an entry, waiting for the running transfers if needed.
+     *
+     * @throws ImplerException if the thread was interrupted
+     */
+    private void acquire() throws ImplerException {
+        try {
+            inFlight.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImplerException("Interrupted waiting for a transfer", e);
+        }
+    }
+
+    /**
+     * Downloads the <var>.jar</var> file cached on the server for the <var>key</var>.
+     * The caller holds a transfer permit.
+     *
+     * @param key key of the entry
+     * @return the contents of the <var>.jar</var> file, or {@code null} if there is none on the server
+     */
+    private CompletableFuture<byte[]> fetch(final String key) {
+        return client.sendAsync(request(getActionPath(key)).GET().build(), HttpResponse.BodyHandlers.ofString())
+                .thenCompose(action -> {
+                    if (action.statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    final String blob = checkStatus(action).body().trim();
+                    if (!isDigest(blob)) {
+                        throw new CompletionException(new IOException("Invalid blob digest " + blob));
+                    }
+                    return client.sendAsync(request("cas/" + blob).GET().build(), HttpResponse.BodyHandlers.ofByteArray())
+                            .thenApply(response -> {
+                                if (response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                                    return null;
+                                }
+                                final byte[] bytes = checkStatus(response).body();
+                                if (!blob.equals(digest(bytes))) {
+                                    throw new CompletionException(new IOException("Corrupted blob " + blob));
+                                }
+                                return bytes;
+                            });
+                });
+    }
+
+    /**
+     * Downloads the <var>.jar</var> file cached on the server for the <var>key</var>, waiting for a transfer permit.
+     *
+     * @param key key of the entry
+     * @return the contents of the <var>.jar</var> file, or {@code null} if there is none on the server
+     * @throws ImplerException if the download failed or the thread was interrupted
+     */
+    private byte[] download(final String key) throws ImplerException {
+        acquire();
+        try {
+            return await(fetch(key), "downloading a cached jar file");
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Puts the downloaded <var>.jar</var> file into the local cache.
+     *
+     * @param key   key of the entry
+     * @param bytes contents of the <var>.jar</var> file
+     * @throws ImplerException if an error occurred trying to store the file
+     */
+    private void putLocal(final String key, final byte[] bytes) throws ImplerException {
+        try {
+            final Path temp = Files.createTempFile("remote", ".jar");
+            try {
+                Files.write(temp, bytes);
+                local.put(key, temp);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            throw new ImplerException("Error during writing a downloaded jar file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The <var>.jar</var> file is downloaded from the server if there is none in the local cache,
+     * and is put into the local cache then. Failed downloads are reported and considered misses,
+     * so an unavailable server or a corrupted entry makes the <var>.jar</var> file be produced again.
+     * Failures of the local cache to store the downloaded file are reported but do not fail the call.
+     */
+    @Override
+    public boolean get(final String key, final Path target) throws ImplerException {
+        nullAssertion(key, target);
+        if (local.get(key, target)) {
+            return true;
+        }
+        byte[] bytes;
+        try {
+            bytes = download(key);
+        } catch (final ImplerException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            System.err.println(e.getMessage());
+            bytes = null;
+        }
+        if (bytes == null) {
+            return false;
+        }
+        createDirectories(target);
+        try {
+            Files.write(target, bytes);
+        } catch (final IOException e) {
+            throw new ImplerException("Error during writing a jar file: " + e.getMessage(), e);
+        }
+        try {
+            local.put(key, target);
+        } catch (final ImplerException e) {
+            System.err.println("Error during caching a downloaded jar file: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The server is asked if there is no entry in the local cache. Failed requests are reported and considered misses.
+     */
+    @Override
+    public boolean contains(final String key) throws ImplerException {
+        nullAssertion(key);
+        if (local.contains(key)) {
+            return true;
+        }
+        acquire();
+        try {
+            final HttpRequest request = request(getActionPath(key))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            return await(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()),
+                    "looking a cached jar file up").statusCode() == HttpURLConnection.HTTP_OK;
+        } catch (final ImplerException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            System.err.println(e.getMessage());
+            return false;
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The <var>.jar</var> file is stored in the local cache first, and then uploaded to the server:
+     * the file itself and then the entry referring to it, so the entry never refers to a missing file.
+     */
+    @Override
+    public void put(final String key, final Path jarFile) throws ImplerException {
+        nullAssertion(key, jarFile);
+        local.put(key, jarFile);
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(jarFile);
+        } catch (final IOException e) {
+            throw new ImplerException("Error during reading a jar file: " + e.getMessage(), e);
+        }
+        final String blob = digest(bytes);
+        final HttpRequest putBlob = request("cas/" + blob)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(bytes))
+                .build();
+        final HttpRequest putAction = request(getActionPath(key))
+                .PUT(HttpRequest.BodyPublishers.ofString(blob))
+                .build();
+        acquire();
+        try {
+            await(client.sendAsync(putBlob, HttpResponse.BodyHandlers.discarding())
+                    .thenCompose(response -> {
+                        checkStatus(response);
+                        return client.sendAsync(putAction, HttpResponse.BodyHandlers.discarding());
+                    })
+                    .thenApply(RemoteJarCache::checkStatus), "uploading a jar file");
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The entries missing in the local cache are downloaded from the server in parallel
+     * and put into the local cache. Failed downloads are reported.
+     */
+    @Override
+    public void prefetch(final Collection<String> keys) throws ImplerException {
+        nullAssertion(keys);
+        nullAssertion(keys.toArray());
+        final List<CompletableFuture<Void>> transfers = new ArrayList<>();
+        for (final String key : new LinkedHashSet<>(keys)) {
+            if (local.contains(key)) {
+                continue;
+            }
+            acquire();
+            transfers.add(fetch(key)
+                    .thenAccept(bytes -> {
+                        if (bytes != null) {
+                            try {
+                                putLocal(key, bytes);
+                            } catch (final ImplerException e) {
+                                throw new CompletionException(e);
+                            }
+                        }
+                    })
+                    .whenComplete((result, e) -> inFlight.release())
+                    .exceptionally(e -> {
+                        final Throwable cause = e instanceof CompletionException && e.getCause() != null
+                                ? e.getCause() : e;
+                        System.err.println("Error during prefetching a jar file: " + cause.getMessage());
+                        return null;
+                    }));
+        }
+        await(CompletableFuture.allOf(transfers.toArray(new CompletableFuture<?>[0])), "prefetching jar files");
+    }
+
+    @Override
+    public Lease lease(final String key) throws ImplerException {
+        return local.lease(key);
+    }
+}
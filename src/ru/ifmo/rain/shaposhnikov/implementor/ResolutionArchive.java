@@ -0,0 +1,747 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipFile;
+
+/**
+ * Persistent archive of {@link ClassStub stubs}, so that a new process resolves archived classes
+ * by a table lookup instead of reflecting on their hierarchies.
+ * <p>
+ * Stubs are keyed by the SHA-256 digest of the names and the <var>.class</var> files of the class
+ * and all its superclasses and superinterfaces, so a stub is found only if none of them changed.
+ * Computing the key reads the <var>.class</var> files and does not resolve or load any other classes:
+ * neither the methods of the hierarchy nor the types of their signatures.
+ * The digest of every <var>.class</var> file is computed once per process. The <var>.jar</var> files
+ * the <var>.class</var> files are read from are kept open while {@link MethodResolver.Session resolution sessions}
+ * are open, and are closed with the last one; outside of sessions, a <var>.jar</var> file is opened per read.
+ * The <var>.class</var> files of the runtime image are not read: the identity of the image stands for them.
+ * <p>
+ * The archive is memory-mapped read-only. It consists of a header, an index of keys sorted for binary search
+ * with the offsets of their records, the records and a pool of strings the records refer to by numbers.
+ * Strings are decoded on first use.
+ * <p>
+ * The archive of the process is given by the {@value #PROPERTY} system property and is opened on first lookup.
+ * Archives are written by {@link #write(Path, Collection)}, see {@link CacheWarmer}.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class ResolutionArchive {
+    /**
+     * System property naming the archive of the process.
+     */
+    static final String PROPERTY = "ru.ifmo.rain.shaposhnikov.implementor.resolutions";
+
+    /**
+     * Digests of the names and the <var>.class</var> files of the classes,
+     * empty for the classes whose <var>.class</var> files cannot be read.
+     */
+    private static final ClassValue<byte[]> FILE_DIGESTS = new ClassValue<>() {
+        @Override
+        protected byte[] computeValue(final Class<?> type) {
+            final byte[] bytes;
+            try {
+                bytes = isRuntimeImage(type) ? RUNTIME_IMAGE : readClassFile(type);
+            } catch (final ImplerException e) {
+                return new byte[0];
+            }
+            if (bytes == null) {
+                return new byte[0];
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + 64);
+            out.writeBytes(type.getName().getBytes(StandardCharsets.UTF_8));
+            out.write(0);
+            out.writeBytes(bytes);
+            return LocalJarCache.sha256(out.toByteArray());
+        }
+    };
+
+    /**
+     * Identity of the runtime image, standing for the <var>.class</var> files of the classes loaded from it:
+     * the image cannot change without changing its location, version, size or modification time,
+     * and reading and digesting every <var>.class</var> file of it costs more than the reflection saved.
+     */
+    private static final byte[] RUNTIME_IMAGE = getRuntimeImageIdentity();
+
+    /**
+     * Guards {@link #jars}: held for reading while a <var>.jar</var> file of it is read,
+     * and for writing while it is created or closed.
+     */
+    private static final ReadWriteLock JARS_LOCK = new ReentrantReadWriteLock();
+
+    /**
+     * Opened <var>.jar</var> files the classes were loaded from, by their paths,
+     * {@code null} if there are no open resolution sessions.
+     */
+    private static ConcurrentMap<Path, JarFile> jars;
+
+    /**
+     * Magic number of the archive.
+     */
+    private static final int MAGIC = 0x4A435241;
+
+    /**
+     * Version of the archive format.
+     */
+    private static final int FORMAT = 1;
+
+    /**
+     * Size of a key, in bytes.
+     */
+    private static final int KEY_SIZE = 32;
+
+    /**
+     * Size of an index entry: the key and the offset of the record.
+     */
+    private static final int INDEX_ENTRY_SIZE = KEY_SIZE + 4;
+
+    /**
+     * Offsets of the header fields: magic number, format, number of records and offset of the string pool.
+     */
+    private static final int MAGIC_OFFSET = 0, FORMAT_OFFSET = 4, COUNT_OFFSET = 8, STRINGS_OFFSET = 12,
+            HEADER_SIZE = 16;
+
+    /**
+     * Flag of a record of an interface.
+     */
+    private static final int INTERFACE = 1;
+
+    /**
+     * Contents of the archive.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of records.
+     */
+    private final int count;
+
+    /**
+     * Offset of the string pool.
+     */
+    private final int stringsOffset;
+
+    /**
+     * Decoded strings by numbers, {@code null} for the strings not decoded yet.
+     * Races decode a string twice at most, as strings are immutable.
+     */
+    private final String[] strings;
+
+    /**
+     * Lazily opened archive of the process.
+     */
+    private static final class Holder {
+        /**
+         * The archive, or {@code null} if there is none.
+         */
+        static final ResolutionArchive ARCHIVE = openDefault();
+    }
+
+    /**
+     * Validates the archive.
+     *
+     * @param buffer contents of the archive
+     * @throws IOException if the archive is invalid
+     */
+    private ResolutionArchive(final ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE
+                || buffer.getInt(MAGIC_OFFSET) != MAGIC
+                || buffer.getInt(FORMAT_OFFSET) != FORMAT) {
+            throw new IOException("Unsupported resolution archive");
+        }
+        this.buffer = buffer;
+        this.count = buffer.getInt(COUNT_OFFSET);
+        this.stringsOffset = buffer.getInt(STRINGS_OFFSET);
+        if (count < 0 || HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE > stringsOffset
+                || stringsOffset > buffer.capacity() - 4) {
+            throw new IOException("Corrupted resolution archive");
+        }
+        final int stringCount = buffer.getInt(stringsOffset);
+        if (stringCount < 0 || stringCount > (buffer.capacity() - stringsOffset - 4) / 4) {
+            throw new IOException("Corrupted resolution archive");
+        }
+        this.strings = new String[stringCount];
+    }
+
+    /**
+     * Maps the archive.
+     *
+     * @param archive the archive file
+     * @return the archive
+     * @throws IOException if the archive cannot be read or is invalid
+     */
+    static ResolutionArchive open(final Path archive) throws IOException {
+        try (final FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            return new ResolutionArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Opens the archive named by the {@value #PROPERTY} property, reporting errors.
+     *
+     * @return the archive, or {@code null} if the property is not set or the archive cannot be opened
+     */
+    private static ResolutionArchive openDefault() {
+        final String name = System.getProperty(PROPERTY);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return open(Paths.get(name));
+        } catch (final IOException | RuntimeException e) {
+            System.err.println("Error during opening a resolution archive: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the archived stub of the <var>token</var>.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the stub, or {@code null} if there is no archive of the process or it does not hold the token
+     */
+    static ClassStub lookup(final Class<?> token) {
+        final ResolutionArchive archive = Holder.ARCHIVE;
+        if (archive == null) {
+            return null;
+        }
+        final byte[] key = getKey(token);
+        return key == null ? null : archive.find(key);
+    }
+
+    /**
+     * Computes the key of the <var>token</var>: the digest of the {@link #FILE_DIGESTS file digests}
+     * of the token and all its supertypes, in breadth-first order.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the key, or {@code null} if a <var>.class</var> file cannot be read
+     */
+    static byte[] getKey(final Class<?> token) {
+        final Deque<Class<?>> queue = new ArrayDeque<>();
+        final Set<Class<?>> visited = new HashSet<>();
+        final ByteArrayOutputStream digests = new ByteArrayOutputStream();
+        queue.add(token);
+        while (!queue.isEmpty()) {
+            final Class<?> type = queue.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+            final byte[] digest = FILE_DIGESTS.get(type);
+            if (digest.length == 0) {
+                return null;
+            }
+            digests.writeBytes(digest);
+            if (type.getSuperclass() != null) {
+                queue.add(type.getSuperclass());
+            }
+            queue.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        return LocalJarCache.sha256(digests.toByteArray());
+    }
+
+    /**
+     * Returns the {@link #RUNTIME_IMAGE identity} of the runtime image.
+     *
+     * @return the identity
+     */
+    private static byte[] getRuntimeImageIdentity() {
+        final Path home = Paths.get(System.getProperty("java.home"));
+        final Path modules = home.resolve("lib").resolve("modules");
+        String identity = home.toAbsolutePath() + "\n" + System.getProperty("java.vm.vendor")
+                + "\n" + Runtime.version();
+        try {
+            identity += "\n" + Files.size(modules) + "\n" + Files.getLastModifiedTime(modules).toMillis();
+        } catch (final IOException e) {
+            // exploded image: the location and the version only
+        }
+        return identity.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tells whether the <var>type</var> is loaded from the runtime image:
+     * it belongs to a named module of the boot layer and is defined by the bootstrap or the platform class loader.
+     *
+     * @param type the class
+     * @return {@code true} if the class is loaded from the runtime image, {@code false} otherwise
+     */
+    private static boolean isRuntimeImage(final Class<?> type) {
+        final ClassLoader loader = type.getClassLoader();
+        return type.getModule().isNamed()
+                && type.getModule().getLayer() == ModuleLayer.boot()
+                && (loader == null || loader == ClassLoader.getPlatformClassLoader());
+    }
+
+    /**
+     * Keeps the <var>.jar</var> files read open until {@link #closeJars()}.
+     * Called by {@link MethodResolver} when the first resolution session is opened.
+     */
+    static void openJars() {
+        JARS_LOCK.writeLock().lock();
+        try {
+            if (jars == null) {
+                jars = new ConcurrentHashMap<>();
+            }
+        } finally {
+            JARS_LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the <var>.jar</var> files kept open since {@link #openJars()}, reporting errors.
+     * Called by {@link MethodResolver} when the last resolution session is closed.
+     */
+    static void closeJars() {
+        JARS_LOCK.writeLock().lock();
+        try {
+            if (jars != null) {
+                for (final JarFile jar : jars.values()) {
+                    try {
+                        jar.close();
+                    } catch (final IOException e) {
+                        System.err.println("Error during closing a jar file: " + e.getMessage());
+                    }
+                }
+                jars = null;
+            }
+        } finally {
+            JARS_LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Opens the <var>.jar</var> file for reading the <var>.class</var> files of the runtime version.
+     *
+     * @param path path of the <var>.jar</var> file
+     * @return the opened file
+     * @throws IOException if the file cannot be opened
+     */
+    private static JarFile openJar(final Path path) throws IOException {
+        return new JarFile(path.toFile(), true, ZipFile.OPEN_READ, Runtime.version());
+    }
+
+    /**
+     * Reads the entry of the <var>.jar</var> file.
+     *
+     * @param jar       the <var>.jar</var> file
+     * @param entryName name of the entry
+     * @return the contents of the entry, or {@code null} if there is none
+     * @throws IOException if an error occurred trying to read the entry
+     */
+    private static byte[] readEntry(final JarFile jar, final String entryName) throws IOException {
+        final JarEntry entry = jar.getJarEntry(entryName);
+        if (entry == null) {
+            return null;
+        }
+        try (final InputStream in = jar.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Reads the <var>.class</var> file of the <var>type</var>.
+     * The classes loaded from <var>.jar</var> files are read from the {@link #jars opened files} if there are
+     * open resolution sessions, as looking resources up through the class loaders opens them anew for every class.
+     *
+     * @param type the class
+     * @return the contents of the <var>.class</var> file, or {@code null} if it cannot be found
+     * @throws ImplerException if an error occurred trying to read the <var>.class</var> file
+     */
+    private static byte[] readClassFile(final Class<?> type) throws ImplerException {
+        final Path codeSource = Util.getCodeSource(type);
+        final String entryName = type.getName().replace('.', '/') + ".class";
+        try {
+            if (codeSource != null && Files.isRegularFile(codeSource)) {
+                final byte[] bytes;
+                JARS_LOCK.readLock().lock();
+                try {
+                    if (jars != null) {
+                        bytes = readEntry(jars.computeIfAbsent(codeSource, path -> {
+                            try {
+                                return openJar(path);
+                            } catch (final IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }), entryName);
+                    } else {
+                        try (final JarFile jar = openJar(codeSource)) {
+                            bytes = readEntry(jar, entryName);
+                        }
+                    }
+                } finally {
+                    JARS_LOCK.readLock().unlock();
+                }
+                if (bytes != null) {
+                    return bytes;
+                }
+            } else if (codeSource != null && Files.isRegularFile(codeSource.resolve(entryName))) {
+                return Files.readAllBytes(codeSource.resolve(entryName));
+            }
+        } catch (final IOException | UncheckedIOException e) {
+            throw new ImplerException("Error during reading a class file: " + e.getMessage(), e);
+        }
+        return Util.getClassBytes(type);
+    }
+
+    /**
+     * Finds the record of the key by binary search and decodes it.
+     * A corrupted record is treated as a missing one.
+     *
+     * @param key the key
+     * @return the stub, or {@code null} if there is no record of the key
+     */
+    ClassStub find(final byte[] key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int comparison = compareKey(HEADER_SIZE + mid * INDEX_ENTRY_SIZE, key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                try {
+                    return new Reader(buffer.getInt(HEADER_SIZE + mid * INDEX_ENTRY_SIZE + KEY_SIZE)).readClass();
+                } catch (final RuntimeException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares the key stored at the <var>offset</var> with the <var>key</var> as unsigned bytes.
+     *
+     * @param offset offset of the stored key
+     * @param key    the key
+     * @return negative if the stored key is less, zero if they are equal and positive if it is greater
+     */
+    private int compareKey(final int offset, final byte[] key) {
+        for (int i = 0; i < KEY_SIZE; i++) {
+            final int comparison = Integer.compare(buffer.get(offset + i) & 0xff, key[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the string of the pool.
+     *
+     * @param index number of the string
+     * @return the string
+     */
+    private String getString(final int index) {
+        String string = strings[index];
+        if (string == null) {
+            final int offset = buffer.getInt(stringsOffset + 4 + index * 4);
+            final byte[] bytes = new byte[buffer.getInt(offset)];
+            buffer.get(offset + 4, bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    /**
+     * Sequential reader of a record.
+     */
+    private final class Reader {
+        /**
+         * Offset of the next value.
+         */
+        private int position;
+
+        /**
+         * Constructs a reader of the record at the <var>offset</var>.
+         *
+         * @param offset offset of the record
+         */
+        Reader(final int offset) {
+            this.position = offset;
+        }
+
+        /**
+         * Reads the next {@code int}.
+         *
+         * @return the value
+         */
+        private int readInt() {
+            final int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        /**
+         * Reads the next string reference.
+         *
+         * @return the string
+         */
+        private String readString() {
+            return getString(readInt());
+        }
+
+        /**
+         * Reads the next type name.
+         *
+         * @return the type name
+         */
+        private ClassStub.TypeName readType() {
+            return new ClassStub.TypeName(readString(), readString());
+        }
+
+        /**
+         * Reads the next list of type names, prefixed by its size.
+         *
+         * @return unmodifiable list of the type names
+         */
+        private List<ClassStub.TypeName> readTypes() {
+            final ClassStub.TypeName[] types = new ClassStub.TypeName[readInt()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = readType();
+            }
+            return List.of(types);
+        }
+
+        /**
+         * Reads the next method or constructor.
+         *
+         * @param constructor whether a constructor is read
+         * @return the method stub
+         */
+        private ClassStub.MethodStub readMethod(final boolean constructor) {
+            final int modifiers = readInt();
+            final String name = readString();
+            final ClassStub.TypeName returnType = constructor ? null : readType();
+            final List<ClassStub.TypeName> parameterTypes = readTypes();
+            return new ClassStub.MethodStub(modifiers, name, returnType, parameterTypes, readTypes());
+        }
+
+        /**
+         * Reads the record.
+         *
+         * @return the stub
+         */
+        ClassStub readClass() {
+            final String name = readString();
+            final String packageName = readString();
+            final String simpleName = readString();
+            final String canonicalName = readString();
+            final boolean isInterface = (readInt() & INTERFACE) != 0;
+            final ClassStub.MethodStub constructor = isInterface ? null : readMethod(true);
+            final ClassStub.MethodStub[] methods = new ClassStub.MethodStub[readInt()];
+            for (int i = 0; i < methods.length; i++) {
+                methods[i] = readMethod(false);
+            }
+            return new ClassStub(name, packageName, simpleName, canonicalName, isInterface, constructor,
+                    List.of(methods));
+        }
+    }
+
+    /**
+     * Writer of the records, collecting the strings they refer to into a pool.
+     */
+    private static final class Writer {
+        /**
+         * Records being written.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Stream writing the {@link #bytes}.
+         */
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        /**
+         * Numbers of the strings of the pool.
+         */
+        private final Map<String, Integer> numbers = new HashMap<>();
+
+        /**
+         * Strings of the pool in the order of their numbers.
+         */
+        private final List<String> pool = new ArrayList<>();
+
+        /**
+         * Writes a string reference, adding the string to the pool if needed.
+         *
+         * @param string the string
+         * @throws IOException never, as the records are written to memory
+         */
+        private void writeString(final String string) throws IOException {
+            Integer number = numbers.get(string);
+            if (number == null) {
+                number = pool.size();
+                numbers.put(string, number);
+                pool.add(string);
+            }
+            out.writeInt(number);
+        }
+
+        /**
+         * Writes a type name.
+         *
+         * @param type the type name
+         * @throws IOException never, as the records are written to memory
+         */
+        private void writeType(final ClassStub.TypeName type) throws IOException {
+            writeString(type.name);
+            writeString(type.canonicalName);
+        }
+
+        /**
+         * Writes a list of type names, prefixed by its size.
+         *
+         * @param types the type names
+         * @throws IOException never, as the records are written to memory
+         */
+        private void writeTypes(final List<ClassStub.TypeName> types) throws IOException {
+            out.writeInt(types.size());
+            for (final ClassStub.TypeName type : types) {
+                writeType(type);
+            }
+        }
+
+        /**
+         * Writes a method or a constructor.
+         *
+         * @param method the method stub
+         * @throws IOException never, as the records are written to memory
+         */
+        private void writeMethod(final ClassStub.MethodStub method) throws IOException {
+            out.writeInt(method.modifiers);
+            writeString(method.name);
+            if (!method.isConstructor()) {
+                writeType(method.returnType);
+            }
+            writeTypes(method.parameterTypes);
+            writeTypes(method.exceptionTypes);
+        }
+
+        /**
+         * Writes the record of the stub.
+         *
+         * @param stub the stub
+         * @return offset of the record relative to the first record
+         * @throws IOException never, as the records are written to memory
+         */
+        int writeClass(final ClassStub stub) throws IOException {
+            final int offset = out.size();
+            writeString(stub.name);
+            writeString(stub.packageName);
+            writeString(stub.simpleName);
+            writeString(stub.canonicalName);
+            out.writeInt(stub.isInterface ? INTERFACE : 0);
+            if (!stub.isInterface) {
+                writeMethod(stub.constructor);
+            }
+            out.writeInt(stub.methods.size());
+            for (final ClassStub.MethodStub method : stub.methods) {
+                writeMethod(method);
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Writes the archive of the stubs of the <var>tokens</var>, resolved by reflection.
+     * Tokens that cannot be implemented or whose <var>.class</var> files cannot be read are skipped.
+     * The archive is written to a temporary file first and then moved.
+     *
+     * @param archive where to write the archive
+     * @param tokens  tokens to resolve
+     * @return number of the archived stubs
+     * @throws ImplerException if an error occurred trying to write the archive
+     */
+    static int write(final Path archive, final Collection<Class<?>> tokens) throws ImplerException {
+        final Writer writer = new Writer();
+        final Map<byte[], Integer> offsets = new TreeMap<>(Arrays::compareUnsigned);
+        try {
+            for (final Class<?> token : tokens) {
+                final byte[] key = getKey(token);
+                if (key == null || offsets.containsKey(key)) {
+                    continue;
+                }
+                final ClassStub stub;
+                try {
+                    Implementor.checkToken(token);
+                    stub = ClassStub.reflect(token);
+                } catch (final ImplerException | LinkageError e) {
+                    continue;
+                }
+                offsets.put(key, writer.writeClass(stub));
+            }
+            final int recordsOffset = HEADER_SIZE + offsets.size() * INDEX_ENTRY_SIZE;
+            final int stringsOffset = recordsOffset + writer.bytes.size();
+            Util.createDirectories(archive);
+            final Path temp = Files.createTempFile(Util.getParent(archive), "resolutions", ".tmp");
+            try {
+                try (final DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT);
+                    out.writeInt(offsets.size());
+                    out.writeInt(stringsOffset);
+                    for (final Map.Entry<byte[], Integer> entry : offsets.entrySet()) {
+                        out.write(entry.getKey());
+                        out.writeInt(recordsOffset + entry.getValue());
+                    }
+                    writer.bytes.writeTo(out);
+                    final List<byte[]> encoded = new ArrayList<>(writer.pool.size());
+                    for (final String string : writer.pool) {
+                        encoded.add(string.getBytes(StandardCharsets.UTF_8));
+                    }
+                    out.writeInt(encoded.size());
+                    int offset = stringsOffset + 4 + encoded.size() * 4;
+                    for (final byte[] string : encoded) {
+                        out.writeInt(offset);
+                        offset += 4 + string.length;
+                    }
+                    for (final byte[] string : encoded) {
+                        out.writeInt(string.length);
+                        out.write(string);
+                    }
+                }
+                Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            throw new ImplerException("Error during writing a resolution archive: " + e.getMessage(), e);
+        }
+        return offsets.size();
+    }
+}
@@ -0,0 +1,120 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * {@link LocalJarCache} shared by the processes of a node.
+ * The index is guarded by a lock on the index file, see {@link LocalJarCache}.
+ * <p>
+ * Producers of the same key are coordinated by {@link #lease(String) leases}:
+ * a lease is a lock on a byte of the <var>leases</var> file, chosen by the hash of the key,
+ * together with a lock of the same stripe inside the process, as file locks are held by whole processes.
+ * A lease of a crashed process is released by the operating system,
+ * and the waiting producer finds no entry and produces it itself.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class SharedJarCache extends LocalJarCache {
+    /**
+     * Number of lease stripes.
+     */
+    private static final int STRIPES = 4096;
+
+    /**
+     * Locks of the lease stripes inside the process, by real paths of the cache directories.
+     */
+    private static final ConcurrentMap<Path, ReentrantLock[]> STRIPE_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Channel of the leases file.
+     */
+    private final FileChannel leases;
+
+    /**
+     * Locks of the lease stripes of the cache directory inside the process.
+     */
+    private final ReentrantLock[] stripeLocks;
+
+    /**
+     * Opens the shared cache in the <var>root</var> directory, creating it if needed.
+     *
+     * @param root     directory of the cache
+     * @param maxBytes maximal total size of the entries, in bytes
+     * @throws ImplerException if the cache directory, the index or the leases file cannot be opened
+     */
+    public SharedJarCache(final Path root, final long maxBytes) throws ImplerException {
+        super(root, maxBytes, true);
+        try {
+            this.stripeLocks = STRIPE_LOCKS.computeIfAbsent(root.toRealPath(), path -> {
+                final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+                for (int i = 0; i < STRIPES; i++) {
+                    locks[i] = new ReentrantLock();
+                }
+                return locks;
+            });
+            this.leases = FileChannel.open(root.resolve("leases"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (final IOException e) {
+            super.close();
+            throw new ImplerException("Error during opening a cache: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens the shared cache in the <var>root</var> directory with the {@link #DEFAULT_MAX_BYTES default size}.
+     *
+     * @param root directory of the cache
+     * @throws ImplerException if the cache directory, the index or the leases file cannot be opened
+     */
+    public SharedJarCache(final Path root) throws ImplerException {
+        this(root, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Waits for the other threads and processes holding the lease of the same stripe.
+     */
+    @Override
+    public Lease lease(final String key) throws ImplerException {
+        nullAssertion(key);
+        final int stripe = Math.floorMod(key.hashCode(), STRIPES);
+        final ReentrantLock stripeLock = stripeLocks[stripe];
+        stripeLock.lock();
+        final FileLock fileLock;
+        try {
+            fileLock = lock(leases, stripe);
+        } catch (final IOException e) {
+            stripeLock.unlock();
+            throw new ImplerException("Error during acquiring a lease: " + e.getMessage(), e);
+        }
+        return () -> {
+            try {
+                fileLock.release();
+            } catch (final IOException e) {
+                System.err.println("Error during releasing a lease: " + e.getMessage());
+            } finally {
+                stripeLock.unlock();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        try {
+            leases.close();
+        } catch (final IOException e) {
+            System.err.println("Error during closing a leases file: " + e.getMessage());
+        }
+    }
+}
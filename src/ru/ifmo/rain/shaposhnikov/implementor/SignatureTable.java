@@ -0,0 +1,148 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Interning table of method signatures.
+ * Every distinct signature, that is a name, parameter types and a return type, gets a dense {@code int} id,
+ * so methods are compared and hashed by ids instead of by their parameter type arrays.
+ * <p>
+ * Signatures are kept in parallel arrays indexed by id, and ids are found through an open-addressed
+ * table of ids with linear probing, so interning a known signature allocates nothing but the copy
+ * of the parameter types returned by {@link Method#getParameterTypes()}.
+ * The table is thread-safe and only grows, so ids stay valid for the lifetime of the table.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class SignatureTable {
+    /**
+     * Initial number of signatures the table has room for.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Names of the signatures by ids.
+     */
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    /**
+     * Parameter types of the signatures by ids.
+     */
+    private Class<?>[][] parameters = new Class<?>[INITIAL_CAPACITY][];
+
+    /**
+     * Return types of the signatures by ids.
+     */
+    private Class<?>[] returnTypes = new Class<?>[INITIAL_CAPACITY];
+
+    /**
+     * Cached hashes of the signatures by ids.
+     */
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    /**
+     * Open-addressed table of signature ids plus one, {@code 0} marks an empty slot.
+     * Its length is a power of two at least twice the capacity of the signature arrays.
+     */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Number of interned signatures.
+     */
+    private int size;
+
+    /**
+     * Returns the hash of a signature.
+     * Classes are hashed by identity, as signatures of the same classes are compared by identity too.
+     *
+     * @param name       name of the method
+     * @param parameters parameter types of the method
+     * @param returnType return type of the method
+     * @return the hash
+     */
+    private static int hash(final String name, final Class<?>[] parameters, final Class<?> returnType) {
+        int hash = name.hashCode() * 31 + System.identityHashCode(returnType);
+        for (final Class<?> parameter : parameters) {
+            hash = hash * 31 + System.identityHashCode(parameter);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the id of the signature of the <var>method</var>, interning the signature if it is new.
+     *
+     * @param method the method
+     * @return id of the signature, from {@code 0} to the number of interned signatures exclusive
+     */
+    int intern(final Method method) {
+        final String name = method.getName();
+        final Class<?>[] methodParameters = method.getParameterTypes();
+        final Class<?> returnType = method.getReturnType();
+        final int hash = hash(name, methodParameters, returnType);
+        synchronized (this) {
+            final int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                final int id = slots[slot] - 1;
+                if (hashes[id] == hash && returnTypes[id] == returnType
+                        && names[id].equals(name) && Arrays.equals(parameters[id], methodParameters)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == names.length) {
+                grow();
+            }
+            return add(name, methodParameters, returnType, hash);
+        }
+    }
+
+    /**
+     * Adds a signature known to be new to the table that has room for it.
+     *
+     * @param name       name of the method
+     * @param parameters parameter types of the method
+     * @param returnType return type of the method
+     * @param hash       hash of the signature
+     * @return id of the signature
+     */
+    private int add(final String name, final Class<?>[] parameters, final Class<?> returnType, final int hash) {
+        final int id = size++;
+        names[id] = name;
+        this.parameters[id] = parameters;
+        returnTypes[id] = returnType;
+        hashes[id] = hash;
+        place(id);
+        return id;
+    }
+
+    /**
+     * Puts the <var>id</var> into the first empty slot of its probe sequence.
+     *
+     * @param id id of an interned signature
+     */
+    private void place(final int id) {
+        final int mask = slots.length - 1;
+        int slot = hashes[id] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    /**
+     * Doubles the capacity of the table and rebuilds the table of ids.
+     */
+    private void grow() {
+        final int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        parameters = Arrays.copyOf(parameters, capacity);
+        returnTypes = Arrays.copyOf(returnTypes, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        slots = new int[capacity * 2];
+        for (int id = 0; id < size; id++) {
+            place(id);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emitter of the source code of implementation classes.
+ * The code is produced by {@link Template templates} whose literal parts are split once,
+ * and whose holes append the parts taken from the {@link ClassStub stub} of the class directly into a character buffer.
+ * No intermediate strings are built, so emitting a method allocates nothing.
+ * <p>
+ * Every thread has its own emitter with a reusable pre-sized buffer, see {@link #get()}.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class SourceEmitter {
+    /**
+     * Initial capacity of the buffer, enough for classes with a few hundred methods.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    /**
+     * Maximal capacity of the buffer kept between classes.
+     * The buffer grown larger by a huge class is replaced with a fresh one.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    /**
+     * Line separator of the generated code.
+     */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * Emitters of the threads.
+     */
+    private static final ThreadLocal<SourceEmitter> EMITTERS = ThreadLocal.withInitial(SourceEmitter::new);
+
+    /**
+     * Package line and declaration of the implementation class.
+     */
+    private static final Template<ClassStub> HEADER = new Template<>(
+            "$" + LINE_SEPARATOR + "public class $ $ $ {" + LINE_SEPARATOR,
+            List.of(SourceEmitter::appendPackage,
+                    SourceEmitter::appendImplName,
+                    (sb, stub) -> sb.append(stub.isInterface ? "implements" : "extends"),
+                    (sb, stub) -> sb.append(stub.canonicalName)));
+
+    /**
+     * Constructor of the implementation class, calling the constructor of the superclass with its arguments.
+     */
+    private static final Template<ClassStub> CONSTRUCTOR = new Template<>(
+            "\t$ $($) $ {" + LINE_SEPARATOR + "\t\tsuper($);" + LINE_SEPARATOR + "\t}" + LINE_SEPARATOR,
+            List.of((sb, stub) -> appendModifiers(sb, stub.constructor),
+                    SourceEmitter::appendImplName,
+                    (sb, stub) -> appendParameters(sb, stub.constructor),
+                    (sb, stub) -> appendExceptions(sb, stub.constructor),
+                    (sb, stub) -> appendArguments(sb, stub.constructor)));
+
+    /**
+     * Implementation of a method, returning the default value of its return type.
+     */
+    private static final Template<ClassStub.MethodStub> METHOD = new Template<>(
+            "\t$ $ $($) $ {" + LINE_SEPARATOR + "\t\treturn $;" + LINE_SEPARATOR + "\t}" + LINE_SEPARATOR,
+            List.of(SourceEmitter::appendModifiers,
+                    (sb, method) -> sb.append(method.returnType.canonicalName),
+                    (sb, method) -> sb.append(method.name),
+                    SourceEmitter::appendParameters,
+                    SourceEmitter::appendExceptions,
+                    SourceEmitter::appendDefaultValue));
+
+    /**
+     * Modifiers in the order of {@link Modifier#toString(int)}, with their names.
+     */
+    private static final int[] MODIFIERS = {
+            Modifier.PUBLIC, Modifier.PROTECTED, Modifier.PRIVATE, Modifier.ABSTRACT, Modifier.STATIC,
+            Modifier.FINAL, Modifier.TRANSIENT, Modifier.VOLATILE, Modifier.SYNCHRONIZED, Modifier.NATIVE,
+            Modifier.STRICT, Modifier.INTERFACE
+    };
+
+    /**
+     * Names of the {@link #MODIFIERS}.
+     */
+    private static final String[] MODIFIER_NAMES = {
+            "public", "protected", "private", "abstract", "static",
+            "final", "transient", "volatile", "synchronized", "native",
+            "strictfp", "interface"
+    };
+
+    /**
+     * Buffer the code is emitted to.
+     */
+    private StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+
+    /**
+     * Use {@link #get()}.
+     */
+    private SourceEmitter() {
+    }
+
+    /**
+     * Returns the emitter of the current thread.
+     *
+     * @return the emitter
+     */
+    static SourceEmitter get() {
+        return EMITTERS.get();
+    }
+
+    /**
+     * Part of a template filled with a value taken from the template argument.
+     *
+     * @param <T> type of the template argument
+     */
+    @FunctionalInterface
+    private interface Hole<T> {
+        /**
+         * Appends the value of the hole.
+         *
+         * @param sb       where to append
+         * @param argument the template argument
+         */
+        void fill(StringBuilder sb, T argument);
+    }
+
+    /**
+     * Text with holes marked by <var>$</var>.
+     *
+     * @param <T> type of the template argument
+     */
+    private static final class Template<T> {
+        /**
+         * Literal parts of the template, one more than there are holes.
+         */
+        private final String[] literals;
+
+        /**
+         * Holes of the template in the order of their appearance.
+         */
+        private final List<Hole<T>> holes;
+
+        /**
+         * Splits the <var>pattern</var> into literal parts.
+         *
+         * @param pattern text with holes marked by <var>$</var>
+         * @param holes   holes of the template in the order of their appearance
+         */
+        Template(final String pattern, final List<Hole<T>> holes) {
+            final List<String> literals = new ArrayList<>();
+            int start = 0;
+            for (int i = pattern.indexOf('$'); i >= 0; i = pattern.indexOf('$', start)) {
+                literals.add(pattern.substring(start, i));
+                start = i + 1;
+            }
+            literals.add(pattern.substring(start));
+            if (literals.size() != holes.size() + 1) {
+                throw new IllegalArgumentException("Expected " + holes.size() + " holes in " + pattern);
+            }
+            this.literals = literals.toArray(new String[0]);
+            this.holes = holes;
+        }
+
+        /**
+         * Appends the template filled with the <var>argument</var>.
+         *
+         * @param sb       where to append
+         * @param argument the template argument
+         */
+        void emit(final StringBuilder sb, final T argument) {
+            sb.append(literals[0]);
+            for (int i = 0; i < holes.size(); i++) {
+                holes.get(i).fill(sb, argument);
+                sb.append(literals[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * Emits the source code of the implementation class of the <var>token</var>.
+     * The result is the buffer of the emitter and is only valid until the next call on the same emitter.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the source code
+     * @throws ImplerException if there are no appropriate constructors in a class given
+     */
+    CharSequence emit(final Class<?> token) throws ImplerException {
+        return emit(ClassStub.of(token));
+    }
+
+    /**
+     * Emits the source code of the implementation class of the <var>stub</var>.
+     * The result is the buffer of the emitter and is only valid until the next call on the same emitter.
+     *
+     * @param stub the stub of a parent class or an interface that is being implemented
+     * @return the source code
+     */
+    CharSequence emit(final ClassStub stub) {
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_CAPACITY);
+        }
+        final StringBuilder sb = buffer;
+        sb.setLength(0);
+        HEADER.emit(sb, stub);
+        if (!stub.isInterface) {
+            CONSTRUCTOR.emit(sb, stub);
+        }
+        for (final ClassStub.MethodStub method : stub.methods) {
+            METHOD.emit(sb, method);
+        }
+        sb.append('}');
+        return sb;
+    }
+
+    /**
+     * Appends the package line, if the token is placed in a package.
+     *
+     * @param sb   where to append
+     * @param stub the stub of a parent class or an interface that is being implemented
+     */
+    private static void appendPackage(final StringBuilder sb, final ClassStub stub) {
+        if (!stub.packageName.isEmpty()) {
+            sb.append("package ").append(stub.packageName).append(';');
+        }
+    }
+
+    /**
+     * Appends the simple name of the implementation class.
+     *
+     * @param sb   where to append
+     * @param stub the stub of a parent class or an interface that is being implemented
+     * @see Util#getImplSimpleName(Class)
+     */
+    private static void appendImplName(final StringBuilder sb, final ClassStub stub) {
+        sb.append(stub.simpleName).append("Impl");
+    }
+
+    /**
+     * Appends the modifiers of the implementation,
+     * which are the modifiers of the <var>method</var> except abstract, native and transient.
+     * The modifiers are appended as {@link Modifier#toString(int)} would return them.
+     *
+     * @param sb     where to append
+     * @param method method or constructor that is being implemented
+     */
+    private static void appendModifiers(final StringBuilder sb, final ClassStub.MethodStub method) {
+        final int modifiers = method.modifiers & ~Modifier.ABSTRACT & ~Modifier.NATIVE & ~Modifier.TRANSIENT;
+        boolean first = true;
+        for (int i = 0; i < MODIFIERS.length; i++) {
+            if ((modifiers & MODIFIERS[i]) != 0) {
+                if (!first) {
+                    sb.append(' ');
+                }
+                sb.append(MODIFIER_NAMES[i]);
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Appends the parameters, separated by commas with a space.
+     * Parameters are named <var>arg0</var>, <var>arg1</var>, and so on.
+     *
+     * @param sb     where to append
+     * @param method method or constructor that is being implemented
+     */
+    private static void appendParameters(final StringBuilder sb, final ClassStub.MethodStub method) {
+        final List<ClassStub.TypeName> parameterTypes = method.parameterTypes;
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(parameterTypes.get(i).canonicalName).append(" arg").append(i);
+        }
+    }
+
+    /**
+     * Appends the <var>throws</var> clause, if the <var>method</var> declares exceptions.
+     *
+     * @param sb     where to append
+     * @param method method or constructor that is being implemented
+     */
+    private static void appendExceptions(final StringBuilder sb, final ClassStub.MethodStub method) {
+        final List<ClassStub.TypeName> exceptionTypes = method.exceptionTypes;
+        for (int i = 0; i < exceptionTypes.size(); i++) {
+            sb.append(i == 0 ? "throws " : ", ").append(exceptionTypes.get(i).canonicalName);
+        }
+    }
+
+    /**
+     * Appends the arguments of the superclass constructor call, which are the parameters of the constructor.
+     *
+     * @param sb          where to append
+     * @param constructor constructor of the superclass
+     */
+    private static void appendArguments(final StringBuilder sb, final ClassStub.MethodStub constructor) {
+        for (int i = 0; i < constructor.parameterTypes.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("arg").append(i);
+        }
+    }
+
+    /**
+     * Appends the default value of the return type of the <var>method</var>, nothing for {@code void}.
+     *
+     * @param sb     where to append
+     * @param method method that is being implemented
+     */
+    private static void appendDefaultValue(final StringBuilder sb, final ClassStub.MethodStub method) {
+        final ClassStub.TypeName returnType = method.returnType;
+        if (returnType.name.equals("boolean")) {
+            sb.append("false");
+        } else if (returnType.name.equals("void")) {
+            return;
+        } else if (returnType.isPrimitive()) {
+            sb.append('0');
+        } else {
+            sb.append("null");
+        }
+    }
+}
@@ -0,0 +1,687 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * Streaming batch implementation of <var>.jar</var> files with bounded memory.
+ * Tokens flow through four {@link Stage stages} connected by bounded queues: resolution of the {@link ClassStub stubs},
+ * emission of the sources, compilation in chunks by {@link ClassCompiler#compileAll(Map, Map)}
+ * and packaging into <var>.jar</var> files. A stage blocks when the queue of the next one is full,
+ * so a slow stage holds the previous ones back down to the caller supplying the tokens,
+ * and the number of tokens in flight, with their stubs, sources and class bytes, never exceeds
+ * the capacities of the queues plus the tokens being processed, however many tokens there are.
+ * <p>
+ * The stages overlap: while a chunk compiles, the next tokens are resolved and emitted and the previous chunk
+ * is written. Resolution, emission and compilation run on a pool of platform threads sized to their workers,
+ * writing the <var>.jar</var> files, which mostly blocks on the file system, runs on a separate pool
+ * of virtual threads when the runtime provides them and of platform threads otherwise.
+ * Several chunks may compile at once: the number of concurrent compilations is adjusted by a {@link CompileAdmission}
+ * to the throughput they reach and the heap they leave.
+ * <p>
+ * Results are not collected: every token is reported to the listeners as soon as it is written or fails,
+ * from the thread of the stage. {@link #getQueueDepths()} shows how many tokens wait for every stage,
+ * so the full queue in front of the bottleneck stage can be observed while the pipeline is running.
+ * <p>
+ * A listener throwing does not stop the pipeline: the batch is completed and the first error is thrown then.
+ * A worker of a stage dying of an unexpected error passes the end of the tokens on as if it finished,
+ * and the batch is abandoned as soon as the calling thread sees it.
+ * <p>
+ * Repeated tokens are implemented repeatedly, as remembering every token would take memory growing with the input.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class StreamingImplementor {
+    /**
+     * Default capacity of the queue of every stage.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Default number of tokens compiled together.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+
+    /**
+     * Default number of threads writing the <var>.jar</var> files.
+     */
+    public static final int DEFAULT_WRITERS = 8;
+
+    /**
+     * Marker of the end of the tokens, passed from stage to stage.
+     */
+    private static final Work END = new Work(null);
+
+    /**
+     * Interval of checking the workers while the calling thread waits for room in the pipeline, in milliseconds.
+     */
+    private static final long CHECK_INTERVAL = 50;
+
+    /**
+     * Stages of the pipeline, in the order tokens pass them.
+     */
+    public enum Stage {
+        /**
+         * Checking the token and resolving its {@link ClassStub stub}.
+         */
+        RESOLVE,
+        /**
+         * Emitting the source of the implementation, if the compiler requires it.
+         */
+        EMIT,
+        /**
+         * Compiling chunks of implementations together.
+         */
+        COMPILE,
+        /**
+         * Writing the <var>.jar</var> files.
+         */
+        PACKAGE
+    }
+
+    /**
+     * Compiler of the generated classes.
+     */
+    private final ClassCompiler compiler;
+
+    /**
+     * Capacity of the queue of every stage.
+     */
+    private final int capacity;
+
+    /**
+     * Maximal number of tokens compiled together.
+     */
+    private final int chunkSize;
+
+    /**
+     * Number of threads emitting the sources.
+     */
+    private final int emitters;
+
+    /**
+     * Number of threads writing the <var>.jar</var> files.
+     */
+    private final int writers;
+
+    /**
+     * Maximal number of concurrent compilations.
+     */
+    private final int compilers;
+
+    /**
+     * Controller of the number of concurrent compilations, kept between batches.
+     */
+    private final CompileAdmission admission;
+
+    /**
+     * The running batch, or the last one.
+     */
+    private volatile Batch batch;
+
+    /**
+     * Token with the results of the stages it has passed.
+     * Results are dropped as soon as the next stage has used them.
+     */
+    private static final class Work {
+        /**
+         * The token.
+         */
+        final Class<?> token;
+
+        /**
+         * The stub, set by {@link Stage#RESOLVE}.
+         */
+        ClassStub stub;
+
+        /**
+         * The source, set by {@link Stage#EMIT}.
+         */
+        String source;
+
+        /**
+         * Contents of the <var>.class</var> file, set by {@link Stage#COMPILE}.
+         */
+        byte[] classBytes;
+
+        /**
+         * Constructs the work of a token.
+         *
+         * @param token the token
+         */
+        Work(final Class<?> token) {
+            this.token = token;
+        }
+    }
+
+    /**
+     * State of a batch: the queues of the stages and the listeners.
+     * Every batch has its own queues, so the workers of an abandoned batch that have not stopped yet
+     * cannot pass their tokens to the next one.
+     */
+    private static final class Batch {
+        /**
+         * Queues of the stages.
+         */
+        final Map<Stage, BlockingQueue<Work>> queues = new EnumMap<>(Stage.class);
+
+        /**
+         * Listener of the written tokens.
+         */
+        private final BiConsumer<Class<?>, Path> implemented;
+
+        /**
+         * Listener of the failed tokens.
+         */
+        private final BiConsumer<Class<?>, ImplerException> failed;
+
+        /**
+         * The first error thrown by a listener, {@code null} if there was none.
+         */
+        private final AtomicReference<Throwable> listenerError = new AtomicReference<>();
+
+        /**
+         * Constructs a batch.
+         *
+         * @param capacity    capacity of the queue of every stage
+         * @param implemented listener of the written tokens
+         * @param failed      listener of the failed tokens
+         */
+        Batch(final int capacity, final BiConsumer<Class<?>, Path> implemented,
+              final BiConsumer<Class<?>, ImplerException> failed) {
+            for (final Stage stage : Stage.values()) {
+                queues.put(stage, new ArrayBlockingQueue<>(capacity));
+            }
+            this.implemented = implemented;
+            this.failed = failed;
+        }
+
+        /**
+         * Reports a written token. An error thrown by the listener is kept, see {@link #getListenerError()}.
+         *
+         * @param token   the token
+         * @param jarFile the <var>.jar</var> file
+         */
+        void implemented(final Class<?> token, final Path jarFile) {
+            try {
+                implemented.accept(token, jarFile);
+            } catch (final RuntimeException | Error e) {
+                listenerError.compareAndSet(null, e);
+            }
+        }
+
+        /**
+         * Reports a failed token. An error thrown by the listener is kept, see {@link #getListenerError()}.
+         *
+         * @param token the token
+         * @param cause the cause of the failure
+         */
+        void failed(final Class<?> token, final ImplerException cause) {
+            try {
+                failed.accept(token, cause);
+            } catch (final RuntimeException | Error e) {
+                listenerError.compareAndSet(null, e);
+            }
+        }
+
+        /**
+         * Returns the first error thrown by a listener.
+         *
+         * @return the error, or {@code null} if there was none
+         */
+        Throwable getListenerError() {
+            return listenerError.get();
+        }
+    }
+
+    /**
+     * Constructs a pipeline compiling with the given <var>compiler</var>, with the {@link #DEFAULT_CAPACITY default}
+     * queue capacity, {@link #DEFAULT_CHUNK_SIZE chunk size} and {@link #DEFAULT_WRITERS writers}
+     * and a source emitting thread and up to a compilation per processor.
+     *
+     * @param compiler compiler of the generated classes
+     */
+    public StreamingImplementor(final ClassCompiler compiler) {
+        this(compiler, DEFAULT_CAPACITY, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_WRITERS);
+    }
+
+    /**
+     * Constructs a pipeline with up to a compilation per processor.
+     *
+     * @param compiler  compiler of the generated classes
+     * @param capacity  capacity of the queue of every stage
+     * @param chunkSize maximal number of tokens compiled together, not greater than the capacity
+     * @param emitters  number of threads emitting the sources
+     * @param writers   number of threads writing the <var>.jar</var> files
+     * @throws IllegalArgumentException if a number is not positive or the chunk size exceeds the capacity
+     */
+    public StreamingImplementor(final ClassCompiler compiler, final int capacity, final int chunkSize,
+                                final int emitters, final int writers) {
+        this(compiler, capacity, chunkSize, emitters, Runtime.getRuntime().availableProcessors(), writers);
+    }
+
+    /**
+     * Constructs a pipeline.
+     *
+     * @param compiler  compiler of the generated classes
+     * @param capacity  capacity of the queue of every stage
+     * @param chunkSize maximal number of tokens compiled together, not greater than the capacity
+     * @param emitters  number of threads emitting the sources
+     * @param compilers maximal number of concurrent compilations, adjusted by a {@link CompileAdmission}
+     * @param writers   number of threads writing the <var>.jar</var> files
+     * @throws IllegalArgumentException if a number is not positive or the chunk size exceeds the capacity
+     */
+    public StreamingImplementor(final ClassCompiler compiler, final int capacity, final int chunkSize,
+                                final int emitters, final int compilers, final int writers) {
+        if (capacity <= 0 || chunkSize <= 0 || chunkSize > capacity || emitters <= 0 || compilers <= 0
+                || writers <= 0) {
+            throw new IllegalArgumentException("Invalid pipeline parameters");
+        }
+        this.compiler = Objects.requireNonNull(compiler, "Expected non null compiler");
+        this.capacity = capacity;
+        this.chunkSize = chunkSize;
+        this.emitters = emitters;
+        this.writers = writers;
+        this.compilers = compilers;
+        this.admission = new CompileAdmission(compilers);
+        this.batch = new Batch(capacity, (token, jarFile) -> {
+        }, (token, cause) -> {
+        });
+    }
+
+    /**
+     * Returns the number of tokens waiting for every stage of the running batch, or of the last one.
+     * A stage whose queue stays full is slower than the previous ones, and a stage whose queue stays empty
+     * waits for the previous ones.
+     *
+     * @return queue depths by stages, in the order of the stages
+     */
+    public Map<Stage, Integer> getQueueDepths() {
+        final Map<Stage, Integer> depths = new LinkedHashMap<>();
+        batch.queues.forEach((stage, queue) ->
+                depths.put(stage, (int) queue.stream().filter(work -> work != END).count()));
+        return depths;
+    }
+
+    /**
+     * Returns the number of compilations currently allowed to run together.
+     * It is raised while it increases the throughput of the compilations and lowered
+     * when the heap is nearly exhausted or the collectors take too much time, see {@link CompileAdmission}.
+     *
+     * @return the number of concurrent compilations
+     */
+    public int getCompileLimit() {
+        return admission.getLimit();
+    }
+
+    /**
+     * Implements the tokens, writing a <var>.jar</var> file for each under the <var>root</var> directory,
+     * as {@link Implementor#implementJarAll(java.util.Collection, Path)} does.
+     * The tokens are taken from the iterator as the pipeline has room for them, in the calling thread.
+     * Returns when every token is written or failed. A pipeline runs one batch at a time,
+     * and the tokens of a batch share a {@link MethodResolver.Session}.
+     *
+     * @param tokens      tokens to implement
+     * @param root        the directory to put the <var>.jar</var> files to
+     * @param implemented called with every token and its <var>.jar</var> file when it is written
+     * @param failed      called with every token that cannot be implemented and the cause
+     * @throws ImplerException if an argument is {@code null}, the calling thread is interrupted,
+     *                         a worker of the pipeline died or a listener threw
+     * @throws RuntimeException the exception the iterator threw, after the batch is abandoned
+     */
+    public synchronized void implementJarAll(final Iterator<? extends Class<?>> tokens, final Path root,
+                                             final BiConsumer<Class<?>, Path> implemented,
+                                             final BiConsumer<Class<?>, ImplerException> failed)
+            throws ImplerException {
+        nullAssertion(tokens, root, implemented, failed);
+        final Batch batch = new Batch(capacity, implemented, failed);
+        this.batch = batch;
+        final MethodResolver.Session session = MethodResolver.openSession();
+        final ExecutorService cpu = Executors.newFixedThreadPool(emitters + compilers + 1, daemonThreads("implementor-cpu-"));
+        final ExecutorService io = newIoExecutor();
+        final BlockingQueue<Future<Void>> finished = new LinkedBlockingQueue<>();
+        final CompletionService<Void> cpuWorkers = new ExecutorCompletionService<>(cpu, finished);
+        final CompletionService<Void> ioWorkers = new ExecutorCompletionService<>(io, finished);
+        cpuWorkers.submit(() -> runStage(batch, Stage.RESOLVE, null, work -> {
+            checkToken(work.token);
+            work.stub = ClassStub.of(work.token);
+        }), null);
+        final AtomicInteger remainingEmitters = new AtomicInteger(emitters);
+        for (int i = 0; i < emitters; i++) {
+            cpuWorkers.submit(() -> runStage(batch, Stage.EMIT, remainingEmitters, work -> {
+                work.source = compiler.requiresSource() ? emit(work.stub) : "";
+                work.stub = null;
+            }), null);
+        }
+        final AtomicInteger remainingCompilers = new AtomicInteger(compilers);
+        for (int i = 0; i < compilers; i++) {
+            cpuWorkers.submit(() -> compile(batch, remainingCompilers), null);
+        }
+        final AtomicInteger remainingWriters = new AtomicInteger(writers);
+        for (int i = 0; i < writers; i++) {
+            ioWorkers.submit(() -> runStage(batch, Stage.PACKAGE, remainingWriters, work -> {
+                final Path jarFile = getPath(work.token, root, ".jar");
+                Implementor.createJarFile(work.token, work.classBytes, jarFile);
+                work.classBytes = null;
+                batch.implemented(work.token, jarFile);
+            }), null);
+        }
+        try {
+            final BlockingQueue<Work> input = batch.queues.get(Stage.RESOLVE);
+            while (tokens.hasNext()) {
+                final Class<?> token = tokens.next();
+                if (token == null) {
+                    batch.failed(null, new ImplerException("Non null arguments expected"));
+                } else {
+                    put(input, new Work(token), finished);
+                }
+            }
+            put(input, END, finished);
+            for (int i = 1 + emitters + compilers + writers; i > 0; i--) {
+                finished.take().get();
+            }
+        } catch (final InterruptedException e) {
+            abandon(batch, cpu, io);
+            Thread.currentThread().interrupt();
+            throw new ImplerException("Error during implementing: interrupted", e);
+        } catch (final ExecutionException e) {
+            abandon(batch, cpu, io);
+            throw new ImplerException("Unexpected error: " + e.getCause().getMessage(), e.getCause());
+        } catch (final RuntimeException | Error e) {
+            abandon(batch, cpu, io);
+            throw e;
+        } finally {
+            cpu.shutdown();
+            io.shutdown();
+            session.close();
+        }
+        final Throwable listenerError = batch.getListenerError();
+        if (listenerError != null) {
+            throw new ImplerException("Unexpected error in a listener: " + listenerError.getMessage(), listenerError);
+        }
+    }
+
+    /**
+     * Puts the work into the queue of the first stage, waiting for room in it.
+     * While waiting, the workers are checked: a worker finishing before the end of the tokens has died,
+     * and nothing would take the work if it was the only one of its stage.
+     *
+     * @param input    the queue of the first stage
+     * @param work     the work
+     * @param finished the workers that have finished
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws ExecutionException   if a worker has died
+     */
+    private static void put(final BlockingQueue<Work> input, final Work work, final BlockingQueue<Future<Void>> finished)
+            throws InterruptedException, ExecutionException {
+        while (!input.offer(work, CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+            final Future<Void> worker = finished.peek();
+            if (worker != null) {
+                worker.get();
+            }
+        }
+    }
+
+    /**
+     * Abandons the batch: interrupts the workers and drops the tokens in flight.
+     *
+     * @param batch the batch
+     * @param cpu   executor of the resolution, emission and compilation
+     * @param io    executor of the writing
+     */
+    private static void abandon(final Batch batch, final ExecutorService cpu, final ExecutorService io) {
+        cpu.shutdownNow();
+        io.shutdownNow();
+        batch.queues.values().forEach(BlockingQueue::clear);
+    }
+
+    /**
+     * Returns a factory of daemon platform threads with numbered names.
+     *
+     * @param prefix prefix of the thread names
+     * @return the thread factory
+     */
+    private static ThreadFactory daemonThreads(final String prefix) {
+        final AtomicInteger number = new AtomicInteger();
+        return body -> {
+            final Thread thread = new Thread(body, prefix + number.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Creates the executor writing the <var>.jar</var> files: a virtual thread per task
+     * if the runtime supports virtual threads, a cached pool of daemon platform threads otherwise.
+     * Virtual threads are looked up reflectively, so the pipeline runs on runtimes without them.
+     *
+     * @return the executor
+     */
+    private static ExecutorService newIoExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return Executors.newCachedThreadPool(daemonThreads("implementor-io-"));
+        }
+    }
+
+    /**
+     * Processing of a single token by a stage.
+     */
+    @FunctionalInterface
+    private interface StageAction {
+        /**
+         * Processes the work of a token.
+         *
+         * @param work the work
+         * @throws ImplerException if the token cannot be processed
+         */
+        void apply(Work work) throws ImplerException;
+    }
+
+    /**
+     * Runs a thread of a stage processing tokens one by one, until the end of the tokens.
+     * The last thread of the stage to finish passes the end to the next stage,
+     * even if it dies of an unexpected error, so the next stages finish.
+     *
+     * @param batch     the batch
+     * @param stage     the stage
+     * @param remaining counter of the threads of the stage that have not finished, {@code null} for a single thread
+     * @param action    how to process a token
+     */
+    private static void runStage(final Batch batch, final Stage stage, final AtomicInteger remaining,
+                                 final StageAction action) {
+        final BlockingQueue<Work> input = batch.queues.get(stage);
+        final BlockingQueue<Work> output = stage == Stage.PACKAGE ? null : batch.queues.get(next(stage));
+        boolean ended = false;
+        try {
+            while (true) {
+                final Work work = input.take();
+                if (work == END) {
+                    ended = true;
+                    if (remaining != null && remaining.decrementAndGet() > 0) {
+                        input.put(END);
+                    } else if (output != null) {
+                        output.put(END);
+                    }
+                    return;
+                }
+                try {
+                    action.apply(work);
+                } catch (final ImplerException e) {
+                    batch.failed(work.token, e);
+                    continue;
+                } catch (final RuntimeException | LinkageError e) {
+                    batch.failed(work.token, new ImplerException("Unexpected error: " + e.getMessage(), e));
+                    continue;
+                }
+                if (output != null) {
+                    output.put(work);
+                }
+            }
+        } catch (final InterruptedException ignored) {
+            // The batch is abandoned.
+            ended = true;
+        } finally {
+            if (!ended) {
+                passEnd(remaining, output);
+            }
+        }
+    }
+
+    /**
+     * Passes the end of the tokens to the next stage for a thread of a stage that died,
+     * if it was the last thread of the stage.
+     *
+     * @param remaining counter of the threads of the stage that have not finished, {@code null} for a single thread
+     * @param output    the queue of the next stage, {@code null} for the last stage
+     */
+    private static void passEnd(final AtomicInteger remaining, final BlockingQueue<Work> output) {
+        if ((remaining == null || remaining.decrementAndGet() == 0) && output != null) {
+            try {
+                output.put(END);
+            } catch (final InterruptedException e) {
+                // The batch is abandoned.
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs a thread of the {@link Stage#COMPILE} stage: waits for a token, then for the
+     * {@link CompileAdmission admission} to compile, so waiting for the previous stages holds no compilation slot,
+     * takes the tokens available, up to the chunk size, compiles them together and passes the compiled ones on. The last thread of the stage to finish passes the end to the next stage,
+     * even if it dies of an unexpected error.
+     *
+     * @param batch     the batch
+     * @param remaining counter of the threads of the stage that have not finished
+     */
+    private void compile(final Batch batch, final AtomicInteger remaining) {
+        final BlockingQueue<Work> input = batch.queues.get(Stage.COMPILE);
+        final BlockingQueue<Work> output = batch.queues.get(Stage.PACKAGE);
+        final List<Work> chunk = new ArrayList<>(chunkSize);
+        boolean ended = false;
+        try {
+            while (true) {
+                final Work first = input.take();
+                if (first == END) {
+                    ended = true;
+                    if (remaining.decrementAndGet() > 0) {
+                        input.put(END);
+                    } else {
+                        output.put(END);
+                    }
+                    return;
+                }
+                admission.acquire();
+                final Map<Class<?>, String> sources = new LinkedHashMap<>();
+                final Map<Class<?>, List<Work>> works = new HashMap<>();
+                final Map<Class<?>, ImplerException> errors = new LinkedHashMap<>();
+                final Map<Class<?>, byte[]> classes;
+                try {
+                    chunk.clear();
+                    chunk.add(first);
+                    input.drainTo(chunk, chunkSize - 1);
+                    if (chunk.remove(END)) {
+                        input.put(END);
+                    }
+                    for (final Work work : chunk) {
+                        sources.putIfAbsent(work.token, work.source);
+                        works.computeIfAbsent(work.token, token -> new ArrayList<>()).add(work);
+                        work.source = null;
+                    }
+                    classes = compiler.compileAll(sources, errors);
+                } catch (final RuntimeException | LinkageError e) {
+                    for (final Work work : chunk) {
+                        batch.failed(work.token, new ImplerException("Unexpected error: " + e.getMessage(), e));
+                    }
+                    continue;
+                } finally {
+                    admission.release(sources.size());
+                }
+                errors.forEach((token, error) -> works.get(token).forEach(work -> batch.failed(token, error)));
+                for (final Map.Entry<Class<?>, byte[]> entry : classes.entrySet()) {
+                    for (final Work work : works.get(entry.getKey())) {
+                        work.classBytes = entry.getValue();
+                        output.put(work);
+                    }
+                }
+            }
+        } catch (final InterruptedException ignored) {
+            // The batch is abandoned.
+            ended = true;
+        } finally {
+            if (!ended) {
+                passEnd(remaining, output);
+            }
+        }
+    }
+
+    /**
+     * Returns the stage following the given one.
+     *
+     * @param stage the stage, not the last one
+     * @return the next stage
+     */
+    private static Stage next(final Stage stage) {
+        return Stage.values()[stage.ordinal() + 1];
+    }
+
+    /**
+     * Emits the source of the implementation as {@link Implementor} passes it to the compiler,
+     * with the Unicode characters escaped.
+     *
+     * @param stub the stub of the token
+     * @return the source
+     * @throws ImplerException if an error occurred trying to write the source
+     */
+    private static String emit(final ClassStub stub) throws ImplerException {
+        final StringWriter writer = new StringWriter();
+        try {
+            new UnicodeEscapingWriter(writer).append(SourceEmitter.get().emit(stub));
+        } catch (final IOException e) {
+            throw new ImplerException("Error during generating a class: " + e.getMessage(), e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Checks that the <var>token</var> can be implemented.
+     *
+     * @param token the token
+     * @throws ImplerException if the token cannot be implemented
+     * @see Implementor#checkToken(Class)
+     */
+    private static void checkToken(final Class<?> token) throws ImplerException {
+        Implementor.checkToken(token);
+    }
+}
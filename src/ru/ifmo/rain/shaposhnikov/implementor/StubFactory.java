@@ -0,0 +1,145 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * Defines implementation classes at runtime, without writing any files.
+ * The class has the same shape as the one generated by {@link Implementor}
+ * and is written by {@link BytecodeCompiler}, then defined as a hidden class
+ * in the package of the implemented type by {@link MethodHandles.Lookup#defineHiddenClass}.
+ * <p>
+ * Hidden classes are not bound to their class loader, so an implementation class
+ * is unloaded as soon as it and its instances are no longer referenced.
+ * For the same reason, classes are not cached: every call defines a new class.
+ *
+ * @author Boris Shaposhnikov
+ */
+public final class StubFactory {
+    /**
+     * Utility class.
+     */
+    private StubFactory() {
+    }
+
+    /**
+     * Defines the implementation class of the <var>token</var>.
+     *
+     * @param token  the {@link Class} object of a parent class or an interface that is being implemented
+     * @param lookup lookup with full privilege access in the package of the <var>token</var>
+     * @return lookup on the defined implementation class
+     * @throws ImplerException if the <var>token</var> cannot be implemented or the class cannot be defined
+     */
+    private static MethodHandles.Lookup define(final Class<?> token, final MethodHandles.Lookup lookup)
+            throws ImplerException {
+        nullAssertion(token, lookup);
+        Implementor.checkToken(token);
+        if (!lookup.lookupClass().getPackageName().equals(token.getPackageName())) {
+            throw new ImplerException("Lookup is expected to be in package '" + token.getPackageName() + "'");
+        }
+        try {
+            return lookup.defineHiddenClass(BytecodeCompiler.generate(token), false);
+        } catch (final IllegalAccessException e) {
+            throw new ImplerException("Error during defining a class: " + e.getMessage(), e);
+        } catch (final LinkageError e) {
+            throw new ImplerException("Invalid implementation class: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a lookup with full privilege access in the package of the <var>token</var>.
+     * The package of the <var>token</var> must be open to this module.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return lookup on the <var>token</var>
+     * @throws ImplerException if the package of the <var>token</var> is not open to this module
+     */
+    private static MethodHandles.Lookup lookupIn(final Class<?> token) throws ImplerException {
+        nullAssertion(token);
+        StubFactory.class.getModule().addReads(token.getModule());
+        try {
+            return MethodHandles.privateLookupIn(token, MethodHandles.lookup());
+        } catch (final IllegalAccessException e) {
+            throw new ImplerException("Package of the token is not open: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Defines the implementation class of the <var>token</var> through the given <var>lookup</var>.
+     * Use this method for the types whose packages are not open to this module.
+     *
+     * @param token  the {@link Class} object of a parent class or an interface that is being implemented
+     * @param lookup lookup with full privilege access in the package of the <var>token</var>
+     * @return the defined hidden implementation class
+     * @throws ImplerException if the <var>token</var> cannot be implemented or the class cannot be defined
+     */
+    public static Class<?> defineStub(final Class<?> token, final MethodHandles.Lookup lookup)
+            throws ImplerException {
+        return define(token, lookup).lookupClass();
+    }
+
+    /**
+     * Defines the implementation class of the <var>token</var>.
+     * The package of the <var>token</var> must be open to this module, as packages of the unnamed modules are.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the defined hidden implementation class
+     * @throws ImplerException if the <var>token</var> cannot be implemented or the class cannot be defined
+     */
+    public static Class<?> defineStub(final Class<?> token) throws ImplerException {
+        return defineStub(token, lookupIn(token));
+    }
+
+    /**
+     * Creates an instance of a new implementation class of the <var>token</var>, defined through the given <var>lookup</var>.
+     * Arguments of the constructor are default values of their types.
+     *
+     * @param token  the {@link Class} object of a parent class or an interface that is being implemented
+     * @param lookup lookup with full privilege access in the package of the <var>token</var>
+     * @param <T>    the implemented type
+     * @return an instance of the implementation class
+     * @throws ImplerException if the <var>token</var> cannot be implemented or the instance cannot be created
+     */
+    public static <T> T newStub(final Class<T> token, final MethodHandles.Lookup lookup) throws ImplerException {
+        final MethodHandles.Lookup stubLookup = define(token, lookup);
+        final Class<?> stub = stubLookup.lookupClass();
+        final Constructor<?> constructor = stub.getDeclaredConstructors()[0];
+        final Class<?>[] parameterTypes = constructor.getParameterTypes();
+        final Object[] arguments = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i].isPrimitive()) {
+                arguments[i] = Array.get(Array.newInstance(parameterTypes[i], 1), 0);
+            }
+        }
+        try {
+            return token.cast(stubLookup.findConstructor(stub, MethodType.methodType(void.class, parameterTypes))
+                    .invokeWithArguments(arguments));
+        } catch (final ReflectiveOperationException e) {
+            throw new ImplerException("Error during creating an instance: " + e.getMessage(), e);
+        } catch (final Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new ImplerException("Constructor of the implemented class failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates an instance of a new implementation class of the <var>token</var>.
+     * Arguments of the constructor are default values of their types.
+     * The package of the <var>token</var> must be open to this module, as packages of the unnamed modules are.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @param <T>   the implemented type
+     * @return an instance of the implementation class
+     * @throws ImplerException if the <var>token</var> cannot be implemented or the instance cannot be created
+     */
+    public static <T> T newStub(final Class<T> token) throws ImplerException {
+        return newStub(token, lookupIn(token));
+    }
+}
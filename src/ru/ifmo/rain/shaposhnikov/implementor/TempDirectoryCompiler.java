@@ -0,0 +1,164 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+
+import static ru.ifmo.rain.shaposhnikov.implementor.Util.*;
+
+/**
+ * {@link ClassCompiler} running the java compiler on files in a temporary directory.
+ * The source is written to the <var>.java</var> file, compiled next to it
+ * and the resulting <var>.class</var> file is read back. The directory is deleted afterwards.
+ * Batches are compiled together, in memory, as the {@link InMemoryCompiler} does.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class TempDirectoryCompiler implements ClassCompiler {
+    /**
+     * Directory to create temporary directories in, or {@code null} for the default temporary-file directory.
+     */
+    private final Path tempRoot;
+
+    /**
+     * Constructs a compiler creating temporary directories in the default temporary-file directory.
+     */
+    public TempDirectoryCompiler() {
+        this(null);
+    }
+
+    /**
+     * Constructs a compiler creating temporary directories in the given directory.
+     *
+     * @param tempRoot directory to create temporary directories in,
+     *                 or {@code null} for the default temporary-file directory
+     */
+    public TempDirectoryCompiler(final Path tempRoot) {
+        this.tempRoot = tempRoot;
+    }
+
+    /**
+     * Compiles implementation class and stores <var>.class</var> file in given <var>path</var>.
+     * The compilation is run in a warm {@link CompilerContext} for the class path of the <var>token</var>.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @param path  where to save <var>.class</var> files
+     * @throws ImplerException if the java compiler wasn't found or an error occurred trying to compile classes
+     */
+    private static void compileClass(final Class<?> token, final Path path) throws ImplerException {
+        try (final CompilerContext context = CompilerContext.acquire(getClassPath(token))) {
+            context.compile(List.of(getPath(token, path, ".java")), path);
+        }
+    }
+
+    /**
+     * Class is used to clean directory for temporary files, after creating <var>.jar</var>-file.
+     * Recursively deletes directory, all its subdirectories and files inside.
+     *
+     * @see Files#walkFileTree(Path, FileVisitor)
+     */
+    private static class TmpDirCleaner extends SimpleFileVisitor<Path> {
+
+        /**
+         * Deletes file
+         *
+         * @param file file to delete
+         * @see Files#delete(Path)
+         */
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes avarrs) throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+        }
+
+        /**
+         * Deletes directory after all of files inside it and subdirectories are already deleted.
+         *
+         * @param dir directory to delete
+         * @param exc thrown exception during deleting
+         * @return value indicating continuation of walking
+         * @throws IOException if an error occurred trying to create directories
+         */
+        @Override
+        public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    /**
+     * Static object of {@link TmpDirCleaner} class.
+     */
+    private static final FileVisitor<Path> TMP_DIR_CLEANER = new TmpDirCleaner();
+
+    /**
+     * Creates a temporary directory in {@link #tempRoot}.
+     *
+     * @return the path to the newly created directory
+     * @throws ImplerException if an error occurred trying to create temporary directory
+     */
+    private Path createTempDir() throws ImplerException {
+        if (tempRoot != null) {
+            return createTempDirectory(tempRoot.resolve("tmp"));
+        }
+        try {
+            return Files.createTempDirectory("tmp");
+        } catch (final IOException e) {
+            throw new ImplerException("Error during creating a temporary directory: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Includes the {@link CompilerContext#getIdentity() identity} of the java compiler runs.
+     */
+    @Override
+    public String getIdentity() {
+        return getClass().getName() + " " + CompilerContext.getIdentity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] compile(final Class<?> token, final String source) throws ImplerException {
+        final Path tmpDir = createTempDir();
+        try {
+            try {
+                Files.writeString(getPath(token, tmpDir, ".java"), source);
+            } catch (final IOException e) {
+                throw new ImplerException("Error during writing in file: " + e.getMessage(), e);
+            }
+            compileClass(token, tmpDir);
+            try {
+                return Files.readAllBytes(getPath(token, tmpDir, ".class"));
+            } catch (final IOException e) {
+                throw new ImplerException("Error during reading a class file: " + e.getMessage(), e);
+            }
+        } finally {
+            try {
+                Files.walkFileTree(tmpDir, TMP_DIR_CLEANER);
+            } catch (final IOException e) {
+                System.err.println(String.format("Error during deleting temporary files in '%s' directory: %s",
+                        tmpDir, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tokens are grouped by their class paths, and every group is compiled by a single compiler run in memory,
+     * see {@link InMemoryCompiler#compileAll(Map, Map)}. The class files do not depend on where the sources
+     * and the class files are kept, so they are the ones {@link #compile(Class, String)} produces,
+     * and the {@link #getIdentity() identity} is the same.
+     */
+    @Override
+    public Map<Class<?>, byte[]> compileAll(final Map<Class<?>, String> sources,
+                                            final Map<Class<?>, ImplerException> failed) {
+        return InMemoryCompiler.compileGroups(sources, failed);
+    }
+}
@@ -0,0 +1,142 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer escaping all the characters greater than or equal to 128 as <var>&#92;uXXXX</var> on the fly.
+ * Runs of ASCII characters are passed to the underlying writer in bulk, unchanged,
+ * and escapes are built in a preallocated buffer from a hexadecimal digit table,
+ * so no objects are allocated per character or per call.
+ * <p>
+ * {@link #append(CharSequence)} copies {@link StringBuilder} and {@link String} contents
+ * through an internal chunk buffer instead of converting them to strings first.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class UnicodeEscapingWriter extends FilterWriter {
+    /**
+     * Lowercase hexadecimal digits by values.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Size of the chunk buffer.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Escape of the current character, prefilled with <var>&#92;u</var>.
+     */
+    private final char[] escape = {'\\', 'u', '0', '0', '0', '0'};
+
+    /**
+     * Buffer characters of {@link CharSequence CharSequences} are copied to.
+     */
+    private char[] chunk;
+
+    /**
+     * Constructs a writer escaping the characters written to the given writer.
+     *
+     * @param out the underlying writer
+     */
+    UnicodeEscapingWriter(final Writer out) {
+        super(out);
+    }
+
+    /**
+     * Writes the escape of the character.
+     *
+     * @param c a character greater than or equal to 128
+     * @throws IOException if an error occurred trying to write with the underlying writer
+     */
+    private void writeEscape(final char c) throws IOException {
+        escape[2] = HEX[c >>> 12];
+        escape[3] = HEX[(c >>> 8) & 0xf];
+        escape[4] = HEX[(c >>> 4) & 0xf];
+        escape[5] = HEX[c & 0xf];
+        out.write(escape, 0, escape.length);
+    }
+
+    @Override
+    public void write(final int c) throws IOException {
+        if (c < 128) {
+            out.write(c);
+        } else {
+            writeEscape((char) c);
+        }
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+        final int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (cbuf[i] >= 128) {
+                if (i > start) {
+                    out.write(cbuf, start, i - start);
+                }
+                writeEscape(cbuf[i]);
+                start = i + 1;
+            }
+        }
+        if (end > start) {
+            out.write(cbuf, start, end - start);
+        }
+    }
+
+    @Override
+    public void write(final String str, final int off, final int len) throws IOException {
+        final int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            final char c = str.charAt(i);
+            if (c >= 128) {
+                if (i > start) {
+                    out.write(str, start, i - start);
+                }
+                writeEscape(c);
+                start = i + 1;
+            }
+        }
+        if (end > start) {
+            out.write(str, start, end - start);
+        }
+    }
+
+    @Override
+    public Writer append(final CharSequence csq) throws IOException {
+        if (csq == null) {
+            write("null");
+        } else {
+            append(csq, 0, csq.length());
+        }
+        return this;
+    }
+
+    @Override
+    public Writer append(final CharSequence csq, final int start, final int end) throws IOException {
+        if (csq == null) {
+            return append("null", start, end);
+        }
+        if (csq instanceof String) {
+            write((String) csq, start, end - start);
+            return this;
+        }
+        if (!(csq instanceof StringBuilder)) {
+            write(csq.subSequence(start, end).toString());
+            return this;
+        }
+        final StringBuilder sb = (StringBuilder) csq;
+        if (chunk == null) {
+            chunk = new char[CHUNK_SIZE];
+        }
+        for (int from = start; from < end; from += CHUNK_SIZE) {
+            final int to = Math.min(end, from + CHUNK_SIZE);
+            sb.getChars(from, to, chunk, 0);
+            write(chunk, 0, to - from);
+        }
+        return this;
+    }
+}
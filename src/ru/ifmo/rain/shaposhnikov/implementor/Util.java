@@ -4,10 +4,29 @@ import info.kgeorgiy.java.advanced.implementor.ImplerException;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileAttribute;
+import java.security.CodeSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
 
 /**
  * Helper functions for {@link Implementor and {@link JarImplementor}
@@ -15,6 +34,42 @@ import java.util.Objects;
  * @author Boris Shaposhnikov
  */
 public class Util {
+    /**
+     * Modification time of all <var>.jar</var> entries, the earliest time a <var>.zip</var> entry can hold.
+     * Entries are not stamped with the current time, so the same classes give the same <var>.jar</var> files.
+     */
+    private static final LocalDateTime JAR_ENTRY_TIME = LocalDateTime.of(1980, 1, 1, 0, 0);
+
+    /**
+     * Isolated class loaders by the class paths they load from, see {@link #getClassLoader(List)}.
+     */
+    private static final ConcurrentMap<List<Path>, IsolatedClassLoader> CLASS_LOADERS = new ConcurrentHashMap<>();
+
+    /**
+     * Class loader of the classes of an input class path. Its parent is the platform class loader,
+     * so neither the classes of the running application nor the classes of other input class paths are seen.
+     */
+    private static final class IsolatedClassLoader extends URLClassLoader {
+        static {
+            registerAsParallelCapable();
+        }
+
+        /**
+         * Entries of the class path, absolute and normalized.
+         */
+        private final List<Path> classPath;
+
+        /**
+         * Creates a class loader of the <var>classPath</var>.
+         *
+         * @param classPath entries of the class path, absolute and normalized
+         * @param urls      URLs of the entries
+         */
+        private IsolatedClassLoader(final List<Path> classPath, final URL[] urls) {
+            super("implementor-input", urls, ClassLoader.getPlatformClassLoader());
+            this.classPath = classPath;
+        }
+    }
 
     /**
      * Returns {@link String} a new class name with <var>Impl</var> suffix.
@@ -127,4 +182,189 @@ public class Util {
             }
         }
     }
+
+    /**
+     * Returns the binary name of the implementation class of the <var>token</var>.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the package name and the implementation class name separated by a dot,
+     * or just the implementation class name if the <var>token</var> is not placed in a package
+     * @see #getImplSimpleName(Class)
+     */
+    public static String getImplName(final Class<?> token) {
+        final String packageName = token.getPackageName();
+        return packageName.isEmpty() ? getImplSimpleName(token) : packageName + "." + getImplSimpleName(token);
+    }
+
+    /**
+     * Returns the name of the <var>.class</var> file entry of the implementation class inside a <var>.jar</var> file.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the entry name with <var>/</var> as a separator
+     * @see #getImplName(Class)
+     */
+    public static String getClassEntryName(final Class<?> token) {
+        return getImplName(token).replace('.', '/') + ".class";
+    }
+
+    /**
+     * Returns the location the <var>token</var> was loaded from.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return the path of the directory or the <var>.jar</var> file containing the <var>token</var>,
+     * or {@code null} if it is unknown, as for the classes of the platform
+     * @throws ImplerException if the location of the <var>token</var> is not a valid path
+     */
+    public static Path getCodeSource(final Class<?> token) throws ImplerException {
+        final CodeSource codeSource = token.getProtectionDomain().getCodeSource();
+        final URL location = codeSource == null ? null : codeSource.getLocation();
+        if (location == null) {
+            return null;
+        }
+        try {
+            return Path.of(location.toURI());
+        } catch (final URISyntaxException | IllegalArgumentException e) {
+            throw new ImplerException("Error during getting source code uri: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Splits a class path string into its entries.
+     *
+     * @param classPath entries separated by {@link File#pathSeparator}
+     * @return the entries, empty ones skipped
+     * @throws InvalidPathException if an entry is not a valid path
+     */
+    public static List<Path> parseClassPath(final String classPath) {
+        final List<Path> entries = new ArrayList<>();
+        for (final String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                entries.add(Path.of(entry));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the class loader of the classes of the <var>classPath</var>.
+     * An empty class path stands for the class path of the running application, loaded by the system class loader.
+     * Otherwise, a class loader isolated from the running application and from other class paths is returned.
+     * It is created once per class path and kept for the lifetime of the process.
+     *
+     * @param classPath entries of the class path
+     * @return the class loader
+     */
+    public static ClassLoader getClassLoader(final List<Path> classPath) {
+        if (classPath.isEmpty()) {
+            return ClassLoader.getSystemClassLoader();
+        }
+        final List<Path> entries = new ArrayList<>(classPath.size());
+        for (final Path entry : classPath) {
+            entries.add(entry.toAbsolutePath().normalize());
+        }
+        return CLASS_LOADERS.computeIfAbsent(List.copyOf(entries), key -> {
+            final URL[] urls = new URL[key.size()];
+            for (int i = 0; i < urls.length; i++) {
+                try {
+                    urls[i] = key.get(i).toUri().toURL();
+                } catch (final MalformedURLException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return new IsolatedClassLoader(key, urls);
+        });
+    }
+
+    /**
+     * Loads the class of the given name from the <var>classPath</var> without initializing it,
+     * so that no static initializers are run just to read the signatures.
+     *
+     * @param name      binary name of the class
+     * @param classPath entries of the class path, see {@link #getClassLoader(List)}
+     * @return the class
+     * @throws ClassNotFoundException if the class cannot be found or loaded
+     */
+    public static Class<?> loadClass(final String name, final List<Path> classPath) throws ClassNotFoundException {
+        try {
+            return Class.forName(name, false, getClassLoader(classPath));
+        } catch (final LinkageError e) {
+            throw new ClassNotFoundException(name + " (" + e.getMessage() + ")", e);
+        }
+    }
+
+    /**
+     * Returns the class path to compile the implementation of the <var>token</var> with.
+     * Consists of the class path of the isolated class loader the <var>token</var> was loaded by, if any,
+     * so that it is not shadowed, the class path of the running application and the location of the <var>token</var>.
+     *
+     * @param token the {@link Class} object of a parent class or an interface that is being implemented
+     * @return class path entries
+     * @throws ImplerException if the location of the <var>token</var> is not a valid path
+     * @see #getCodeSource(Class)
+     */
+    public static List<Path> getClassPath(final Class<?> token) throws ImplerException {
+        final List<Path> classPath = new ArrayList<>();
+        if (token.getClassLoader() instanceof IsolatedClassLoader) {
+            classPath.addAll(((IsolatedClassLoader) token.getClassLoader()).classPath);
+        }
+        final String applicationClassPath = System.getProperty("java.class.path");
+        if (applicationClassPath != null && !applicationClassPath.isEmpty()) {
+            for (final Path entry : parseClassPath(applicationClassPath)) {
+                if (!classPath.contains(entry)) {
+                    classPath.add(entry);
+                }
+            }
+        }
+        final Path codeSource = getCodeSource(token);
+        if (codeSource != null && !classPath.contains(codeSource)) {
+            classPath.add(codeSource);
+        }
+        return classPath;
+    }
+
+    /**
+     * Returns a new <var>.jar</var> entry with the fixed modification time.
+     *
+     * @param name the entry name
+     * @return the entry
+     */
+    public static ZipEntry newJarEntry(final String name) {
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setTimeLocal(JAR_ENTRY_TIME);
+        return entry;
+    }
+
+    /**
+     * Starts writing a <var>.jar</var> file and writes its manifest.
+     * The manifest entry is written with the fixed modification time, like the others.
+     *
+     * @param out where to write the <var>.jar</var> file
+     * @return stream to write <var>.jar</var> entries to
+     * @throws IOException if an error occurred trying to write the manifest
+     * @see #newJarEntry(String)
+     */
+    public static JarOutputStream openJarFile(final OutputStream out) throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        final JarOutputStream writer = new JarOutputStream(out);
+        writer.putNextEntry(newJarEntry(JarFile.MANIFEST_NAME));
+        manifest.write(writer);
+        writer.closeEntry();
+        return writer;
+    }
+
+    /**
+     * Returns the contents of the <var>.class</var> file the <var>token</var> was loaded from.
+     *
+     * @param token the {@link Class} object of a class or an interface
+     * @return the contents of the <var>.class</var> file, or {@code null} if it cannot be found
+     * @throws ImplerException if an error occurred trying to read the <var>.class</var> file
+     */
+    public static byte[] getClassBytes(final Class<?> token) throws ImplerException {
+        try (final InputStream in = token.getResourceAsStream("/" + token.getName().replace('.', '/') + ".class")) {
+            return in == null ? null : in.readAllBytes();
+        } catch (final IOException e) {
+            throw new ImplerException("Error during reading a class file: " + e.getMessage(), e);
+        }
+    }
 }
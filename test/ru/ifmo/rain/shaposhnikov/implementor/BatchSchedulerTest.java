@@ -0,0 +1,46 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.full.classes.Overridden;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.rowset.CachedRowSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests of {@link BatchScheduler}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class BatchSchedulerTest {
+    /**
+     * Checks that ancestors in the batch come before their descendants, whatever the order of the batch.
+     */
+    @Test
+    public void ancestorsComeFirst() {
+        Assert.assertEquals(
+                List.of(Overridden.Base.class, Overridden.Child.class, Overridden.NonFinalGrandChild.class),
+                BatchScheduler.schedule(List.of(
+                        Overridden.NonFinalGrandChild.class, Overridden.Child.class, Overridden.Base.class)));
+    }
+
+    /**
+     * Checks that the token with the most expensive chain comes first, and a mixed batch keeps
+     * its ancestors before its descendants.
+     */
+    @Test
+    public void heaviestChainComesFirst() {
+        Assert.assertEquals(List.of(CachedRowSet.class, Runnable.class),
+                BatchScheduler.schedule(List.of(Runnable.class, CachedRowSet.class)));
+
+        final List<Class<?>> tokens = List.of(Runnable.class, Overridden.NonFinalGrandChild.class,
+                CachedRowSet.class, Overridden.Child.class, Overridden.Base.class);
+        final List<Class<?>> order = BatchScheduler.schedule(tokens);
+        Assert.assertEquals(Set.copyOf(tokens), Set.copyOf(order));
+        Assert.assertEquals(tokens.size(), order.size());
+        Assert.assertEquals(CachedRowSet.class, order.get(0));
+        Assert.assertTrue(order.indexOf(Overridden.Base.class) < order.indexOf(Overridden.Child.class));
+        Assert.assertTrue(order.indexOf(Overridden.Child.class) < order.indexOf(Overridden.NonFinalGrandChild.class));
+    }
+}
@@ -0,0 +1,90 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tests of {@link BytecodeCompiler}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class BytecodeCompilerTest {
+    /**
+     * Class loader of the fixtures defining the written class files,
+     * so they are in the same runtime packages as the classes they implement.
+     */
+    private static final class Loader extends URLClassLoader {
+        /**
+         * Constructs a loader.
+         *
+         * @throws MalformedURLException if the artifact cannot be located
+         */
+        Loader() throws MalformedURLException {
+            super(new URL[]{Fixtures.ARTIFACT.toUri().toURL()}, ClassLoader.getPlatformClassLoader());
+        }
+
+        /**
+         * Defines and initializes the implementation class.
+         * The artifact is signed, so the class is defined with the signers of the implemented one.
+         *
+         * @param token the implemented class
+         * @param bytes contents of the class file
+         * @return the class
+         * @throws ClassNotFoundException if the class cannot be initialized
+         */
+        Class<?> define(final Class<?> token, final byte[] bytes) throws ClassNotFoundException {
+            final String name = Util.getImplName(token);
+            defineClass(name, bytes, 0, bytes.length, token.getProtectionDomain());
+            return Class.forName(name, true, this);
+        }
+    }
+
+    /**
+     * Checks that the class files written for the fixtures pass the verification
+     * and implement all the methods the generated sources implement.
+     *
+     * @throws Exception if a class file cannot be written or loaded
+     */
+    @Test
+    public void classFilesAreVerified() throws Exception {
+        final List<Class<?>> tokens = Fixtures.getTokens();
+        Assert.assertFalse(tokens.isEmpty());
+        try (final Loader loader = new Loader()) {
+            for (final Class<?> fixture : tokens) {
+                final Class<?> token = loader.loadClass(fixture.getName());
+                final Class<?> impl;
+                try {
+                    impl = loader.define(token, BytecodeCompiler.generate(token));
+                } catch (final VerifyError | ClassFormatError e) {
+                    throw new AssertionError("Invalid class file of " + token.getName(), e);
+                }
+                Assert.assertTrue(token.getName(), token.isAssignableFrom(impl));
+                Assert.assertFalse(token.getName(), Modifier.isAbstract(impl.getModifiers()));
+                Assert.assertEquals(token.getName(), signatures(Implementor.getImplementedMethods(token)),
+                        signatures(Arrays.asList(impl.getDeclaredMethods())));
+            }
+        }
+    }
+
+    /**
+     * Returns the names and the parameter types of the methods.
+     *
+     * @param methods the methods
+     * @return the signatures
+     */
+    private static Set<String> signatures(final List<Method> methods) {
+        return methods.stream()
+                .map(method -> method.getName() + Arrays.toString(method.getParameterTypes()))
+                .collect(Collectors.toSet());
+    }
+}
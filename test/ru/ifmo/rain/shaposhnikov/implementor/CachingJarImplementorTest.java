@@ -0,0 +1,59 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.basic.interfaces.standard.Descriptor;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests of {@link CachingJarImplementor}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class CachingJarImplementorTest {
+    /**
+     * Directory of the cache and the produced jar files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that implementors compiling with different compilers do not share cache entries,
+     * and implementors compiling with equal ones do.
+     */
+    @Test
+    public void keysDependOnCompiler() {
+        final String javac = CachingJarImplementor.getKey(new Implementor(new InMemoryCompiler()), Descriptor.class);
+        Assert.assertNotNull(javac);
+        Assert.assertEquals(javac,
+                CachingJarImplementor.getKey(new Implementor(new InMemoryCompiler()), Descriptor.class));
+        Assert.assertNotEquals(javac,
+                CachingJarImplementor.getKey(new Implementor(new BytecodeCompiler()), Descriptor.class));
+        Assert.assertNotEquals(javac,
+                CachingJarImplementor.getKey(new Implementor(new TempDirectoryCompiler()), Descriptor.class));
+    }
+
+    /**
+     * Checks that a jar file produced on a miss is taken from the cache afterwards.
+     *
+     * @throws Exception if the jar file cannot be produced
+     */
+    @Test
+    public void missesAreCached() throws Exception {
+        try (final LocalJarCache cache = new LocalJarCache(folder.newFolder("cache").toPath())) {
+            final CachingJarImplementor implementor =
+                    new CachingJarImplementor(new Implementor(new InMemoryCompiler()), cache);
+            final Path produced = folder.getRoot().toPath().resolve("produced.jar");
+            implementor.implementJar(Descriptor.class, produced);
+            Assert.assertTrue(cache.contains(implementor.getKey(Descriptor.class)));
+
+            final Path cached = folder.getRoot().toPath().resolve("cached.jar");
+            Assert.assertTrue(cache.get(implementor.getKey(Descriptor.class), cached));
+            Assert.assertArrayEquals(Files.readAllBytes(produced), Files.readAllBytes(cached));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.rowset.CachedRowSet;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+
+/**
+ * Tests of {@link ClassFileResolver}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class ClassFileResolverTest {
+    /**
+     * Checks that the sources emitted from the class files of the fixtures and of some platform classes
+     * are the same as the ones emitted from the loaded classes.
+     *
+     * @throws Exception if a class cannot be resolved
+     */
+    @Test
+    public void classFilesMatchReflection() throws Exception {
+        final List<Class<?>> tokens = new ArrayList<>(Fixtures.getTokens());
+        tokens.addAll(List.of(CachedRowSet.class, AbstractList.class, BlockingDeque.class));
+        try (final ClassFileResolver resolver = new ClassFileResolver(List.of())) {
+            for (final Class<?> token : tokens) {
+                Assert.assertEquals(token.getName(), SourceEmitter.get().emit(token).toString(),
+                        SourceEmitter.get().emit(resolver.resolve(token.getName())).toString());
+            }
+        }
+    }
+
+    /**
+     * Checks that the classes that cannot be implemented are rejected as by reflection.
+     *
+     * @throws Exception if the resolver cannot be closed
+     */
+    @Test
+    public void unsupportedClassesAreRejected() throws Exception {
+        try (final ClassFileResolver resolver = new ClassFileResolver(List.of())) {
+            for (final String name : List.of("java.lang.String", "java.lang.Enum", "no.such.Class")) {
+                try {
+                    resolver.resolve(name);
+                    Assert.fail(name);
+                } catch (final ImplerException ignored) {
+                    // Expected.
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of {@link CompileAdmission}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class CompileAdmissionTest {
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Probe whose readings are set by the test.
+     */
+    private static final class FakeProbe implements CompileAdmission.Probe {
+        /**
+         * Current time, in nanoseconds.
+         */
+        long time;
+
+        /**
+         * Total collection time, in milliseconds.
+         */
+        long gcTime;
+
+        /**
+         * Whether the heap is nearly exhausted.
+         */
+        boolean heapExhausted;
+
+        @Override
+        public long nanoTime() {
+            return time;
+        }
+
+        @Override
+        public long getGcTime() {
+            return gcTime;
+        }
+
+        @Override
+        public boolean isHeapExhausted() {
+            return heapExhausted;
+        }
+    }
+
+    /**
+     * Checks that the limit moves in the same direction while the throughput does not fall, turns back when it falls,
+     * and stays within bounds.
+     *
+     * @throws Exception if the thread is interrupted
+     */
+    @Test
+    public void limitFollowsThroughput() throws Exception {
+        final FakeProbe probe = new FakeProbe();
+        final CompileAdmission admission = new CompileAdmission(3, probe);
+        Assert.assertEquals(1, admission.getLimit());
+
+        runWindow(admission, probe, 10, SECOND);
+        Assert.assertEquals(2, admission.getLimit());
+        Assert.assertEquals(10, admission.getThroughput(), 1e-9);
+        runWindow(admission, probe, 10, SECOND);
+        Assert.assertEquals(3, admission.getLimit());
+        runWindow(admission, probe, 10, SECOND);
+        Assert.assertEquals(3, admission.getLimit());
+
+        runWindow(admission, probe, 5, 2 * SECOND);
+        Assert.assertEquals(2, admission.getLimit());
+        runWindow(admission, probe, 15, 4 * SECOND);
+        Assert.assertEquals(1, admission.getLimit());
+        runWindow(admission, probe, 10, SECOND);
+        Assert.assertEquals(1, admission.getLimit());
+        runWindow(admission, probe, 1, SECOND);
+        Assert.assertEquals(2, admission.getLimit());
+    }
+
+    /**
+     * Checks that the limit is halved by every compilation completed while the heap is exhausted
+     * or the collectors take too much time, down to one, and grows again once the pressure is gone.
+     *
+     * @throws Exception if the thread is interrupted
+     */
+    @Test
+    public void limitIsHalvedUnderPressure() throws Exception {
+        final FakeProbe probe = new FakeProbe();
+        final CompileAdmission admission = new CompileAdmission(8, probe);
+        for (int i = 0; i < 7; i++) {
+            runWindow(admission, probe, 10, SECOND);
+        }
+        Assert.assertEquals(8, admission.getLimit());
+
+        probe.heapExhausted = true;
+        compile(admission, probe, 10, SECOND);
+        Assert.assertEquals(4, admission.getLimit());
+        compile(admission, probe, 10, SECOND);
+        Assert.assertEquals(2, admission.getLimit());
+        probe.heapExhausted = false;
+
+        probe.gcTime += 500;
+        compile(admission, probe, 10, SECOND);
+        Assert.assertEquals(1, admission.getLimit());
+        probe.gcTime += 500;
+        compile(admission, probe, 10, SECOND);
+        Assert.assertEquals(1, admission.getLimit());
+
+        runWindow(admission, probe, 10, SECOND);
+        Assert.assertEquals(2, admission.getLimit());
+    }
+
+    /**
+     * Runs as many compilations as the limit allows, one of them taking all the time of the window,
+     * each compiling the given number of tokens per compilation allowed.
+     *
+     * @param admission the controller
+     * @param probe     probe of the controller
+     * @param tokens    tokens compiled per second of a compilation, per compilation allowed
+     * @param duration  duration of the window, in nanoseconds
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private static void runWindow(final CompileAdmission admission, final FakeProbe probe,
+                                  final int tokens, final long duration) throws InterruptedException {
+        final int limit = admission.getLimit();
+        for (int i = 0; i < limit; i++) {
+            admission.acquire();
+        }
+        probe.time += duration;
+        for (int i = 0; i < limit; i++) {
+            admission.release(tokens);
+        }
+    }
+
+    /**
+     * Runs a single compilation.
+     *
+     * @param admission the controller
+     * @param probe     probe of the controller
+     * @param tokens    tokens compiled
+     * @param duration  duration of the compilation, in nanoseconds
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private static void compile(final CompileAdmission admission, final FakeProbe probe,
+                                final int tokens, final long duration) throws InterruptedException {
+        admission.acquire();
+        probe.time += duration;
+        admission.release(tokens);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Implementable classes of the tests of the implementor, taken from its artifact.
+ *
+ * @author Boris Shaposhnikov
+ */
+final class Fixtures {
+    /**
+     * The artifact of the tests of the implementor.
+     */
+    static final Path ARTIFACT = Path.of("artifacts", "info.kgeorgiy.java.advanced.implementor.jar");
+
+    /**
+     * Utility class.
+     */
+    private Fixtures() {
+    }
+
+    /**
+     * Returns the classes of the artifact that can be implemented, from the packages of the test classes.
+     * Classes with non-ASCII names are skipped, as the sources of their implementations
+     * depend on the encoding of the platform.
+     *
+     * @return the implementable classes
+     */
+    static List<Class<?>> getTokens() {
+        final List<Class<?>> tokens = new ArrayList<>();
+        try (final JarFile jar = new JarFile(ARTIFACT.toFile())) {
+            for (final Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                final String name = entries.nextElement().getName();
+                if (!name.endsWith(".class") || !name.matches(".*/implementor/(basic|full)/.*")
+                        || !name.matches("\\p{ASCII}*")) {
+                    continue;
+                }
+                final Class<?> token = load(name.substring(0, name.length() - 6).replace('/', '.'));
+                if (token != null) {
+                    tokens.add(token);
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the sources of the implementations of the tokens.
+     *
+     * @param tokens the tokens
+     * @return the sources by tokens, in the order of the tokens
+     * @throws ImplerException if a source cannot be emitted
+     */
+    static Map<Class<?>, String> getSources(final List<Class<?>> tokens) throws ImplerException {
+        final Map<Class<?>, String> sources = new LinkedHashMap<>();
+        for (final Class<?> token : tokens) {
+            sources.put(token, SourceEmitter.get().emit(ClassStub.of(token)).toString());
+        }
+        return sources;
+    }
+
+    /**
+     * Loads the class if it can be implemented.
+     *
+     * @param name binary name of the class
+     * @return the class, or {@code null} if it cannot be loaded or implemented
+     */
+    private static Class<?> load(final String name) {
+        try {
+            final Class<?> token = Class.forName(name, false, Fixtures.class.getClassLoader());
+            Implementor.checkToken(token);
+            Implementor.getImplementedMethods(token);
+            if (!token.isInterface()) {
+                Implementor.getSuperConstructor(token);
+            }
+            return token;
+        } catch (final ClassNotFoundException | LinkageError | ImplerException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests of {@link LibraryScanner}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class LibraryScannerTest {
+    /**
+     * Name of the implementable fixture.
+     */
+    private static final String DESCRIPTOR = "info.kgeorgiy.java.advanced.implementor.basic.interfaces.standard.Descriptor";
+
+    /**
+     * Name of the entry of the fixture.
+     */
+    private static final String DESCRIPTOR_ENTRY = DESCRIPTOR.replace('.', '/') + ".class";
+
+    /**
+     * Directory of the scanned <var>.jar</var> files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that entries that cannot be read or parsed are skipped, and the others are scanned.
+     *
+     * @throws Exception if the <var>.jar</var> file cannot be written or scanned
+     */
+    @Test
+    public void brokenEntriesAreSkipped() throws Exception {
+        final Path jar = folder.getRoot().toPath().resolve("broken.jar");
+        try (final ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("broken/Unsupported.class"));
+            out.write(readDescriptor());
+            out.putNextEntry(new ZipEntry("broken/Malformed.class"));
+            out.write(new byte[]{(byte) 0xCA, (byte) 0xFE, 1, 2, 3});
+            out.putNextEntry(new ZipEntry(DESCRIPTOR_ENTRY));
+            out.write(readDescriptor());
+        }
+        final byte[] bytes = Files.readAllBytes(jar);
+        final ByteBuffer zip = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        final int header = lastIndexOf(bytes, "broken/Unsupported.class") - 46;
+        Assert.assertEquals(0x02014B50, zip.getInt(header));
+        zip.putShort(header + 10, (short) 99);
+        Files.write(jar, bytes);
+
+        Assert.assertEquals(List.of(DESCRIPTOR), LibraryScanner.scan(List.of(jar.toString()), List.of()));
+    }
+
+    /**
+     * Checks that <var>.jar</var> files with ZIP64 entries are scanned.
+     *
+     * @throws Exception if the <var>.jar</var> file cannot be written or scanned
+     */
+    @Test
+    public void zip64EntriesAreScanned() throws Exception {
+        final Path jar = folder.getRoot().toPath().resolve("zip64.jar");
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("README", "Stored with ZIP64 sizes".getBytes(StandardCharsets.UTF_8));
+        entries.put(DESCRIPTOR_ENTRY, readDescriptor());
+        writeZip64(jar, entries);
+        try (final JarFile file = new JarFile(jar.toFile())) {
+            try (final InputStream in = file.getInputStream(file.getEntry(DESCRIPTOR_ENTRY))) {
+                Assert.assertArrayEquals(readDescriptor(), in.readAllBytes());
+            }
+        }
+
+        Assert.assertEquals(List.of(DESCRIPTOR), LibraryScanner.scan(List.of(jar.toString()), List.of()));
+    }
+
+    /**
+     * Reads the <var>.class</var> file of the fixture.
+     *
+     * @return contents of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] readDescriptor() throws IOException {
+        try (final JarFile artifact = new JarFile(Fixtures.ARTIFACT.toFile());
+             final InputStream in = artifact.getInputStream(artifact.getEntry(DESCRIPTOR_ENTRY))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Finds the last occurrence of the ASCII string in the bytes,
+     * which is the name in the central directory for the names of the entries.
+     *
+     * @param bytes  the bytes
+     * @param string the string
+     * @return the index of the occurrence
+     */
+    private static int lastIndexOf(final byte[] bytes, final String string) {
+        final byte[] pattern = string.getBytes(StandardCharsets.US_ASCII);
+        search:
+        for (int i = bytes.length - pattern.length; i >= 0; i--) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue search;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("Not found: " + string);
+    }
+
+    /**
+     * Writes a <var>.zip</var> file of stored entries whose sizes are in ZIP64 extra fields.
+     *
+     * @param file    where to write the file
+     * @param entries contents of the entries by their names
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeZip64(final Path file, final Map<String, byte[]> entries) throws IOException {
+        final ByteArrayOutputStream local = new ByteArrayOutputStream();
+        final ByteArrayOutputStream central = new ByteArrayOutputStream();
+        for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            final byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            final byte[] contents = entry.getValue();
+            final CRC32 crc = new CRC32();
+            crc.update(contents);
+            final ByteBuffer extra = little(20).putShort((short) 1).putShort((short) 16)
+                    .putLong(contents.length).putLong(contents.length);
+
+            final int offset = local.size();
+            write(local, little(30).putInt(0x04034B50).putShort((short) 45).putShort((short) 0).putShort((short) 0)
+                    .putInt(0).putInt((int) crc.getValue()).putInt(-1).putInt(-1)
+                    .putShort((short) name.length).putShort((short) 20));
+            local.write(name);
+            write(local, extra);
+            local.write(contents);
+
+            write(central, little(46).putInt(0x02014B50).putShort((short) 45).putShort((short) 45)
+                    .putShort((short) 0).putShort((short) 0).putInt(0).putInt((int) crc.getValue())
+                    .putInt(-1).putInt(-1).putShort((short) name.length).putShort((short) 20)
+                    .putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0).putInt(offset));
+            central.write(name);
+            write(central, extra);
+        }
+        try (final OutputStream out = Files.newOutputStream(file)) {
+            local.writeTo(out);
+            central.writeTo(out);
+            write(out, little(22).putInt(0x06054B50).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) entries.size()).putShort((short) entries.size())
+                    .putInt(central.size()).putInt(local.size()).putShort((short) 0));
+        }
+    }
+
+    /**
+     * Allocates a little-endian buffer.
+     *
+     * @param size size of the buffer
+     * @return the buffer
+     */
+    private static ByteBuffer little(final int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the whole filled buffer.
+     *
+     * @param out    where to write
+     * @param buffer the filled buffer
+     * @throws IOException if an error occurred trying to write
+     */
+    private static void write(final OutputStream out, final ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+    }
+}
@@ -0,0 +1,244 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Tests of {@link LocalJarCache}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class LocalJarCacheTest {
+    /**
+     * Offset of the flag of an update in progress in the index file.
+     */
+    private static final int DIRTY_OFFSET = 32;
+
+    /**
+     * Directory of the cache and the jar files got from it.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that stored contents are got back, and absent keys are misses.
+     *
+     * @throws Exception if the cache fails
+     */
+    @Test
+    public void putAndGet() throws Exception {
+        final Path root = folder.newFolder("cache").toPath();
+        try (final LocalJarCache cache = new LocalJarCache(root)) {
+            cache.put("a", contents(1, 100));
+            Assert.assertTrue(cache.contains("a"));
+            Assert.assertFalse(cache.contains("b"));
+            Assert.assertArrayEquals(contents(1, 100), get(cache, "a"));
+            Assert.assertNull(get(cache, "b"));
+
+            cache.put("a", contents(2, 50));
+            Assert.assertArrayEquals(contents(2, 50), get(cache, "a"));
+            Assert.assertEquals(1, countBlobs(root));
+        }
+        try (final LocalJarCache cache = new LocalJarCache(root)) {
+            Assert.assertArrayEquals(contents(2, 50), get(cache, "a"));
+        }
+    }
+
+    /**
+     * Checks that a blob is kept while another entry refers to it.
+     *
+     * @throws Exception if the cache fails
+     */
+    @Test
+    public void sharedBlobsAreKept() throws Exception {
+        final Path root = folder.newFolder("cache").toPath();
+        try (final LocalJarCache cache = new LocalJarCache(root)) {
+            cache.put("a", contents(1, 100));
+            cache.put("b", contents(1, 100));
+            Assert.assertEquals(1, countBlobs(root));
+            cache.put("a", contents(2, 100));
+            Assert.assertArrayEquals(contents(1, 100), get(cache, "b"));
+            Assert.assertEquals(2, countBlobs(root));
+        }
+    }
+
+    /**
+     * Checks that the least recently used entries are evicted with their blobs once the cache is full.
+     *
+     * @throws Exception if the cache fails
+     */
+    @Test
+    public void leastRecentlyUsedAreEvicted() throws Exception {
+        final Path root = folder.newFolder("cache").toPath();
+        try (final LocalJarCache cache = new LocalJarCache(root, 10_000)) {
+            for (int i = 0; i < 9; i++) {
+                cache.put("key" + i, contents(i, 1000));
+            }
+            Assert.assertNotNull(get(cache, "key0"));
+            for (int i = 9; i < 12; i++) {
+                cache.put("key" + i, contents(i, 1000));
+            }
+            Assert.assertTrue(cache.contains("key0"));
+            Assert.assertFalse(cache.contains("key1"));
+            Assert.assertTrue(cache.contains("key11"));
+            int present = 0;
+            for (int i = 0; i < 12; i++) {
+                if (cache.contains("key" + i)) {
+                    present++;
+                }
+            }
+            Assert.assertTrue("Too many entries: " + present, present <= 10);
+            Assert.assertEquals(present, countBlobs(root));
+        }
+    }
+
+    /**
+     * Checks that a get of an entry whose blob is missing is a miss and removes the entry.
+     *
+     * @throws Exception if the cache fails
+     */
+    @Test
+    public void missingBlobIsMiss() throws Exception {
+        final Path root = folder.newFolder("cache").toPath();
+        try (final LocalJarCache cache = new LocalJarCache(root)) {
+            cache.put("a", contents(1, 100));
+            deleteBlobs(root);
+            Assert.assertNull(get(cache, "a"));
+            Assert.assertFalse(cache.contains("a"));
+        }
+    }
+
+    /**
+     * Checks that an index left dirty by an interrupted update is rebuilt when it is opened again,
+     * dropping the entries whose blobs are missing.
+     *
+     * @throws Exception if the cache fails
+     */
+    @Test
+    public void dirtyIndexIsRebuilt() throws Exception {
+        final Path root = folder.newFolder("cache").toPath();
+        try (final LocalJarCache cache = new LocalJarCache(root)) {
+            cache.put("a", contents(1, 100));
+        }
+        deleteBlobs(root);
+        try (final LocalJarCache cache = new LocalJarCache(root)) {
+            cache.put("b", contents(2, 100));
+        }
+        try (final FileChannel index = FileChannel.open(root.resolve("index"), StandardOpenOption.WRITE)) {
+            index.write(ByteBuffer.allocate(4).putInt(0, 1), DIRTY_OFFSET);
+        }
+        try (final LocalJarCache cache = new LocalJarCache(root)) {
+            Assert.assertFalse(cache.contains("a"));
+            Assert.assertArrayEquals(contents(2, 100), get(cache, "b"));
+        }
+    }
+
+    /**
+     * Checks that concurrent puts and gets of a small cache see whole entries only.
+     *
+     * @throws Exception if the cache fails
+     */
+    @Test
+    public void concurrentPutsAndGets() throws Exception {
+        final Path root = folder.newFolder("cache").toPath();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (final LocalJarCache cache = new LocalJarCache(root, 20_000)) {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                final int id = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        final int entry = (i * 7 + id) % 40;
+                        cache.put("key" + entry, contents(entry, 1000));
+                        final byte[] got = get(cache, "key" + (i % 40));
+                        if (got != null) {
+                            Assert.assertArrayEquals(contents(i % 40, 1000), got);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns distinct contents of an entry.
+     *
+     * @param seed   number of the contents
+     * @param length size of the contents
+     * @return the contents
+     */
+    static byte[] contents(final int seed, final int length) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) seed);
+        bytes[0] = (byte) (seed >> 8);
+        return bytes;
+    }
+
+    /**
+     * Gets the entry into a new file of the temporary folder.
+     *
+     * @param cache the cache
+     * @param key   key of the entry
+     * @return contents of the entry, or {@code null} if it is missing
+     * @throws ImplerException if the cache fails
+     * @throws IOException     if the file cannot be read
+     */
+    private byte[] get(final JarCache cache, final String key) throws ImplerException, IOException {
+        final Path target = Files.createTempFile(folder.getRoot().toPath(), "got", ".jar");
+        try {
+            return cache.get(key, target) ? Files.readAllBytes(target) : null;
+        } finally {
+            Files.delete(target);
+        }
+    }
+
+    /**
+     * Counts the blobs of the cache.
+     *
+     * @param root directory of the cache
+     * @return number of the blobs
+     * @throws IOException if the blobs cannot be listed
+     */
+    private static long countBlobs(final Path root) throws IOException {
+        try (final Stream<Path> files = Files.walk(root.resolve("blobs"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    /**
+     * Deletes all blobs of the cache.
+     *
+     * @param root directory of the cache
+     * @throws IOException if the blobs cannot be deleted
+     */
+    private static void deleteBlobs(final Path root) throws IOException {
+        try (final Stream<Path> files = Files.walk(root.resolve("blobs"))) {
+            for (final Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
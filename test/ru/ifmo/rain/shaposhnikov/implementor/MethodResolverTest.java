@@ -0,0 +1,71 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.rowset.CachedRowSet;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Tests of {@link MethodResolver}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class MethodResolverTest {
+    /**
+     * Checks that a class resolved in a session that shares its signature table with other classes
+     * gets the same methods as a class resolved on its own.
+     */
+    @Test
+    public void sessionsResolveTheSameMethods() {
+        final List<Method> alone = MethodResolver.getImplementedMethods(CachedRowSet.class);
+        final MethodResolver.Session session = MethodResolver.openSession();
+        try {
+            Assert.assertEquals(List.of(), MethodResolver.getImplementedMethods(Object.class));
+            Assert.assertEquals(alone, MethodResolver.getImplementedMethods(CachedRowSet.class));
+        } finally {
+            session.close();
+        }
+        Assert.assertFalse(alone.isEmpty());
+    }
+
+    /**
+     * Checks that resolution does not keep a class loader of the resolved classes from being collected.
+     *
+     * @throws Exception if the classes cannot be loaded
+     */
+    @Test
+    public void resolvedClassesCanBeUnloaded() throws Exception {
+        final WeakReference<ClassLoader> loader = resolveInLoader();
+        for (int i = 0; i < 50 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        Assert.assertNull("Class loader is pinned by resolution", loader.get());
+    }
+
+    /**
+     * Resolves classes of a new class loader in a session.
+     *
+     * @return reference to the class loader
+     * @throws Exception if the classes cannot be loaded
+     */
+    private static WeakReference<ClassLoader> resolveInLoader() throws Exception {
+        final URL jar = Paths.get("lib", "junit-4.11.jar").toUri().toURL();
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{jar}, ClassLoader.getPlatformClassLoader())) {
+            final MethodResolver.Session session = MethodResolver.openSession();
+            try {
+                final Class<?> builder = Class.forName("org.junit.runners.model.RunnerBuilder", false, loader);
+                Assert.assertEquals(1, MethodResolver.getImplementedMethods(builder).size());
+                return new WeakReference<>(loader);
+            } finally {
+                session.close();
+            }
+        }
+    }
+}
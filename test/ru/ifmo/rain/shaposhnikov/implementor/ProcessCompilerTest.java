@@ -0,0 +1,99 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests of {@link ProcessCompiler}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class ProcessCompilerTest {
+    /**
+     * Directory of the files of the worker commands.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that batches with compiled and failed tokens get the results of an in-process compiler,
+     * and workers are replaced once they have run the maximal number of jobs.
+     *
+     * @throws Exception if the sources cannot be emitted or the files cannot be read
+     */
+    @Test(timeout = 300_000)
+    public void workersAreReplacedAfterMaxJobs() throws Exception {
+        final Path starts = folder.getRoot().toPath().resolve("starts");
+        final List<Class<?>> tokens = Fixtures.getTokens();
+        final Map<Class<?>, String> sources = Fixtures.getSources(tokens);
+        final Map<Class<?>, ImplerException> expectedFailed = new HashMap<>();
+        final Map<Class<?>, byte[]> expected = new TempDirectoryCompiler().compileAll(sources, expectedFailed);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertFalse(expectedFailed.isEmpty());
+
+        try (final ProcessCompiler compiler = new ProcessCompiler(2, 1,
+                wrap("echo started >> \"$1\"; shift; exec \"$@\"", starts))) {
+            for (int batch = 0; batch < 3; batch++) {
+                final Map<Class<?>, ImplerException> failed = new HashMap<>();
+                final Map<Class<?>, byte[]> classes = compiler.compileAll(sources, failed);
+                Assert.assertEquals(expectedFailed.keySet(), failed.keySet());
+                Assert.assertEquals(expected.keySet(), classes.keySet());
+                for (final Map.Entry<Class<?>, byte[]> entry : classes.entrySet()) {
+                    Assert.assertArrayEquals(entry.getKey().getName(), expected.get(entry.getKey()), entry.getValue());
+                }
+            }
+        }
+        Assert.assertEquals(6, Files.readAllLines(starts).size());
+    }
+
+    /**
+     * Checks that the tokens of a worker that dies fail, and the worker is replaced for the next batch.
+     *
+     * @throws Exception if the sources cannot be emitted
+     */
+    @Test(timeout = 300_000)
+    public void deadWorkerIsReplaced() throws Exception {
+        final Path marker = folder.getRoot().toPath().resolve("crashed");
+        final List<Class<?>> tokens = Fixtures.getTokens();
+        final Map<Class<?>, String> sources = Fixtures.getSources(tokens);
+
+        try (final ProcessCompiler compiler = new ProcessCompiler(1, ProcessCompiler.DEFAULT_MAX_JOBS,
+                wrap("if [ -e \"$1\" ]; then shift; exec \"$@\"; fi; touch \"$1\"; exit 3", marker))) {
+            final Map<Class<?>, ImplerException> failed = new HashMap<>();
+            Assert.assertTrue(compiler.compileAll(sources, failed).isEmpty());
+            Assert.assertEquals(sources.keySet(), failed.keySet());
+            for (final ImplerException e : failed.values()) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("compile worker failed"));
+            }
+            Assert.assertTrue(Files.exists(marker));
+
+            failed.clear();
+            Assert.assertFalse(compiler.compileAll(sources, failed).isEmpty());
+            Assert.assertTrue(failed.size() < sources.size());
+        }
+    }
+
+    /**
+     * Returns the command starting a worker through a shell script.
+     * The script gets the <var>file</var> as its first argument, followed by the command starting a worker.
+     *
+     * @param script the script
+     * @param file   the file of the script
+     * @return the command
+     */
+    private static List<String> wrap(final String script, final Path file) {
+        final List<String> command = new ArrayList<>(List.of("sh", "-c", script, "sh", file.toString()));
+        command.addAll(ProcessCompiler.getCommand("256m"));
+        return command;
+    }
+}
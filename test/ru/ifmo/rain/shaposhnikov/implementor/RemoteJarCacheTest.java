@@ -0,0 +1,77 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Tests of {@link RemoteJarCache} against a {@link JarCacheServer}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class RemoteJarCacheTest {
+    /**
+     * Directories of the server, of the local caches and the jar files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that an entry put through one node is got and prefetched by another one
+     * and is put into its local cache.
+     *
+     * @throws Exception if a cache or the server fails
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (final JarCacheServer server = new JarCacheServer(folder.newFolder("server").toPath(), address, 2);
+             final LocalJarCache producerLocal = new LocalJarCache(folder.newFolder("producer").toPath());
+             final LocalJarCache consumerLocal = new LocalJarCache(folder.newFolder("consumer").toPath())) {
+            final RemoteJarCache producer = new RemoteJarCache(server.getUri(), producerLocal);
+            final RemoteJarCache consumer = new RemoteJarCache(server.getUri(), consumerLocal);
+            final String first = key("first");
+            final String second = key("second");
+            final Path jarFile = folder.getRoot().toPath().resolve("put.jar");
+
+            Files.write(jarFile, LocalJarCacheTest.contents(1, 1000));
+            producer.put(first, jarFile);
+            Files.write(jarFile, LocalJarCacheTest.contents(2, 1000));
+            producer.put(second, jarFile);
+
+            Assert.assertFalse(consumer.contains(key("missing")));
+            Assert.assertFalse(consumer.get(key("missing"), folder.getRoot().toPath().resolve("missing.jar")));
+
+            Assert.assertTrue(consumer.contains(first));
+            Assert.assertFalse(consumerLocal.contains(first));
+            final Path got = folder.getRoot().toPath().resolve("got.jar");
+            Assert.assertTrue(consumer.get(first, got));
+            Assert.assertArrayEquals(LocalJarCacheTest.contents(1, 1000), Files.readAllBytes(got));
+            Assert.assertTrue(consumerLocal.contains(first));
+
+            consumer.prefetch(List.of(first, second));
+            Assert.assertTrue(consumerLocal.contains(second));
+            Assert.assertTrue(consumerLocal.get(second, got));
+            Assert.assertArrayEquals(LocalJarCacheTest.contents(2, 1000), Files.readAllBytes(got));
+        }
+    }
+
+    /**
+     * Returns a key in the form {@link CachingJarImplementor} produces.
+     *
+     * @param name name of the key
+     * @return hexadecimal digest of the name
+     */
+    private static String key(final String name) {
+        return HexFormat.of().formatHex(LocalJarCache.sha256(name.getBytes(StandardCharsets.UTF_8)));
+    }
+}
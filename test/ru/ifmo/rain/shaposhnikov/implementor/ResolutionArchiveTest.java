@@ -0,0 +1,116 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Tests of {@link ResolutionArchive}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class ResolutionArchiveTest {
+    /**
+     * Open file descriptors of the process.
+     */
+    private static final Path DESCRIPTORS = Path.of("/proc/self/fd");
+
+    /**
+     * Directory of the copied artifact.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that the <var>.jar</var> files read to compute the keys are closed with the last resolution session.
+     *
+     * @throws Exception if the artifact cannot be copied or loaded
+     */
+    @Test
+    public void jarsAreClosedWithSessions() throws Exception {
+        Assume.assumeTrue(Files.isDirectory(DESCRIPTORS));
+        final Path jar = folder.getRoot().toPath().resolve("fixtures.jar");
+        Files.copy(Fixtures.ARTIFACT, jar);
+        final Class<?> token;
+        try (final URLClassLoader loader = new URLClassLoader(new URL[]{jar.toUri().toURL()},
+                ClassLoader.getPlatformClassLoader())) {
+            token = Class.forName(
+                    "info.kgeorgiy.java.advanced.implementor.basic.interfaces.standard.Descriptor", false, loader);
+        }
+        Assert.assertEquals(0, countOpen(jar));
+
+        final MethodResolver.Session session = MethodResolver.openSession();
+        try {
+            Assert.assertNotNull(ResolutionArchive.getKey(token));
+            Assert.assertEquals(1, countOpen(jar));
+        } finally {
+            session.close();
+        }
+        Assert.assertEquals(0, countOpen(jar));
+    }
+
+    /**
+     * Checks that an archive with an invalid number of strings is rejected as corrupted when it is opened.
+     *
+     * @throws Exception if the archive cannot be written
+     */
+    @Test
+    public void corruptedArchiveIsRejected() throws Exception {
+        Assert.assertNull(ResolutionArchive.open(writeArchive(0)).find(new byte[32]));
+        for (final int stringCount : new int[]{-1, 1, Integer.MAX_VALUE}) {
+            try {
+                ResolutionArchive.open(writeArchive(stringCount));
+                Assert.fail("Opened an archive of " + stringCount + " strings");
+            } catch (final IOException e) {
+                Assert.assertEquals("Corrupted resolution archive", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes an archive without records whose string pool has no strings.
+     *
+     * @param stringCount number of strings stated by the pool
+     * @return the archive file
+     * @throws IOException if the archive cannot be written
+     */
+    private Path writeArchive(final int stringCount) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(20)
+                .putInt(0x4A435241)
+                .putInt(1)
+                .putInt(0)
+                .putInt(16)
+                .putInt(stringCount);
+        return Files.write(folder.newFile().toPath(), buffer.array());
+    }
+
+    /**
+     * Counts the file descriptors of the process referring to the file.
+     *
+     * @param file the file
+     * @return number of the descriptors
+     * @throws IOException if the descriptors cannot be listed
+     */
+    private static long countOpen(final Path file) throws IOException {
+        final Path real = file.toRealPath();
+        try (final Stream<Path> descriptors = Files.list(DESCRIPTORS)) {
+            return descriptors.filter(descriptor -> {
+                try {
+                    return Files.readSymbolicLink(descriptor).equals(real);
+                } catch (final IOException e) {
+                    return false;
+                }
+            }).count();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of {@link SharedJarCache}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class SharedJarCacheTest {
+    /**
+     * Number of concurrent producers.
+     */
+    private static final int PRODUCERS = 8;
+
+    /**
+     * Directory of the cache and the produced jar files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that concurrent producers of the same key, using separate instances of the cache,
+     * produce the entry once and all get it.
+     *
+     * @throws Exception if the cache fails
+     */
+    @Test
+    public void leasesProduceOnce() throws Exception {
+        final Path root = folder.newFolder("cache").toPath();
+        final AtomicInteger produced = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        try {
+            final List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < PRODUCERS; i++) {
+                final Path target = folder.getRoot().toPath().resolve("got" + i + ".jar");
+                futures.add(executor.submit(() -> {
+                    try (final SharedJarCache cache = new SharedJarCache(root)) {
+                        start.await();
+                        if (!cache.get("key", target)) {
+                            final JarCache.Lease lease = cache.lease("key");
+                            try {
+                                if (!cache.get("key", target)) {
+                                    produced.incrementAndGet();
+                                    Thread.sleep(50);
+                                    Files.write(target, LocalJarCacheTest.contents(1, 1000));
+                                    cache.put("key", target);
+                                }
+                            } finally {
+                                lease.close();
+                            }
+                        }
+                        return Files.readAllBytes(target);
+                    }
+                }));
+            }
+            start.countDown();
+            for (final Future<byte[]> future : futures) {
+                Assert.assertArrayEquals(LocalJarCacheTest.contents(1, 1000), future.get());
+            }
+            Assert.assertEquals(1, produced.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that leases of keys of different stripes do not wait for each other.
+     *
+     * @throws Exception if the cache fails
+     */
+    @Test
+    public void leasesOfDifferentKeysAreIndependent() throws Exception {
+        try (final SharedJarCache cache = new SharedJarCache(folder.newFolder("cache").toPath())) {
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            final JarCache.Lease lease = cache.lease("a");
+            try {
+                executor.submit(() -> {
+                    cache.lease("b").close();
+                    return null;
+                }).get(10, TimeUnit.SECONDS);
+            } finally {
+                lease.close();
+                executor.shutdownNow();
+            }
+        }
+    }
+}
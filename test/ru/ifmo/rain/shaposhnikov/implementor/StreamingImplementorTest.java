@@ -0,0 +1,167 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of {@link StreamingImplementor}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class StreamingImplementorTest {
+    /**
+     * Number of tokens of the batches that fail.
+     */
+    private static final int TOKENS = 1000;
+
+    /**
+     * Directory of the <var>.jar</var> files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that every token is reported once, written or failed, and the queues are empty afterwards.
+     *
+     * @throws Exception if the pipeline fails
+     */
+    @Test(timeout = 60_000)
+    public void tokensAreReported() throws Exception {
+        final StreamingImplementor implementor = new StreamingImplementor(new BytecodeCompiler(), 4, 2, 1, 1, 1);
+        checkImplemented(implementor, folder.newFolder("jars").toPath());
+        for (final int depth : implementor.getQueueDepths().values()) {
+            Assert.assertEquals(0, depth);
+        }
+    }
+
+    /**
+     * Checks that a listener throwing for every token neither stops the pipeline nor hangs the batch,
+     * and its first error is thrown once the batch is completed.
+     */
+    @Test(timeout = 60_000)
+    public void throwingListenerDoesNotHang() {
+        final StreamingImplementor implementor = new StreamingImplementor(new BytecodeCompiler(), 4, 2, 1, 1, 1);
+        final AtomicInteger failures = new AtomicInteger();
+        final IllegalStateException listenerError = new IllegalStateException("Listener failed");
+        try {
+            implementor.implementJarAll(Collections.nCopies(TOKENS, String.class).iterator(), folder.getRoot().toPath(),
+                    (token, jarFile) -> Assert.fail("Implemented " + token),
+                    (token, cause) -> {
+                        failures.incrementAndGet();
+                        throw listenerError;
+                    });
+            Assert.fail("The listener error is not thrown");
+        } catch (final ImplerException e) {
+            Assert.assertSame(listenerError, e.getCause());
+        }
+        Assert.assertEquals(TOKENS, failures.get());
+    }
+
+    /**
+     * Checks that a batch whose only compiling thread dies of an unexpected error is abandoned instead of hanging,
+     * and the pipeline still implements the next batch.
+     *
+     * @throws Exception if the pipeline fails
+     */
+    @Test(timeout = 60_000)
+    public void deadWorkerAbandonsBatch() throws Exception {
+        final AtomicInteger compilations = new AtomicInteger();
+        final BytecodeCompiler bytecode = new BytecodeCompiler();
+        final ClassCompiler compiler = (token, source) -> {
+            if (compilations.incrementAndGet() == 1) {
+                throw new AssertionError("Compiler failed");
+            }
+            return bytecode.compile(token, source);
+        };
+        final StreamingImplementor implementor = new StreamingImplementor(compiler, 4, 2, 1, 1, 1);
+        final List<Class<?>> tokens = Fixtures.getTokens();
+        try {
+            implementor.implementJarAll(Collections.nCopies(TOKENS, tokens.get(0)).iterator(),
+                    folder.newFolder("abandoned").toPath(), (token, jarFile) -> {
+                    }, (token, cause) -> {
+                    });
+            Assert.fail("The batch is not abandoned");
+        } catch (final ImplerException e) {
+            Assert.assertTrue(e.getCause() instanceof AssertionError);
+        }
+        checkImplemented(implementor, folder.newFolder("jars").toPath());
+    }
+
+    /**
+     * Checks that an exception of the iterator reaches the caller and stops the threads of the batch,
+     * and the pipeline still implements the next batch.
+     *
+     * @throws Exception if the pipeline fails
+     */
+    @Test(timeout = 60_000)
+    public void throwingIteratorStopsWorkers() throws Exception {
+        final StreamingImplementor implementor = new StreamingImplementor(new BytecodeCompiler(), 4, 2, 1, 1, 1);
+        final Iterator<Class<?>> fixtures = Fixtures.getTokens().iterator();
+        final IllegalStateException iteratorError = new IllegalStateException("Iterator failed");
+        final Iterator<Class<?>> tokens = new Iterator<>() {
+            /**
+             * Number of the tokens taken.
+             */
+            private int taken;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Class<?> next() {
+                if (++taken == 4) {
+                    throw iteratorError;
+                }
+                return fixtures.next();
+            }
+        };
+        try {
+            implementor.implementJarAll(tokens, folder.newFolder("abandoned").toPath(), (token, jarFile) -> {
+            }, (token, cause) -> {
+            });
+            Assert.fail("The iterator error is not thrown");
+        } catch (final IllegalStateException e) {
+            Assert.assertSame(iteratorError, e);
+        }
+        while (Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().startsWith("implementor-"))) {
+            Thread.sleep(10);
+        }
+        checkImplemented(implementor, folder.newFolder("jars").toPath());
+    }
+
+    /**
+     * Implements the {@link Fixtures#getTokens() fixtures} and checks that every one is written.
+     *
+     * @param implementor the pipeline
+     * @param root        the directory to put the <var>.jar</var> files to
+     * @throws ImplerException if the pipeline fails
+     */
+    private static void checkImplemented(final StreamingImplementor implementor, final Path root)
+            throws ImplerException {
+        final List<Class<?>> tokens = Fixtures.getTokens();
+        final Map<Class<?>, Path> implemented = new ConcurrentHashMap<>();
+        final Set<Class<?>> failed = ConcurrentHashMap.newKeySet();
+        implementor.implementJarAll(tokens.iterator(), root, implemented::put, (token, cause) -> failed.add(token));
+        Assert.assertEquals(Set.of(), failed);
+        Assert.assertEquals(Set.copyOf(tokens), implemented.keySet());
+        for (final Path jarFile : implemented.values()) {
+            Assert.assertTrue(jarFile + " is not written", Files.isRegularFile(jarFile));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import info.kgeorgiy.java.advanced.implementor.basic.interfaces.standard.Descriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of {@link StubFactory}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class StubFactoryTest {
+    /**
+     * Checks that stubs of the fixtures are instantiated and return default values.
+     *
+     * @throws Exception if a stub cannot be created
+     */
+    @Test
+    public void stubsAreInstantiated() throws Exception {
+        int instantiated = 0;
+        for (final Class<?> token : Fixtures.getTokens()) {
+            final Object stub;
+            try {
+                stub = StubFactory.newStub(token);
+            } catch (final ImplerException e) {
+                Assert.assertTrue(token.getName() + ": " + e.getMessage(),
+                        e.getMessage().startsWith("Constructor of the implemented class failed"));
+                continue;
+            }
+            Assert.assertTrue(token.getName(), token.isInstance(stub));
+            Assert.assertTrue(token.getName(), stub.getClass().isHidden());
+            instantiated++;
+        }
+        Assert.assertTrue(instantiated > 0);
+
+        final Descriptor descriptor = StubFactory.newStub(Descriptor.class);
+        Assert.assertFalse(descriptor.isValid());
+        Assert.assertNull(descriptor.getFieldNames());
+    }
+}
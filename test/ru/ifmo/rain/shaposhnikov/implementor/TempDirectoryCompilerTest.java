@@ -0,0 +1,57 @@
+package ru.ifmo.rain.shaposhnikov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests of {@link TempDirectoryCompiler}.
+ *
+ * @author Boris Shaposhnikov
+ */
+public class TempDirectoryCompilerTest {
+    /**
+     * Checks that a batch compiled together yields the class files of the tokens compiled one by one,
+     * and the tokens failing to compile alone, and those only, fail in the batch.
+     *
+     * @throws Exception if a source cannot be emitted
+     */
+    @Test
+    public void batchesMatchSingleCompilations() throws Exception {
+        final List<Class<?>> tokens = Fixtures.getTokens();
+        final TempDirectoryCompiler compiler = new TempDirectoryCompiler();
+        final Map<Class<?>, String> sources = Fixtures.getSources(tokens);
+        final Class<?> broken = tokens.get(0);
+        sources.put(broken, sources.get(broken).replace("{", "{ broken"));
+
+        final Map<Class<?>, ImplerException> failed = new HashMap<>();
+        final Map<Class<?>, byte[]> classes = compiler.compileAll(sources, failed);
+        Assert.assertTrue(failed.containsKey(broken));
+        Assert.assertFalse(classes.isEmpty());
+        for (final Class<?> token : tokens) {
+            final byte[] alone = compileAlone(compiler, token, sources.get(token));
+            Assert.assertArrayEquals(token.getName(), alone, classes.get(token));
+            Assert.assertEquals(token.getName(), alone == null, failed.containsKey(token));
+        }
+    }
+
+    /**
+     * Compiles the implementation of a single token.
+     *
+     * @param compiler the compiler
+     * @param token    the token
+     * @param source   source code of the implementation class
+     * @return contents of the <var>.class</var> file, or {@code null} if the token fails to compile
+     */
+    private static byte[] compileAlone(final ClassCompiler compiler, final Class<?> token, final String source) {
+        try {
+            return compiler.compile(token, source);
+        } catch (final ImplerException e) {
+            return null;
+        }
+    }
+}
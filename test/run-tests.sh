@@ -0,0 +1,17 @@
+#!/bin/bash
+# Compiles the implementor and its tests on the class path and runs the given test classes, all of them by default.
+# Run from the repository root: test/run-tests.sh [SimpleTestClassName...]
+
+out=${TEST_OUT:-${TMPDIR:-/tmp}/implementor-test-classes}
+test_path=ru/ifmo/rain/shaposhnikov/implementor
+class_path=lib/junit-4.11.jar:lib/hamcrest-core-1.3.jar:artifacts/info.kgeorgiy.java.advanced.implementor.jar
+
+rm -rf "${out}"
+mkdir -p "${out}"
+javac -encoding UTF-8 -d "${out}" -cp "${class_path}" \
+    $(find src/ru test/ru -name '*.java') || exit 1
+
+if [ $# -eq 0 ]; then
+    set -- $(cd test && find ${test_path} -name '*Test.java' -exec basename {} .java \; | sort)
+fi
+java -cp "${out}:${class_path}" org.junit.runner.JUnitCore $(printf "ru.ifmo.rain.shaposhnikov.implementor.%s " "$@")